@@ -0,0 +1,56 @@
+package com.chiplueck.apieditor.benchmark;
+
+import com.chiplueck.apieditor.cache.WeightedLruCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups and inserts in the in-memory LRU cache used for listings and program files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheBenchmark {
+    @Param({"1000", "100000"})
+    public int entryCount;
+
+    private WeightedLruCache<String, byte[]> cache;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        // Bounded to the initial entries, so every insert of a new key evicts one
+        cache = new WeightedLruCache<>("Benchmark", entryCount * 1024L, value -> value.length, value -> false);
+        keys = new String[entryCount * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "endpoint:program-" + i;
+        }
+        for (int i = 0; i < entryCount; i++) {
+            cache.put(keys[i], new byte[1024]);
+        }
+    }
+
+    @Benchmark
+    public byte[] getHit() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(entryCount)]);
+    }
+
+    @Benchmark
+    public byte[] getMiss() {
+        return cache.get(keys[entryCount + ThreadLocalRandom.current().nextInt(entryCount)]);
+    }
+
+    @Benchmark
+    public void putWithEviction() {
+        cache.put(keys[ThreadLocalRandom.current().nextInt(keys.length)], new byte[1024]);
+    }
+}
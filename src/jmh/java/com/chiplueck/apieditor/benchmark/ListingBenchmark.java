@@ -0,0 +1,54 @@
+package com.chiplueck.apieditor.benchmark;
+
+import com.chiplueck.apieditor.api.ApiClient;
+import com.chiplueck.apieditor.api.HttpApiClient;
+import com.chiplueck.apieditor.api.HttpTransport;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fetching and parsing a program listing of increasing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListingBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int programCount;
+
+    private StubApiServer server;
+    private HttpTransport transport;
+    private ApiClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new StubApiServer();
+        server.setListing(programCount);
+        ApiEndpoint endpoint = server.createEndpoint();
+        transport = new HttpTransport(endpoint, () -> "benchmark");
+        client = new HttpApiClient(endpoint, transport);
+    }
+
+    @TearDown
+    public void tearDown() {
+        transport.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void listPrograms(Blackhole blackhole) throws IOException {
+        client.listPrograms(blackhole::consume);
+    }
+}
@@ -0,0 +1,65 @@
+package com.chiplueck.apieditor.benchmark;
+
+import com.chiplueck.apieditor.api.ApiClient;
+import com.chiplueck.apieditor.api.HttpApiClient;
+import com.chiplueck.apieditor.api.HttpTransport;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fetching and saving a single program, including JSON (de)serialization of its content,
+ * for contents from 1 KB to 10 MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProgramTransferBenchmark {
+    @Param({"1024", "102400", "1048576", "10485760"})
+    public int contentSize;
+
+    private StubApiServer server;
+    private HttpTransport transport;
+    private ApiClient client;
+    private RemoteProgram program;
+
+    @Setup
+    public void setUp() throws IOException {
+        String content = StubApiServer.generateContent(contentSize);
+        server = new StubApiServer();
+        server.setProgramContent(content);
+        ApiEndpoint endpoint = server.createEndpoint();
+        transport = new HttpTransport(endpoint, () -> "benchmark");
+        client = new HttpApiClient(endpoint, transport);
+
+        program = new RemoteProgram("program-1", "Program1", "java");
+        program.setContent(content);
+    }
+
+    @TearDown
+    public void tearDown() {
+        transport.close();
+        server.close();
+    }
+
+    @Benchmark
+    public RemoteProgram getProgram() throws IOException {
+        return client.getProgram(program.getId());
+    }
+
+    @Benchmark
+    public RemoteProgram saveProgram() throws IOException {
+        return client.saveProgram(program);
+    }
+}
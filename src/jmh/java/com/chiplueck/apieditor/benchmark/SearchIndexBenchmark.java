@@ -0,0 +1,67 @@
+package com.chiplueck.apieditor.benchmark;
+
+import com.chiplueck.apieditor.fs.ProgramSearchIndex;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the first page of a program search, as shown after each keystroke in the program picker,
+ * and incremental updates of the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchIndexBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final String[] WORDS = {"Order", "Invoice", "Customer", "Report", "Batch", "Import", "Export",
+            "Payment", "Ledger", "Account", "Service", "Handler", "Util", "Job", "Sync", "Mapper"};
+    private static final String[] EXTENSIONS = {"java", "sql", "js", "xml"};
+
+    @Param({"1000", "50000"})
+    public int programCount;
+
+    // "ord" matches names starting with it, "rep" mostly names containing it, "ivh" only characters in order,
+    // "ja" is found through bigrams and "xyzq" walks all names without a match
+    @Param({"", "ord", "rep", "ivh", "ja", "xyzq"})
+    public String query;
+
+    private ProgramSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new ProgramSearchIndex();
+        for (int i = 0; i < programCount; i++) {
+            index.put(program(i));
+        }
+    }
+
+    private static RemoteProgram program(int i) {
+        String name = WORDS[i % WORDS.length] + WORDS[(i / WORDS.length) % WORDS.length] + i;
+        return new RemoteProgram("program-" + i, name, EXTENSIONS[i % EXTENSIONS.length]);
+    }
+
+    @Benchmark
+    public List<RemoteProgram> firstPage() {
+        return index.search(query).next(PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void rename() {
+        int i = ThreadLocalRandom.current().nextInt(programCount);
+        RemoteProgram renamed = program(i);
+        renamed.setName(renamed.getName() + "V2");
+        index.put(renamed);
+        index.put(program(i));
+    }
+}
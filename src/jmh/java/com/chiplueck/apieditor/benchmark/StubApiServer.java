@@ -0,0 +1,124 @@
+package com.chiplueck.apieditor.benchmark;
+
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process HTTP server answering with canned API responses, so benchmarks measure the client
+ * and run reproducibly without a network. Responses are serialized once up front.
+ */
+public class StubApiServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private volatile byte[] listingResponse = "{\"programs\":[]}".getBytes(StandardCharsets.UTF_8);
+    private volatile byte[] programResponse = programResponse(program(0, "")).getBytes(StandardCharsets.UTF_8);
+
+    public StubApiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Gets an endpoint configuration pointing at this server.
+     *
+     * @return The endpoint
+     */
+    public ApiEndpoint createEndpoint() {
+        return new ApiEndpoint("benchmark", "Benchmark", "http://127.0.0.1:" + server.getAddress().getPort(), "benchmark");
+    }
+
+    /**
+     * Serves a listing of generated programs for GET /.
+     *
+     * @param count The number of programs
+     */
+    public void setListing(int count) {
+        JsonArray programs = new JsonArray(count);
+        for (int i = 0; i < count; i++) {
+            programs.add(program(i, null));
+        }
+        JsonObject listing = new JsonObject();
+        listing.add("programs", programs);
+        listingResponse = listing.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serves a program with the given content for GET and PUT /{programId}.
+     *
+     * @param content The program content
+     */
+    public void setProgramContent(String content) {
+        programResponse = programResponse(program(1, content)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates source-like content of approximately the given size.
+     *
+     * @param size The size in characters
+     * @return The content
+     */
+    public static String generateContent(int size) {
+        StringBuilder content = new StringBuilder(size + 64);
+        int line = 0;
+        while (content.length() < size) {
+            content.append("    public static int value").append(line).append("() { return \"")
+                    .append(line * 31).append("\".length(); }\n");
+            line++;
+        }
+        content.setLength(size);
+        return content.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // Drain the request body so the connection can be reused
+            try (InputStream body = exchange.getRequestBody()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            byte[] response = "/".equals(exchange.getRequestURI().getPath()) ? listingResponse : programResponse;
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+    }
+
+    private static JsonObject program(int index, String content) {
+        JsonObject program = new JsonObject();
+        program.addProperty("id", "program-" + index);
+        program.addProperty("name", "Program" + index);
+        program.addProperty("extension", "java");
+        if (content != null) {
+            program.addProperty("content", content);
+        }
+        program.addProperty("lastModified", 1623456789000L + index);
+        return program;
+    }
+
+    private static String programResponse(JsonObject program) {
+        JsonObject response = new JsonObject();
+        response.add("program", program);
+        return response.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,55 @@
+package com.chiplueck.apieditor.benchmark;
+
+import com.chiplueck.apieditor.fs.ApiEditorVirtualFile;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures handing the content of a program to its virtual file and decoding the file content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VirtualFileBenchmark {
+    @Param({"1024", "102400", "1048576", "10485760"})
+    public int contentSize;
+
+    private RemoteProgram program;
+    private ApiEditorVirtualFile file;
+
+    @Setup
+    public void setUp() {
+        program = new RemoteProgram("program-1", "Program1", "java");
+        program.setContent(StubApiServer.generateContent(contentSize));
+        file = new ApiEditorVirtualFile(new ApiEndpoint("benchmark", "Benchmark", "http://localhost", "benchmark"), program);
+    }
+
+    /**
+     * Taking over the content of a fetched or saved program into the file.
+     */
+    @Benchmark
+    public long updateProgram() {
+        file.updateProgram(program);
+        return file.getLength();
+    }
+
+    /**
+     * Decoding of the file content, as done when a document is loaded.
+     */
+    @Benchmark
+    public String decodeContent() throws IOException {
+        return new String(file.contentsToByteArray(), StandardCharsets.UTF_8);
+    }
+}
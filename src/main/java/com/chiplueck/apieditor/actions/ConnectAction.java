@@ -1,8 +1,9 @@
 package com.chiplueck.apieditor.actions;
 
-import com.chiplueck.apieditor.api.ApiClient;
-import com.chiplueck.apieditor.api.HttpApiClient;
+import com.chiplueck.apieditor.api.EndpointUnavailableException;
 import com.chiplueck.apieditor.fs.ApiEditorFileSystem;
+import com.chiplueck.apieditor.fs.ProgramPrefetcher;
+import com.chiplueck.apieditor.fs.ProgramSearchIndex;
 import com.chiplueck.apieditor.model.ApiEndpoint;
 import com.chiplueck.apieditor.model.RemoteProgram;
 import com.chiplueck.apieditor.services.ApiEndpointService;
@@ -15,7 +16,10 @@ import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopup;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.JBPopupListener;
+import com.intellij.openapi.ui.popup.LightweightWindowEvent;
 import com.intellij.openapi.ui.popup.PopupStep;
 import com.intellij.openapi.ui.popup.util.BaseListPopupStep;
 import org.jetbrains.annotations.NotNull;
@@ -66,14 +70,13 @@ public class ConnectAction extends AnAction {
     private void connectToEndpoint(Project project, ApiEndpoint endpoint) {
         LOG.info("Connecting to endpoint: " + endpoint.getName() + " (" + endpoint.getUrl() + ")");
 
-        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Connecting to API Endpoint") {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Connecting to API Endpoint", true) {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 indicator.setIndeterminate(true);
                 try {
-                    // Always create a new client and fetch the latest program list
-                    ApiClient apiClient = new HttpApiClient(endpoint);
-                    List<RemoteProgram> programs = apiClient.listPrograms();
+                    // Fetch the latest program list, or only its changes for incremental endpoints
+                    List<RemoteProgram> programs = ApiEditorFileSystem.getInstance().connectToEndpoint(endpoint);
                     LOG.info("Successfully connected to endpoint: " + endpoint.getName() + ", found " + programs.size() + " programs");
 
                     ApplicationManager.getApplication().invokeLater(() -> {
@@ -86,7 +89,9 @@ public class ConnectAction extends AnAction {
                         String errorMessage = "Failed to connect to API endpoint: " + endpoint.getUrl();
 
                         // Provide more specific error messages based on the exception
-                        if (ex.getMessage().contains("Connection refused") || ex.getMessage().contains("ConnectException")) {
+                        if (ex instanceof EndpointUnavailableException) {
+                            errorMessage += "\n\n" + ex.getMessage() + ". The server might be overloaded.";
+                        } else if (ex.getMessage().contains("Connection refused") || ex.getMessage().contains("ConnectException")) {
                             errorMessage += "\n\nThe server appears to be offline or unreachable. Please check that the server is running and that you can access it from your network.";
                         } else if (ex.getMessage().contains("Authentication failed") || ex.getMessage().contains("401")) {
                             errorMessage += "\n\nAuthentication failed. Please check your username and password in the API Editor Settings.";
@@ -111,29 +116,33 @@ public class ConnectAction extends AnAction {
             return;
         }
 
-        // Show program selection popup
-        JBPopupFactory.getInstance()
-                .createListPopup(new BaseListPopupStep<RemoteProgram>("Select Program", programs) {
-                    @Override
-                    public @NotNull String getTextFor(RemoteProgram program) {
-                        return program.getFullName();
-                    }
-
-                    @Override
-                    public @Nullable PopupStep<?> onChosen(RemoteProgram program, boolean finalChoice) {
-                        if (finalChoice) {
-                            ApplicationManager.getApplication().invokeLater(() -> openProgram(project, endpoint, program));
-                        }
-                        return FINAL_CHOICE;
-                    }
-                })
-                .showCenteredInCurrentWindow(project);
+        // Search the endpoint's index, which follows the cached listing
+        ProgramSearchIndex index = ApiEditorFileSystem.getInstance().getSearchIndex(endpoint.getId());
+        if (index == null) {
+            // The listing was evicted from the cache in the meantime
+            index = new ProgramSearchIndex();
+            programs.forEach(index::put);
+        }
+        ProgramPicker picker = new ProgramPicker(project, "Select Program", index,
+                program -> openProgram(project, endpoint, program));
+
+        // Load the likely choices while the list is shown
+        ProgramPrefetcher prefetcher = new ProgramPrefetcher(endpoint);
+        picker.addHighlightListener(prefetcher::prefetchHighlighted);
+        JBPopup popup = picker.show();
+        popup.addListener(new JBPopupListener() {
+            @Override
+            public void onClosed(@NotNull LightweightWindowEvent event) {
+                prefetcher.cancel();
+            }
+        });
+        prefetcher.prefetchLikely(programs);
     }
 
     private void openProgram(Project project, ApiEndpoint endpoint, RemoteProgram program) {
         LOG.info("Opening program: " + program.getFullName() + " from endpoint: " + endpoint.getName());
 
-        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Loading Program") {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Loading Program", true) {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 indicator.setIndeterminate(true);
@@ -148,7 +157,9 @@ public class ConnectAction extends AnAction {
                         String errorMessage = "Failed to load program: " + program.getFullName();
 
                         // Provide more specific error messages based on the exception
-                        if (ex.getMessage().contains("Connection refused") || ex.getMessage().contains("ConnectException")) {
+                        if (ex instanceof EndpointUnavailableException) {
+                            errorMessage += "\n\n" + ex.getMessage() + ". The server might be overloaded.";
+                        } else if (ex.getMessage().contains("Connection refused") || ex.getMessage().contains("ConnectException")) {
                             errorMessage += "\n\nThe server appears to be offline or unreachable. Please check that the server is running and that you can access it from your network.";
                         } else if (ex.getMessage().contains("Authentication failed") || ex.getMessage().contains("401")) {
                             errorMessage += "\n\nAuthentication failed. Please check your username and password in the API Editor Settings.";
@@ -0,0 +1,266 @@
+package com.chiplueck.apieditor.actions;
+
+import com.chiplueck.apieditor.fs.ProgramSearchIndex;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopup;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.JBPopupListener;
+import com.intellij.openapi.ui.popup.LightweightWindowEvent;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Popup for picking a program from an endpoint's listing, however large. Typing searches the listing's
+ * index in the background, and the list only holds the results scrolled to so far: the next page is
+ * taken from the search when the end of the list comes into view.
+ */
+class ProgramPicker {
+    private static final int PAGE_SIZE = 100;
+    // Keystrokes closer together than this start a single search
+    private static final int SEARCH_DELAY_MS = 80;
+
+    private final Project project;
+    private final String title;
+    private final ProgramSearchIndex index;
+    private final Consumer<RemoteProgram> onChosen;
+    private final SearchTextField searchField = new SearchTextField(false);
+    private final DefaultListModel<RemoteProgram> listModel = new DefaultListModel<>();
+    private final JBList<RemoteProgram> list = new JBList<>(listModel);
+    private final Timer searchTimer = new Timer(SEARCH_DELAY_MS, e -> startSearch());
+    private JBPopup popup;
+
+    // Accessed on the event dispatch thread only
+    private ProgramSearchIndex.Search search;
+    // Counts the searches, so the pages of a superseded one are dropped
+    private int searchCount;
+    private boolean loading;
+
+    /**
+     * Creates a picker.
+     *
+     * @param project The current project
+     * @param title The popup title
+     * @param index The search index over the programs to pick from
+     * @param onChosen Called on the event dispatch thread with the chosen program
+     */
+    ProgramPicker(Project project, String title, ProgramSearchIndex index, Consumer<RemoteProgram> onChosen) {
+        this.project = project;
+        this.title = title;
+        this.index = index;
+        this.onChosen = onChosen;
+    }
+
+    /**
+     * Calls a listener with the highlighted program, or null, whenever the highlight moves.
+     *
+     * @param listener The listener
+     */
+    void addHighlightListener(Consumer<RemoteProgram> listener) {
+        list.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                listener.accept(list.getSelectedValue());
+            }
+        });
+    }
+
+    /**
+     * Shows the popup, listing all programs by name until something is typed.
+     *
+     * @return The popup
+     */
+    JBPopup show() {
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setEmptyText("Searching...");
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value instanceof RemoteProgram) {
+                    setText(((RemoteProgram) value).getFullName());
+                }
+                return this;
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    choose();
+                }
+            }
+        });
+        list.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    choose();
+                }
+            }
+        });
+
+        JBScrollPane scrollPane = new JBScrollPane(list);
+        scrollPane.getViewport().addChangeListener(e -> loadMoreIfVisible());
+
+        searchTimer.setRepeats(false);
+        searchField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        // The list is navigated from the search field, so typing never loses the focus
+        searchField.getTextEditor().addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        moveSelection(1);
+                        break;
+                    case KeyEvent.VK_UP:
+                        moveSelection(-1);
+                        break;
+                    case KeyEvent.VK_PAGE_DOWN:
+                        moveSelection(Math.max(1, list.getVisibleRowCount()));
+                        break;
+                    case KeyEvent.VK_PAGE_UP:
+                        moveSelection(-Math.max(1, list.getVisibleRowCount()));
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        choose();
+                        break;
+                    default:
+                        return;
+                }
+                e.consume();
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(searchField, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.setPreferredSize(new Dimension(500, 400));
+
+        popup = JBPopupFactory.getInstance()
+                .createComponentPopupBuilder(panel, searchField)
+                .setTitle(title)
+                .setResizable(true)
+                .setMovable(true)
+                .setRequestFocus(true)
+                .setMinSize(new Dimension(300, 200))
+                .setDimensionServiceKey(project, "ApiEditor.ProgramPicker", true)
+                .createPopup();
+        popup.addListener(new JBPopupListener() {
+            @Override
+            public void onClosed(@NotNull LightweightWindowEvent event) {
+                searchTimer.stop();
+                searchCount++;
+            }
+        });
+        popup.showCenteredInCurrentWindow(project);
+        startSearch();
+        return popup;
+    }
+
+    private void startSearch() {
+        int count = ++searchCount;
+        String query = searchField.getText();
+        loading = true;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            ProgramSearchIndex.Search newSearch = index.search(query != null ? query : "");
+            List<RemoteProgram> page = newSearch.next(PAGE_SIZE);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (count != searchCount) {
+                    return;
+                }
+                search = newSearch;
+                loading = false;
+                listModel.clear();
+                list.setEmptyText("No matching programs");
+                addPage(page);
+                if (!listModel.isEmpty()) {
+                    list.setSelectedIndex(0);
+                    list.ensureIndexIsVisible(0);
+                }
+            });
+        });
+    }
+
+    /**
+     * Takes the next page of the current search, unless one is already being taken or the search is exhausted.
+     */
+    private void loadNextPage() {
+        if (loading || search == null || search.isExhausted()) {
+            return;
+        }
+        loading = true;
+        int count = searchCount;
+        ProgramSearchIndex.Search current = search;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            List<RemoteProgram> page = current.next(PAGE_SIZE);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (count != searchCount) {
+                    return;
+                }
+                loading = false;
+                addPage(page);
+            });
+        });
+    }
+
+    private void addPage(List<RemoteProgram> page) {
+        if (!page.isEmpty()) {
+            listModel.addAll(page);
+        }
+        loadMoreIfVisible();
+    }
+
+    /**
+     * Keeps at least half a page of results beyond the last visible row.
+     */
+    private void loadMoreIfVisible() {
+        if (list.getLastVisibleIndex() >= listModel.getSize() - PAGE_SIZE / 2) {
+            loadNextPage();
+        }
+    }
+
+    private void moveSelection(int delta) {
+        if (listModel.isEmpty()) {
+            return;
+        }
+        int selected = Math.max(0, Math.min(listModel.getSize() - 1, list.getSelectedIndex() + delta));
+        list.setSelectedIndex(selected);
+        list.ensureIndexIsVisible(selected);
+        loadMoreIfVisible();
+    }
+
+    private void choose() {
+        RemoteProgram program = list.getSelectedValue();
+        if (program == null) {
+            return;
+        }
+        popup.closeOk(null);
+        onChosen.accept(program);
+    }
+}
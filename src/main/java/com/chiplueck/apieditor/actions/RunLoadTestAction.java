@@ -0,0 +1,64 @@
+package com.chiplueck.apieditor.actions;
+
+import com.chiplueck.apieditor.fs.ApiEditorFileSystem;
+import com.chiplueck.apieditor.loadtest.LoadTestDriver;
+import com.chiplueck.apieditor.loadtest.LoadTestReport;
+import com.chiplueck.apieditor.loadtest.MockProgramServer;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Internal action that runs a load test against an embedded mock program server
+ * and shows the latency percentiles and throughput.
+ */
+public class RunLoadTestAction extends AnAction {
+    private static final Logger LOG = Logger.getInstance(RunLoadTestAction.class);
+
+    private static final int CATALOG_SIZE = 2_000;
+    private static final int CONTENT_SIZE = 16 * 1024;
+    private static final int LATENCY_MS = 20;
+    private static final int LATENCY_JITTER_MS = 30;
+    private static final double ERROR_RATE = 0.01;
+    private static final int CONCURRENCY = 32;
+    private static final int CYCLES = 1_000;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Running API Editor Load Test", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                try (MockProgramServer server = new MockProgramServer(CATALOG_SIZE, CONTENT_SIZE)) {
+                    server.setLatency(LATENCY_MS, LATENCY_JITTER_MS);
+                    server.setErrorRate(ERROR_RATE);
+
+                    LoadTestReport report = new LoadTestDriver(server, ApiEditorFileSystem.getInstance())
+                            .run(CONCURRENCY, CYCLES, indicator);
+                    LOG.info("Load test finished:\n" + report);
+
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        Messages.showInfoMessage(project, report.toString(), "Load Test Results");
+                    });
+                } catch (IOException ex) {
+                    LOG.warn("Load test failed", ex);
+
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        Messages.showErrorDialog(project, "Load test failed: " + ex.getMessage(), "Load Test Error");
+                    });
+                }
+            }
+        });
+    }
+}
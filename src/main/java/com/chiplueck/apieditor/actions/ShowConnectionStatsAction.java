@@ -0,0 +1,45 @@
+package com.chiplueck.apieditor.actions;
+
+import com.chiplueck.apieditor.api.TransportStats;
+import com.chiplueck.apieditor.cache.CacheStats;
+import com.chiplueck.apieditor.fs.ApiEditorFileSystem;
+import com.chiplueck.apieditor.metrics.OperationStats;
+import com.chiplueck.apieditor.services.ApiMetricsService;
+import com.chiplueck.apieditor.services.HttpTransportService;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Action that shows the connection pool statistics of the shared HTTP transports,
+ * the request metrics per endpoint and operation, and the statistics of the in-memory program caches.
+ */
+public class ShowConnectionStatsAction extends AnAction {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        List<TransportStats> stats = HttpTransportService.getInstance().getStats();
+
+        StringBuilder message = new StringBuilder();
+        if (stats.isEmpty()) {
+            message.append("No API endpoint has been contacted yet.\n");
+        }
+        for (TransportStats endpointStats : stats) {
+            message.append(endpointStats).append('\n');
+        }
+        message.append('\n');
+        for (OperationStats operationStats : ApiMetricsService.getInstance().getOperationStats()) {
+            message.append(operationStats).append('\n');
+        }
+        message.append('\n');
+        for (CacheStats cacheStats : ApiEditorFileSystem.getInstance().getCacheStats()) {
+            message.append(cacheStats).append('\n');
+        }
+        Messages.showInfoMessage(project, message.toString().trim(), "Connection Statistics");
+    }
+}
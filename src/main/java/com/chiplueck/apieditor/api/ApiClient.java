@@ -1,9 +1,14 @@
 package com.chiplueck.apieditor.api;
 
+import com.chiplueck.apieditor.model.ListingPage;
 import com.chiplueck.apieditor.model.RemoteProgram;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for interacting with the remote API.
@@ -15,7 +20,32 @@ public interface ApiClient {
      * @return A list of RemoteProgram objects
      * @throws IOException If an error occurs during the API call
      */
-    List<RemoteProgram> listPrograms() throws IOException;
+    default List<RemoteProgram> listPrograms() throws IOException {
+        List<RemoteProgram> programs = new ArrayList<>();
+        listPrograms(programs::add);
+        return programs;
+    }
+
+    /**
+     * Lists all programs available on the remote API, handing each program to the consumer
+     * as soon as it has been read instead of collecting the whole listing first.
+     *
+     * @param consumer Receives every listed program in server order
+     * @throws IOException If an error occurs during the API call
+     */
+    void listPrograms(Consumer<RemoteProgram> consumer) throws IOException;
+
+    /**
+     * Lists one page of the programs available on the remote API.
+     * Servers that don't support paging or delta listings return everything in a single, non-delta page.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param changedSince Only list programs changed after this time (milliseconds since epoch), or 0 for all
+     * @param consumer Receives every listed program of the page
+     * @return The page metadata, including the cursor of the next page and deleted program IDs
+     * @throws IOException If an error occurs during the API call
+     */
+    ListingPage listProgramPage(@Nullable String cursor, long changedSince, Consumer<RemoteProgram> consumer) throws IOException;
 
     /**
      * Gets the content of a specific program.
@@ -24,7 +54,28 @@ public interface ApiClient {
      * @return The RemoteProgram with its content populated
      * @throws IOException If an error occurs during the API call
      */
-    RemoteProgram getProgram(String programId) throws IOException;
+    default RemoteProgram getProgram(String programId) throws IOException {
+        return getProgram(programId, null);
+    }
+
+    /**
+     * Gets the content of a specific program, unless it is unchanged since a version the caller already holds.
+     *
+     * @param programId The ID of the program to retrieve
+     * @param knownVersion The version the caller holds with its content, or null to always fetch the content
+     * @return The RemoteProgram with its content populated, or knownVersion itself if it is still current
+     * @throws IOException If an error occurs during the API call
+     */
+    RemoteProgram getProgram(String programId, @Nullable RemoteProgram knownVersion) throws IOException;
+
+    /**
+     * Gets the content of several programs at once.
+     *
+     * @param programIds The IDs of the programs to retrieve
+     * @return The programs with their content, each once and in the order of the IDs; programs that don't exist are left out
+     * @throws IOException If an error occurs during the API call
+     */
+    List<RemoteProgram> getPrograms(Collection<String> programIds) throws IOException;
 
     /**
      * Saves the content of a program to the remote API.
@@ -33,5 +84,21 @@ public interface ApiClient {
      * @return The updated RemoteProgram
      * @throws IOException If an error occurs during the API call
      */
-    RemoteProgram saveProgram(RemoteProgram program) throws IOException;
+    default RemoteProgram saveProgram(RemoteProgram program) throws IOException {
+        return saveProgram(program, null);
+    }
+
+    /**
+     * Saves the content of a program to the remote API, uploading only the changes against
+     * a version the server is known to hold where the endpoint supports it.
+     *
+     * The save is conditional on the program's lastModified and ETag, those of the version the content is based on;
+     * if the server holds a different version, the save fails with a {@link ProgramConflictException}.
+     *
+     * @param program The program to save
+     * @param baseVersion The version the server holds with its content, or null to always upload the full content
+     * @return The updated RemoteProgram
+     * @throws IOException If an error occurs during the API call
+     */
+    RemoteProgram saveProgram(RemoteProgram program, @Nullable RemoteProgram baseVersion) throws IOException;
 }
@@ -0,0 +1,28 @@
+package com.chiplueck.apieditor.api;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the remote API answered a request with an error status.
+ */
+public class ApiResponseException extends IOException {
+    private final int statusCode;
+
+    public ApiResponseException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public ApiResponseException(int statusCode, String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Gets the HTTP status code the API answered with.
+     * @return The status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
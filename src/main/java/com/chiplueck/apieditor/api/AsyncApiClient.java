@@ -0,0 +1,72 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link ApiClient}.
+ * The returned futures complete exceptionally with an IOException if the API call fails.
+ */
+public interface AsyncApiClient {
+    /**
+     * Lists all programs available on the remote API.
+     *
+     * @return A future completing with the list of RemoteProgram objects
+     */
+    CompletableFuture<List<RemoteProgram>> listProgramsAsync();
+
+    /**
+     * Gets the content of a specific program.
+     *
+     * @param programId The ID of the program to retrieve
+     * @return A future completing with the RemoteProgram with its content populated
+     */
+    default CompletableFuture<RemoteProgram> getProgramAsync(String programId) {
+        return getProgramAsync(programId, null);
+    }
+
+    /**
+     * Gets the content of a specific program, unless it is unchanged since a version the caller already holds.
+     *
+     * @param programId The ID of the program to retrieve
+     * @param knownVersion The version the caller holds with its content, or null to always fetch the content
+     * @return A future completing with the RemoteProgram with its content populated, or knownVersion itself if it is still current
+     */
+    CompletableFuture<RemoteProgram> getProgramAsync(String programId, @Nullable RemoteProgram knownVersion);
+
+    /**
+     * Gets the content of several programs at once.
+     *
+     * @param programIds The IDs of the programs to retrieve
+     * @return A future completing with the programs with their content, each once and in the order of the IDs;
+     * programs that don't exist are left out
+     */
+    CompletableFuture<List<RemoteProgram>> getProgramsAsync(Collection<String> programIds);
+
+    /**
+     * Saves the content of a program to the remote API.
+     *
+     * @param program The program to save
+     * @return A future completing with the updated RemoteProgram
+     */
+    default CompletableFuture<RemoteProgram> saveProgramAsync(RemoteProgram program) {
+        return saveProgramAsync(program, null);
+    }
+
+    /**
+     * Saves the content of a program to the remote API, uploading only the changes against
+     * a version the server is known to hold where the endpoint supports it.
+     *
+     * The save is conditional on the program's lastModified and ETag, those of the version the content is based on;
+     * if the server holds a different version, the save fails with a {@link ProgramConflictException}.
+     *
+     * @param program The program to save
+     * @param baseVersion The version the server holds with its content, or null to always upload the full content
+     * @return A future completing with the updated RemoteProgram, or exceptionally with a ProgramConflictException
+     */
+    CompletableFuture<RemoteProgram> saveProgramAsync(RemoteProgram program, @Nullable RemoteProgram baseVersion);
+}
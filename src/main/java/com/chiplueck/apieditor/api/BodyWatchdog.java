@@ -0,0 +1,168 @@
+package com.chiplueck.apieditor.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the time spent reading a streamed response body. The request timeout of java.net.http only runs
+ * until the response headers arrived, so a server that stalls in the middle of a body would block the reader
+ * for good. The watchdog closes the body once no bytes arrived for the idle timeout, or once the request's
+ * deadline passed, and the blocked read then fails with an HttpTimeoutException.
+ */
+final class BodyWatchdog {
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private BodyWatchdog() {
+    }
+
+    /**
+     * Wraps a body handler to watch the bodies it creates.
+     *
+     * @param bodyHandler The body handler
+     * @param idleTimeoutMs The longest time to wait for the next bytes of the body
+     * @param deadlineMs The longest time from now until the body was read, or 0 for no deadline
+     * @return The watching body handler
+     */
+    static HttpResponse.BodyHandler<InputStream> watch(HttpResponse.BodyHandler<InputStream> bodyHandler,
+                                                        long idleTimeoutMs, long deadlineMs) {
+        long deadlineNanos = deadlineMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs) : 0;
+        return responseInfo -> HttpResponse.BodySubscribers.mapping(bodyHandler.apply(responseInfo),
+                body -> new WatchedInputStream(body, TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs), deadlineMs > 0, deadlineNanos));
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "API Editor response watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bodies are usually read long before they are checked, don't keep their canceled checks queued
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static class WatchedInputStream extends FilterInputStream {
+        private final long idleTimeoutNanos;
+        private final boolean hasDeadline;
+        private final long deadlineNanos;
+        private volatile long lastReadNanos = System.nanoTime();
+        private volatile String expired;
+        // Guarded by this
+        private ScheduledFuture<?> check;
+        private boolean closed;
+
+        WatchedInputStream(InputStream body, long idleTimeoutNanos, boolean hasDeadline, long deadlineNanos) {
+            super(body);
+            this.idleTimeoutNanos = idleTimeoutNanos;
+            this.hasDeadline = hasDeadline;
+            this.deadlineNanos = deadlineNanos;
+            schedule(System.nanoTime());
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+            received();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+            received();
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped;
+            try {
+                skipped = super.skip(n);
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+            received();
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                closed = true;
+                if (check != null) {
+                    check.cancel(false);
+                }
+            }
+            super.close();
+        }
+
+        /**
+         * Notes that bytes arrived. A read that returned after the body was closed by the watchdog
+         * may have seen a truncated body, so it fails as well.
+         */
+        private void received() throws HttpTimeoutException {
+            lastReadNanos = System.nanoTime();
+            if (expired != null) {
+                throw new HttpTimeoutException(expired);
+            }
+        }
+
+        private IOException timeoutOr(IOException error) {
+            return expired != null ? new HttpTimeoutException(expired) : error;
+        }
+
+        private synchronized void schedule(long now) {
+            if (closed) {
+                return;
+            }
+            long due = lastReadNanos + idleTimeoutNanos;
+            if (hasDeadline && deadlineNanos - due < 0) {
+                due = deadlineNanos;
+            }
+            check = SCHEDULER.schedule(this::check, Math.max(0, due - now), TimeUnit.NANOSECONDS);
+        }
+
+        private void check() {
+            long now = System.nanoTime();
+            if (hasDeadline && now - deadlineNanos >= 0) {
+                expire("The response was not received within the request deadline");
+            } else if (now - lastReadNanos >= idleTimeoutNanos) {
+                expire("No response data was received for " + TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) + "ms");
+            } else {
+                schedule(now);
+            }
+        }
+
+        private void expire(String message) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                expired = message;
+            }
+            try {
+                // Fails a blocked read of the body
+                in.close();
+            } catch (IOException e) {
+                // The body is abandoned anyway
+            }
+        }
+    }
+}
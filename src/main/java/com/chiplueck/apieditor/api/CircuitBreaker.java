@@ -0,0 +1,97 @@
+package com.chiplueck.apieditor.api;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for the requests to a single endpoint.
+ * After a run of consecutive transient failures the breaker opens and requests fail fast with an
+ * {@link EndpointUnavailableException} instead of each waiting for the server. Once the open period
+ * has passed, a single request is let through as a trial: its success closes the breaker, its failure
+ * opens it again for twice as long, up to a minute. Failures of requests that were already under way
+ * when the breaker opened don't extend the open period.
+ */
+public class CircuitBreaker {
+    private static final Logger LOG = Logger.getInstance(CircuitBreaker.class);
+    static final int FAILURE_THRESHOLD = 5;
+    private static final long MIN_OPEN_MS = 5000;
+    private static final long MAX_OPEN_MS = 60000;
+
+    private final String endpointName;
+    private int consecutiveFailures;
+    private long openMs;
+    // 0 while the breaker is closed; while it is open, the time at which the next request is let through
+    private long openUntilNanos;
+
+    public CircuitBreaker(String endpointName) {
+        this.endpointName = endpointName;
+    }
+
+    /**
+     * Checks whether a request may be sent. After the open period, the first caller is let through as
+     * the trial request; the others keep failing fast until it reported its outcome or the period passed again.
+     *
+     * @return true if the request is the trial request, whose failure must be recorded as such
+     * @throws EndpointUnavailableException If the breaker is open
+     */
+    public synchronized boolean acquire() throws EndpointUnavailableException {
+        if (openUntilNanos == 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - openUntilNanos < 0) {
+            throw new EndpointUnavailableException(endpointName, TimeUnit.NANOSECONDS.toMillis(openUntilNanos - now));
+        }
+        openUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(openMs);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Letting a trial request through to endpoint " + endpointName);
+        }
+        return true;
+    }
+
+    /**
+     * Records that the server answered a request, closing the breaker.
+     */
+    public synchronized void recordSuccess() {
+        if (openUntilNanos != 0) {
+            LOG.info("Endpoint " + endpointName + " answered again, closing its circuit breaker");
+        }
+        consecutiveFailures = 0;
+        openMs = 0;
+        openUntilNanos = 0;
+    }
+
+    /**
+     * Records a transient failure: a connection error, a timeout or an overloaded server.
+     *
+     * @param retryAfterMs How long the server asked to wait with Retry-After, or 0; the breaker stays open at least that long
+     * @param trial Whether the request was let through as the trial request, see {@link #acquire()}
+     */
+    public synchronized void recordFailure(long retryAfterMs, boolean trial) {
+        consecutiveFailures++;
+        if (openUntilNanos != 0) {
+            if (!trial) {
+                // Sent before the breaker opened, it says nothing about whether the server recovered since
+                return;
+            }
+            openMs = Math.min(MAX_OPEN_MS, openMs * 2);
+        } else if (consecutiveFailures >= FAILURE_THRESHOLD) {
+            openMs = MIN_OPEN_MS;
+            LOG.warn("Endpoint " + endpointName + " failed " + consecutiveFailures
+                    + " requests in a row, failing requests fast for " + openMs / 1000 + "s");
+        } else {
+            return;
+        }
+        openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(openMs, retryAfterMs));
+    }
+
+    /**
+     * Checks whether requests currently fail fast.
+     *
+     * @return true if the breaker is open and no trial request is due yet
+     */
+    public synchronized boolean isOpen() {
+        return openUntilNanos != 0 && System.nanoTime() - openUntilNanos < 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.chiplueck.apieditor.api;
+
+import javax.net.ssl.*;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+
+/**
+ * SSLContext that delegates to another context and reports every SSLEngine it creates.
+ * HttpClient creates one engine per new TLS connection, so this gives us a cheap
+ * count of the connections that were opened instead of reused from the pool.
+ */
+class ConnectionCountingSslContext extends SSLContext {
+
+    ConnectionCountingSslContext(SSLContext delegate, Runnable onNewConnection) {
+        super(new CountingSpi(delegate, onNewConnection), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    private static class CountingSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final Runnable onNewConnection;
+
+        CountingSpi(SSLContext delegate, Runnable onNewConnection) {
+            this.delegate = delegate;
+            this.onNewConnection = onNewConnection;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+            delegate.init(km, tm, sr);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            onNewConnection.run();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            onNewConnection.run();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
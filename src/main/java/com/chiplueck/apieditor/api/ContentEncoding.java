@@ -0,0 +1,146 @@
+package com.chiplueck.apieditor.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP content coding support: gzip response bodies are decoded while they are read,
+ * and request bodies can be gzipped before they are sent.
+ * Byte counts on the wire and after decoding are tracked to measure the compression ratio.
+ */
+final class ContentEncoding {
+    static final String GZIP = "gzip";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Creates a body handler that streams the response body and transparently decodes a gzip content coding.
+     *
+     * @param wireBytes Receives the number of body bytes received, as they are read
+     * @param decodedBytes Receives the number of body bytes after decoding, as they are read
+     * @return The body handler
+     */
+    static HttpResponse.BodyHandler<InputStream> decodingHandler(LongConsumer wireBytes, LongConsumer decodedBytes) {
+        return responseInfo -> {
+            String encoding = responseInfo.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+            // The mapper must not block, so the decoder is only set up once the body is first read
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                    body -> new CountingInputStream(
+                            new LazyDecodingInputStream(new CountingInputStream(body, wireBytes), encoding),
+                            decodedBytes));
+        };
+    }
+
+    /**
+     * Compresses a request body.
+     *
+     * @param body The uncompressed body
+     * @return The gzip compressed body
+     */
+    static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            // Not thrown by in-memory streams
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static class LazyDecodingInputStream extends FilterInputStream {
+        private final String encoding;
+        private boolean initialized;
+
+        LazyDecodingInputStream(InputStream body, String encoding) {
+            super(body);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public int read() throws IOException {
+            initialize();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            initialize();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            initialize();
+            return super.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return initialized ? super.available() : 0;
+        }
+
+        private void initialize() throws IOException {
+            if (initialized) {
+                return;
+            }
+            initialized = true;
+            if (!GZIP.equals(encoding) && !"x-gzip".equals(encoding)) {
+                return;
+            }
+            // Error and empty responses may be labeled gzip without carrying a gzip stream
+            PushbackInputStream body = new PushbackInputStream(in, 1);
+            int first = body.read();
+            if (first < 0) {
+                in = body;
+                return;
+            }
+            body.unread(first);
+            in = new GZIPInputStream(body);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final LongConsumer counter;
+
+        CountingInputStream(InputStream in, LongConsumer counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.accept(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.accept(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counter.accept(skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.chiplueck.apieditor.api;
+
+import java.io.IOException;
+
+/**
+ * Thrown without sending a request while the endpoint's circuit breaker is open after repeated failures.
+ */
+public class EndpointUnavailableException extends IOException {
+    private final long retryAfterMs;
+
+    public EndpointUnavailableException(String endpointName, long retryAfterMs) {
+        super("Endpoint " + endpointName + " is unavailable after repeated failures, retrying in "
+                + Math.max(1, (retryAfterMs + 999) / 1000) + "s");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Gets the time until the next request is let through to the endpoint.
+     * @return The time in milliseconds
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
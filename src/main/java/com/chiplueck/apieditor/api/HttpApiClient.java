@@ -1,188 +1,1045 @@
 package com.chiplueck.apieditor.api;
 
 import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.ListingPage;
 import com.chiplueck.apieditor.model.RemoteProgram;
-import com.chiplueck.apieditor.services.ApiEndpointService;
+import com.chiplueck.apieditor.services.HttpTransportService;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Implementation of ApiClient that communicates with the remote API via HTTP.
+ * All clients for the same endpoint share one pooled HttpTransport.
+ * Requests that fail transiently are retried with backoff as the {@link RetryPolicy} allows; while the
+ * endpoint's {@link CircuitBreaker} is open, requests fail fast with an {@link EndpointUnavailableException}.
  */
-public class HttpApiClient implements ApiClient {
+public class HttpApiClient implements ApiClient, AsyncApiClient {
     private static final Logger LOG = Logger.getInstance(HttpApiClient.class);
     private static final String PROGRAMS_ENDPOINT = "/";
     private static final String PROGRAM_ENDPOINT = "/%s";
-    private static final int TIMEOUT_MS = 10000;
+    static final String BATCH_ENDPOINT = "/batch";
+    private static final int PAGE_SIZE = 1000;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int MIN_PATCH_CONTENT_LENGTH = 8 * 1024;
+    // Statuses with which a server rejects a patch upload; except for conflicts, the save is then retried as a full upload
+    private static final Set<Integer> PATCH_REJECTED_STATUSES = Set.of(400, 405, 409, 412, 415, 422, 501);
+    // Statuses with which a server rejects a save based on a version it no longer holds
+    private static final Set<Integer> CONFLICT_STATUSES = Set.of(409, 412);
+    private static final Set<Integer> PUT_REJECTED_STATUSES = Set.of(409, 412, 415);
+    private static final Set<Integer> PATCH_UNSUPPORTED_STATUSES = Set.of(405, 501);
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int HTTP_NOT_FOUND = 404;
+    // Statuses with which a server without batch requests answers one
+    private static final Set<Integer> BATCH_UNSUPPORTED_STATUSES = Set.of(404, 405, 501);
+    // Single requests in flight at once when programs are fetched one by one
+    private static final int MAX_PARALLEL_FETCHES = 6;
+
+    // Gson is thread-safe and caches its type adapters, so one instance serves all clients
+    private static final Gson GSON = new Gson();
 
     private final ApiEndpoint endpoint;
-    private final Gson gson;
-    private final ApiEndpointService endpointService;
+    private final HttpTransport transport;
 
     public HttpApiClient(ApiEndpoint endpoint) {
+        this(endpoint, HttpTransportService.getInstance().getTransport(endpoint));
+    }
+
+    public HttpApiClient(ApiEndpoint endpoint, HttpTransport transport) {
         this.endpoint = endpoint;
-        this.gson = new Gson();
-        this.endpointService = ApiEndpointService.getInstance();
+        this.transport = transport;
+    }
+
+    @Override
+    public void listPrograms(Consumer<RemoteProgram> consumer) throws IOException {
+        String cursor = null;
+        do {
+            cursor = listProgramPage(cursor, 0, consumer).getNextCursor();
+        } while (cursor != null);
     }
 
     @Override
-    public List<RemoteProgram> listPrograms() throws IOException {
-        String response = sendRequest("GET", PROGRAMS_ENDPOINT, null);
-        JsonObject jsonObject = gson.fromJson(response, JsonObject.class);
+    public ListingPage listProgramPage(@Nullable String cursor, long changedSince, Consumer<RemoteProgram> consumer) throws IOException {
+        return readPrograms(openRequest("GET", createListingPath(cursor, changedSince), null), consumer);
+    }
 
-        if (!jsonObject.has("programs")) {
-            throw new IOException("Invalid response format: 'programs' field not found");
+    @Override
+    public RemoteProgram getProgram(String programId, @Nullable RemoteProgram knownVersion) throws IOException {
+        String endpoint = String.format(PROGRAM_ENDPOINT, programId);
+        HttpRequest.Builder request = newRequest("GET", endpoint, null);
+        addConditionalHeaders(request, knownVersion);
+        return readProgram(execute(request), knownVersion);
+    }
+
+    @Override
+    public List<RemoteProgram> getPrograms(Collection<String> programIds) throws IOException {
+        try {
+            return getProgramsAsync(programIds).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
         }
+    }
 
-        JsonArray programsArray = jsonObject.getAsJsonArray("programs");
-        List<RemoteProgram> programs = new ArrayList<>();
+    @Override
+    public RemoteProgram saveProgram(RemoteProgram program, @Nullable RemoteProgram baseVersion) throws IOException {
+        String endpoint = String.format(PROGRAM_ENDPOINT, program.getId());
+        byte[] patchBody = createPatchBody(program, baseVersion);
+        if (patchBody != null) {
+            try {
+                return readProgram(execute(newPatchRequest(endpoint, patchBody, baseVersion), PATCH_REJECTED_STATUSES), null);
+            } catch (ApiResponseException e) {
+                if (CONFLICT_STATUSES.contains(e.getStatusCode())) {
+                    throw conflict(program, e);
+                }
+                if (!PATCH_REJECTED_STATUSES.contains(e.getStatusCode())) {
+                    throw e;
+                }
+                patchRejected(program, e);
+            }
+        }
+        return putProgram(program);
+    }
 
-        for (JsonElement element : programsArray) {
-            RemoteProgram program = gson.fromJson(element, RemoteProgram.class);
-            programs.add(program);
+    private RemoteProgram putProgram(RemoteProgram program) throws IOException {
+        String endpoint = String.format(PROGRAM_ENDPOINT, program.getId());
+        byte[] body = JsonBodies.createContentBody(program.getContentBytes(), program.getLastModified());
+        boolean compressed = compressesUpload(body);
+        try {
+            return readProgram(execute(newPutRequest(endpoint, body, program),
+                    compressed ? PUT_REJECTED_STATUSES : CONFLICT_STATUSES), null);
+        } catch (ApiResponseException e) {
+            if (CONFLICT_STATUSES.contains(e.getStatusCode())) {
+                throw conflict(program, e);
+            }
+            if (!compressed || e.getStatusCode() != HTTP_UNSUPPORTED_MEDIA_TYPE) {
+                throw e;
+            }
+            uploadCompressionRejected();
+            transport.getMetrics().forOperation("put").recordRetry();
+            return putProgram(program);
         }
+    }
+
+    @Override
+    public CompletableFuture<List<RemoteProgram>> listProgramsAsync() {
+        return listPagesAsync(null, new ArrayList<>());
+    }
 
-        return programs;
+    private CompletableFuture<List<RemoteProgram>> listPagesAsync(@Nullable String cursor, List<RemoteProgram> programs) {
+        return openRequestAsync("GET", createListingPath(cursor, 0), null)
+                .thenApply(unchecked(body -> readPrograms(body, programs::add)))
+                .thenCompose(page -> page.getNextCursor() == null
+                        ? CompletableFuture.completedFuture(programs)
+                        : listPagesAsync(page.getNextCursor(), programs));
     }
 
     @Override
-    public RemoteProgram getProgram(String programId) throws IOException {
+    public CompletableFuture<RemoteProgram> getProgramAsync(String programId, @Nullable RemoteProgram knownVersion) {
         String endpoint = String.format(PROGRAM_ENDPOINT, programId);
-        String response = sendRequest("GET", endpoint, null);
-        JsonObject jsonObject = gson.fromJson(response, JsonObject.class);
+        HttpRequest.Builder request;
+        try {
+            request = newRequest("GET", endpoint, null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(connectionError(this.endpoint.getUrl() + endpoint, e));
+        }
+        addConditionalHeaders(request, knownVersion);
+        return executeAsync(request).thenApply(unchecked(response -> readProgram(response, knownVersion)));
+    }
 
-        if (!jsonObject.has("program")) {
-            throw new IOException("Invalid response format: 'program' field not found");
+    /**
+     * Gets several programs with batch requests if the server advertised them with its listing,
+     * otherwise with single requests of which a few are in flight at a time.
+     */
+    @Override
+    public CompletableFuture<List<RemoteProgram>> getProgramsAsync(Collection<String> programIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(programIds));
+        int batchLimit = transport.getBatchLimit();
+        if (batchLimit <= 0 || ids.size() < 2) {
+            return new ParallelFetch<>(ids, this::getIfExistsAsync).start();
         }
 
-        JsonObject programObject = jsonObject.getAsJsonObject("program");
-        return gson.fromJson(programObject, RemoteProgram.class);
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += batchLimit) {
+            batches.add(ids.subList(i, Math.min(ids.size(), i + batchLimit)));
+        }
+        return new ParallelFetch<>(batches, this::getBatchAsync).start()
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ApiResponseException
+                            && BATCH_UNSUPPORTED_STATUSES.contains(((ApiResponseException) cause).getStatusCode())) {
+                        LOG.info("Endpoint " + endpoint.getName() + " does not support batch requests, fetching programs one by one from now on");
+                        transport.setBatchLimit(0);
+                        transport.getMetrics().forOperation("batch").recordRetry();
+                        return new ParallelFetch<>(ids, this::getIfExistsAsync).start();
+                    }
+                    return CompletableFuture.failedFuture(error);
+                });
+    }
+
+    /**
+     * Fetches one batch of programs, in the order of the IDs. Programs the server doesn't have are left out of its response.
+     */
+    private CompletableFuture<List<RemoteProgram>> getBatchAsync(List<String> programIds) {
+        JsonObject requestBody = new JsonObject();
+        JsonArray ids = new JsonArray(programIds.size());
+        programIds.forEach(ids::add);
+        requestBody.add("ids", ids);
+
+        HttpRequest.Builder request;
+        try {
+            request = newRequest("POST", BATCH_ENDPOINT, requestBody.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(connectionError(endpoint.getUrl() + BATCH_ENDPOINT, e));
+        }
+        return executeAsync(request, BATCH_UNSUPPORTED_STATUSES)
+                .thenApply(unchecked(response -> {
+                    // The server answers in any order
+                    Map<String, RemoteProgram> programsById = new HashMap<>();
+                    readPrograms(response.body(), program -> programsById.put(program.getId(), program));
+                    List<RemoteProgram> programs = new ArrayList<>(programsById.size());
+                    for (String programId : programIds) {
+                        RemoteProgram program = programsById.get(programId);
+                        if (program != null) {
+                            programs.add(program);
+                        }
+                    }
+                    return programs;
+                }));
+    }
+
+    /**
+     * Fetches a single program for a batch, answering with no program rather than failing if it doesn't exist.
+     */
+    private CompletableFuture<List<RemoteProgram>> getIfExistsAsync(String programId) {
+        String path = String.format(PROGRAM_ENDPOINT, programId);
+        HttpRequest.Builder request;
+        try {
+            request = newRequest("GET", path, null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(connectionError(endpoint.getUrl() + path, e));
+        }
+        return executeAsync(request, Set.of(HTTP_NOT_FOUND))
+                .thenApply(unchecked(response -> List.of(readProgram(response, null))))
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ApiResponseException && ((ApiResponseException) cause).getStatusCode() == HTTP_NOT_FOUND) {
+                        return CompletableFuture.completedFuture(Collections.emptyList());
+                    }
+                    return CompletableFuture.failedFuture(error);
+                });
     }
 
     @Override
-    public RemoteProgram saveProgram(RemoteProgram program) throws IOException {
+    public CompletableFuture<RemoteProgram> saveProgramAsync(RemoteProgram program, @Nullable RemoteProgram baseVersion) {
+        String endpoint = String.format(PROGRAM_ENDPOINT, program.getId());
+        byte[] patchBody = createPatchBody(program, baseVersion);
+        if (patchBody == null) {
+            return putProgramAsync(program);
+        }
+
+        HttpRequest.Builder request;
+        try {
+            request = newPatchRequest(endpoint, patchBody, baseVersion);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(connectionError(this.endpoint.getUrl() + endpoint, e));
+        }
+        return executeAsync(request, PATCH_REJECTED_STATUSES)
+                .thenApply(unchecked(response -> readProgram(response, null)))
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ApiResponseException
+                            && CONFLICT_STATUSES.contains(((ApiResponseException) cause).getStatusCode())) {
+                        return CompletableFuture.failedFuture(conflict(program, (ApiResponseException) cause));
+                    }
+                    if (cause instanceof ApiResponseException
+                            && PATCH_REJECTED_STATUSES.contains(((ApiResponseException) cause).getStatusCode())) {
+                        patchRejected(program, (ApiResponseException) cause);
+                        return putProgramAsync(program);
+                    }
+                    return CompletableFuture.failedFuture(error);
+                });
+    }
+
+    private CompletableFuture<RemoteProgram> putProgramAsync(RemoteProgram program) {
         String endpoint = String.format(PROGRAM_ENDPOINT, program.getId());
+        byte[] body = JsonBodies.createContentBody(program.getContentBytes(), program.getLastModified());
+        boolean compressed = compressesUpload(body);
+        HttpRequest.Builder request;
+        try {
+            request = newPutRequest(endpoint, body, program);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(connectionError(this.endpoint.getUrl() + endpoint, e));
+        }
+        return executeAsync(request, compressed ? PUT_REJECTED_STATUSES : CONFLICT_STATUSES)
+                .thenApply(unchecked(response -> readProgram(response, null)))
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ApiResponseException
+                            && CONFLICT_STATUSES.contains(((ApiResponseException) cause).getStatusCode())) {
+                        return CompletableFuture.failedFuture(conflict(program, (ApiResponseException) cause));
+                    }
+                    if (compressed && cause instanceof ApiResponseException
+                            && ((ApiResponseException) cause).getStatusCode() == HTTP_UNSUPPORTED_MEDIA_TYPE) {
+                        uploadCompressionRejected();
+                        transport.getMetrics().forOperation("put").recordRetry();
+                        return putProgramAsync(program);
+                    }
+                    return CompletableFuture.failedFuture(error);
+                });
+    }
+
+    /**
+     * Makes a program request conditional on the version the caller already holds.
+     */
+    private static void addConditionalHeaders(HttpRequest.Builder request, @Nullable RemoteProgram knownVersion) {
+        if (knownVersion == null) {
+            return;
+        }
+        if (knownVersion.getEtag() != null) {
+            request.header("If-None-Match", knownVersion.getEtag());
+        }
+        if (knownVersion.getLastModified() > 0) {
+            request.header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    Instant.ofEpochMilli(knownVersion.getLastModified()).atZone(ZoneOffset.UTC)));
+        }
+    }
+
+    /**
+     * Reads a single program response.
+     *
+     * @param response The response of a program request
+     * @param knownVersion The version sent in the conditional headers, or null
+     * @return The program from the response, or the known version if the server answered "304 Not Modified"
+     * @throws IOException If the body cannot be read or has an invalid format
+     */
+    private RemoteProgram readProgram(HttpResponse<InputStream> response, @Nullable RemoteProgram knownVersion) throws IOException {
+        if (response.statusCode() == HTTP_NOT_MODIFIED) {
+            response.body().close();
+            if (knownVersion == null) {
+                throw new IOException("Invalid response: 'Not Modified' for an unconditional request");
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Program " + knownVersion.getId() + " not modified, reusing the known version");
+            }
+            return knownVersion;
+        }
+
+        RemoteProgram program = parseProgram(response.body());
+        response.headers().firstValue("ETag").ifPresent(program::setEtag);
+        return program;
+    }
+
+    /**
+     * Builds the body of a patch upload against the version the server is known to hold.
+     *
+     * @return The body, or null if the program should be uploaded in full, e.g. because the endpoint
+     * doesn't accept patches, the content is small or the patch wouldn't be smaller than the content
+     */
+    @Nullable
+    private byte[] createPatchBody(RemoteProgram program, @Nullable RemoteProgram baseVersion) {
+        byte[] content = program.getContentBytes();
+        if (baseVersion == null || baseVersion.getContentBytes() == null || content == null
+                || !endpoint.isPatchUploads() || !transport.isPatchSupported()
+                || content.length < MIN_PATCH_CONTENT_LENGTH) {
+            return null;
+        }
+        JsonArray edits = LinePatch.createEdits(baseVersion.getContentBytes(), content);
+        if (edits == null) {
+            return null;
+        }
+
         JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("content", program.getContent());
+        requestBody.addProperty("baseLastModified", baseVersion.getLastModified());
+        requestBody.add("edits", edits);
+        byte[] patchBody = requestBody.toString().getBytes(StandardCharsets.UTF_8);
+        if (patchBody.length >= content.length) {
+            return null;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Uploading " + edits.size() + " line edits instead of " + content.length + " bytes");
+        }
+        return patchBody;
+    }
+
+    private HttpRequest.Builder newPatchRequest(String path, byte[] patchBody, RemoteProgram baseVersion) throws IOException {
+        HttpRequest.Builder request = newRequest("PATCH", path, patchBody);
+        if (baseVersion.getEtag() != null) {
+            request.header("If-Match", baseVersion.getEtag());
+        }
+        return request;
+    }
 
-        String response = sendRequest("PUT", endpoint, requestBody.toString());
-        JsonObject jsonObject = gson.fromJson(response, JsonObject.class);
+    /**
+     * Creates a full upload request. It carries the lastModified of the version the content is based on
+     * in its body and, if the server sent one, the version's ETag as an If-Match precondition.
+     */
+    private HttpRequest.Builder newPutRequest(String path, byte[] body, RemoteProgram program) throws IOException {
+        HttpRequest.Builder request = newRequest("PUT", path, body);
+        if (program.getEtag() != null) {
+            request.header("If-Match", program.getEtag());
+        }
+        return request;
+    }
 
-        if (!jsonObject.has("program")) {
-            throw new IOException("Invalid response format: 'program' field not found");
+    private ProgramConflictException conflict(RemoteProgram program, ApiResponseException e) {
+        LOG.info("Save of program " + program.getId() + " to endpoint " + endpoint.getName()
+                + " was rejected with status " + e.getStatusCode() + ", the program was changed on the server");
+        RemoteProgram serverVersion = e instanceof ProgramConflictException
+                ? ((ProgramConflictException) e).getServerVersion() : null;
+        if (serverVersion != null && !program.getId().equals(serverVersion.getId())) {
+            serverVersion = null;
         }
+        return new ProgramConflictException(e.getStatusCode(),
+                "Program " + program.getFullName() + " was changed on the server", serverVersion);
+    }
+
+    /**
+     * Reads the version of the program the server holds from the body of a save rejected as conflicting.
+     *
+     * @param response The "409 Conflict" or "412 Precondition Failed" response
+     * @param body The response body, already read
+     * @return The server version with its content, or null if the server only sent an error message
+     */
+    @Nullable
+    private RemoteProgram readServerVersion(HttpResponse<InputStream> response, String body) {
+        if (!body.startsWith("{")) {
+            return null;
+        }
+        RemoteProgram serverVersion;
+        try {
+            serverVersion = parseProgram(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            return null;
+        }
+        if (serverVersion.getContentBytes() == null) {
+            return null;
+        }
+        response.headers().firstValue("ETag").ifPresent(serverVersion::setEtag);
+        return serverVersion;
+    }
+
+    private void patchRejected(RemoteProgram program, ApiResponseException e) {
+        transport.getMetrics().forOperation("patch").recordRetry();
+        if (e.getStatusCode() == HTTP_UNSUPPORTED_MEDIA_TYPE && transport.isUploadCompressionSupported()
+                && endpoint.getUploadCompressionThresholdKb() > 0) {
+            // Possibly the compression rather than the patch; the full upload follows uncompressed
+            uploadCompressionRejected();
+        } else if (PATCH_UNSUPPORTED_STATUSES.contains(e.getStatusCode())) {
+            LOG.info("Endpoint " + endpoint.getName() + " does not support patch uploads, using full uploads from now on");
+            transport.setPatchSupported(false);
+        } else {
+            LOG.info("Patch for program " + program.getId() + " was rejected with status " + e.getStatusCode()
+                    + ", uploading the full content");
+        }
+    }
+
+    /**
+     * Builds the listing path. Paging and delta parameters are only sent to endpoints
+     * configured for incremental sync; a cursor handed out by the server is always passed back.
+     */
+    private String createListingPath(@Nullable String cursor, long changedSince) {
+        StringBuilder path = new StringBuilder(PROGRAMS_ENDPOINT);
+        char separator = '?';
+        if (endpoint.isIncrementalSync()) {
+            path.append(separator).append("limit=").append(PAGE_SIZE);
+            separator = '&';
+            if (changedSince > 0) {
+                path.append(separator).append("since=").append(changedSince);
+            }
+        }
+        if (cursor != null) {
+            path.append(separator).append("cursor=").append(URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+        }
+        return path.toString();
+    }
+
+    /**
+     * Decodes the programs of a listing response straight off the stream, without building a JSON tree.
+     *
+     * @param body The response body, closed when done
+     * @param consumer Receives every listed program
+     * @return The page metadata
+     * @throws IOException If the body cannot be read or has an invalid format
+     */
+    private ListingPage readPrograms(InputStream body, Consumer<RemoteProgram> consumer) throws IOException {
+        TypeAdapter<RemoteProgram> programAdapter = GSON.getAdapter(RemoteProgram.class);
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            boolean found = false;
+            String nextCursor = null;
+            List<String> deletedIds = new ArrayList<>();
+            boolean delta = false;
+            long serverTime = 0;
+            int batchLimit = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "programs":
+                        found = true;
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            // Long listings can be canceled while they are read
+                            ProgressManager.checkCanceled();
+                            consumer.accept(programAdapter.read(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    case "nextCursor":
+                        nextCursor = reader.nextString();
+                        break;
+                    case "deleted":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            deletedIds.add(reader.nextString());
+                        }
+                        reader.endArray();
+                        break;
+                    case "delta":
+                        delta = reader.nextBoolean();
+                        break;
+                    case "serverTime":
+                        serverTime = reader.nextLong();
+                        break;
+                    case "batchLimit":
+                        batchLimit = reader.nextInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (!found) {
+                throw new IOException("Invalid response format: 'programs' field not found");
+            }
+            if (batchLimit > 0) {
+                // Batch responses use the listing format too, but don't advertise the limit again
+                transport.setBatchLimit(batchLimit);
+            }
+            return new ListingPage(nextCursor, deletedIds, delta, serverTime, batchLimit);
+        } catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+            throw new IOException("Invalid response format: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a single program response straight off the stream. The content goes from the stream
+     * into the program's UTF-8 bytes without the whole body being buffered or parsed into a JSON tree.
+     *
+     * @param body The response body, closed when done
+     * @return The program
+     * @throws IOException If the body cannot be read or has an invalid format
+     */
+    private RemoteProgram parseProgram(InputStream body) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            RemoteProgram program = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("program".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+                    program = GSON.getAdapter(RemoteProgram.class).read(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
 
-        JsonObject programObject = jsonObject.getAsJsonObject("program");
-        return gson.fromJson(programObject, RemoteProgram.class);
+            if (program == null) {
+                throw new IOException("Invalid response format: 'program' field not found");
+            }
+            return program;
+        } catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+            throw new IOException("Invalid response format: " + e.getMessage(), e);
+        }
     }
 
     /**
-     * Sends an HTTP request to the API.
+     * Sends an HTTP request to the API over the endpoint's shared transport.
      *
      * @param method The HTTP method (GET, PUT, etc.)
      * @param path The API path
-     * @param requestBody The request body (for PUT/POST requests)
-     * @return The response body as a string
-     * @throws IOException If an error occurs during the request
+     * @param requestBody The UTF-8 request body (for PUT/POST requests)
+     * @return The body stream of a successful response, which the caller must close
+     * @throws IOException If an error occurs during the request or the API returns an error status
      */
-    private String sendRequest(String method, String path, String requestBody) throws IOException {
-        URL url = new URL(endpoint.getUrl() + path);
-        LOG.info("Sending " + method + " request to " + url);
+    private InputStream openRequest(String method, String path, byte[] requestBody) throws IOException {
+        return execute(newRequest(method, path, requestBody)).body();
+    }
 
-        HttpURLConnection connection = null;
-        try {
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod(method);
-            connection.setConnectTimeout(TIMEOUT_MS);
-            connection.setReadTimeout(TIMEOUT_MS);
-
-            // Set headers
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Accept", "application/json");
-
-            // Set authentication header
-            String username = endpoint.getUsername();
-            String password = endpointService.getPassword(endpoint);
-            if (username != null && password != null) {
-                String auth = username + ":" + password;
-                String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-                connection.setRequestProperty("Authorization", "Basic " + encodedAuth);
-                LOG.debug("Added authentication header for user: " + username);
-            } else {
-                LOG.warn("Missing credentials for endpoint: " + endpoint.getName());
-            }
-
-            // Write request body if needed
-            if (requestBody != null) {
-                connection.setDoOutput(true);
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
-                    LOG.debug("Wrote request body: " + requestBody);
+    /**
+     * Sends a prepared request over the endpoint's shared transport.
+     *
+     * @param requestBuilder The request, see {@link #newRequest}
+     * @return A successful or "304 Not Modified" response; the caller must close its body
+     * @throws IOException If an error occurs during the request or the API returns an error status
+     */
+    private HttpResponse<InputStream> execute(HttpRequest.Builder requestBuilder) throws IOException {
+        return execute(requestBuilder, Collections.emptySet());
+    }
+
+    /**
+     * Sends a prepared request over the endpoint's shared transport.
+     *
+     * @param requestBuilder The request, see {@link #newRequest}
+     * @param handledStatuses Error statuses the caller handles; they are thrown as ApiResponseException without being logged as errors
+     * @return A successful or "304 Not Modified" response; the caller must close its body
+     * @throws IOException If an error occurs during the request or the API returns an error status
+     */
+    private HttpResponse<InputStream> execute(HttpRequest.Builder requestBuilder, Set<Integer> handledStatuses) throws IOException {
+        HttpRequest request = requestBuilder.build();
+        String url = request.uri().toString();
+        for (int attempt = 1; ; attempt++) {
+            boolean trial = transport.getCircuitBreaker().acquire();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Sending " + request.method() + " request to " + url);
+            }
+
+            RequestMeter meter = new RequestMeter(transport, request);
+            HttpResponse<InputStream> response;
+            try {
+                response = transport.send(request, bodyHandler(request, meter));
+            } catch (IOException e) {
+                meter.failed(e);
+                long delayMs = retryDelay(request, e, attempt, trial);
+                if (delayMs < 0) {
+                    throw connectionError(url, e);
                 }
+                retrying(request, e.toString(), delayMs);
+                sleep(delayMs);
+                continue;
             }
 
-            // Handle response
-            int responseCode = connection.getResponseCode();
-            LOG.info("Received response code: " + responseCode + " from " + url);
+            long delayMs = retryDelay(request, response, attempt, trial);
+            if (delayMs >= 0) {
+                discardBody(response);
+                retrying(request, "status " + response.statusCode(), delayMs);
+                sleep(delayMs);
+                continue;
+            }
+            try {
+                return checkResponse(response, url, handledStatuses);
+            } catch (ApiResponseException e) {
+                if (handledStatuses.contains(e.getStatusCode())) {
+                    throw e;
+                }
+                throw connectionError(url, e);
+            } catch (IOException e) {
+                meter.failed(e);
+                throw connectionError(url, e);
+            }
+        }
+    }
+
+    /**
+     * Sends an HTTP request to the API over the endpoint's shared transport, without blocking the caller.
+     *
+     * @param method The HTTP method (GET, PUT, etc.)
+     * @param path The API path
+     * @param requestBody The UTF-8 request body (for PUT/POST requests)
+     * @return A future completing with the body stream of a successful response
+     */
+    private CompletableFuture<InputStream> openRequestAsync(String method, String path, byte[] requestBody) {
+        HttpRequest.Builder requestBuilder;
+        try {
+            requestBuilder = newRequest(method, path, requestBody);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(connectionError(endpoint.getUrl() + path, e));
+        }
+        return executeAsync(requestBuilder).thenApply(HttpResponse::body);
+    }
 
-            if (responseCode >= 200 && responseCode < 300) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine.trim());
+    /**
+     * Sends a prepared request over the endpoint's shared transport, without blocking the caller.
+     * The returned future completes on the transport's executor once the response headers arrived.
+     *
+     * @param requestBuilder The request, see {@link #newRequest}
+     * @return A future completing with a successful or "304 Not Modified" response
+     */
+    private CompletableFuture<HttpResponse<InputStream>> executeAsync(HttpRequest.Builder requestBuilder) {
+        return executeAsync(requestBuilder, Collections.emptySet());
+    }
+
+    /**
+     * Sends a prepared request over the endpoint's shared transport, without blocking the caller.
+     *
+     * @param requestBuilder The request, see {@link #newRequest}
+     * @param handledStatuses Error statuses the caller handles; they fail the future with an ApiResponseException without being logged as errors
+     * @return A future completing with a successful or "304 Not Modified" response
+     */
+    private CompletableFuture<HttpResponse<InputStream>> executeAsync(HttpRequest.Builder requestBuilder, Set<Integer> handledStatuses) {
+        HttpRequest request = requestBuilder.build();
+        String url = request.uri().toString();
+        return sendAsync(request, 1)
+                .thenApplyAsync(unchecked(response -> checkResponse(response, url, handledStatuses)), transport.getExecutor())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return response;
                     }
-                    String responseStr = response.toString();
-                    LOG.debug("Received response: " + responseStr);
-                    return responseStr;
-                }
-            } else {
-                String errorMessage;
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine.trim());
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ApiResponseException && handledStatuses.contains(((ApiResponseException) cause).getStatusCode())
+                            || cause instanceof EndpointUnavailableException) {
+                        throw new CompletionException(cause);
                     }
-                    errorMessage = response.toString();
-                }
+                    IOException ioError = cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+                    throw new CompletionException(connectionError(url, ioError));
+                });
+    }
 
-                String detailedError = "API request failed with status " + responseCode;
-                if (responseCode == 401) {
-                    detailedError += ": Authentication failed. Please check your username and password.";
-                } else if (responseCode == 403) {
-                    detailedError += ": Access forbidden. You don't have permission to access this resource.";
-                } else if (responseCode == 404) {
-                    detailedError += ": Resource not found. The requested endpoint does not exist.";
-                } else if (responseCode >= 500) {
-                    detailedError += ": Server error. Please try again later or contact the API administrator.";
-                }
+    /**
+     * Sends a request, and sends it again after a delay while it failed transiently and may be retried.
+     *
+     * @param request The request
+     * @param attempt The number of times the request was sent before, plus one
+     * @return A future completing with the last response, whatever its status
+     */
+    private CompletableFuture<HttpResponse<InputStream>> sendAsync(HttpRequest request, int attempt) {
+        boolean trial;
+        try {
+            trial = transport.getCircuitBreaker().acquire();
+        } catch (EndpointUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Sending async " + request.method() + " request to " + request.uri());
+        }
+
+        RequestMeter meter = new RequestMeter(transport, request);
+        return transport.sendAsync(request, bodyHandler(request, meter))
+                .handle((response, error) -> {
+                    long delayMs;
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        meter.failed(cause);
+                        delayMs = cause instanceof IOException ? retryDelay(request, (IOException) cause, attempt, trial) : -1;
+                        if (delayMs < 0) {
+                            return CompletableFuture.<HttpResponse<InputStream>>failedFuture(cause);
+                        }
+                        retrying(request, cause.toString(), delayMs);
+                    } else {
+                        delayMs = retryDelay(request, response, attempt, trial);
+                        if (delayMs < 0) {
+                            return CompletableFuture.completedFuture(response);
+                        }
+                        discardBody(response);
+                        retrying(request, "status " + response.statusCode(), delayMs);
+                    }
+                    Executor delayed = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, transport.getExecutor());
+                    return CompletableFuture.supplyAsync(() -> attempt + 1, delayed).thenCompose(next -> sendAsync(request, next));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Gets the body handler for an attempt of a request. It records the request with its meter, and fails reading
+     * the body once the body stalls or the request's deadline, counted from now, passed.
+     */
+    private HttpResponse.BodyHandler<InputStream> bodyHandler(HttpRequest request, RequestMeter meter) {
+        long idleTimeoutMs = RequestTimeouts.bodyIdleTimeoutMs(request.timeout().orElse(Duration.ZERO));
+        long deadlineMs = RequestTimeouts.deadlineMs(endpoint, RequestMeter.operationOf(request));
+        return BodyWatchdog.watch(meter.bodyHandler(transport), idleTimeoutMs, deadlineMs);
+    }
+
+    /**
+     * Records a response with the endpoint's circuit breaker and decides whether the request is sent again.
+     *
+     * @return The delay before the retry in milliseconds, or -1 if the response is final
+     */
+    private long retryDelay(HttpRequest request, HttpResponse<InputStream> response, int attempt, boolean trial) {
+        CircuitBreaker circuitBreaker = transport.getCircuitBreaker();
+        if (!RetryPolicy.TRANSIENT_STATUSES.contains(response.statusCode())) {
+            circuitBreaker.recordSuccess();
+            return -1;
+        }
+        circuitBreaker.recordFailure(RetryPolicy.getRetryAfterMs(response.headers()), trial);
+        if (circuitBreaker.isOpen()) {
+            return -1;
+        }
+        return RetryPolicy.delayAfterResponse(request, response.statusCode(), response.headers(), attempt);
+    }
+
+    /**
+     * Records a request error with the endpoint's circuit breaker and decides whether the request is sent again.
+     *
+     * @return The delay before the retry in milliseconds, or -1 if the error is final
+     */
+    private long retryDelay(HttpRequest request, IOException error, int attempt, boolean trial) {
+        if (!RetryPolicy.isTransient(error)) {
+            return -1;
+        }
+        CircuitBreaker circuitBreaker = transport.getCircuitBreaker();
+        circuitBreaker.recordFailure(0, trial);
+        if (circuitBreaker.isOpen()) {
+            return -1;
+        }
+        return RetryPolicy.delayAfterError(request, error, attempt);
+    }
+
+    private void retrying(HttpRequest request, String reason, long delayMs) {
+        transport.getMetrics().forOperation(RequestMeter.operationOf(request)).recordRetry();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Retrying " + request.method() + " request to " + request.uri() + " in " + delayMs + "ms after " + reason);
+        }
+    }
+
+    /**
+     * Reads and closes the body of a response that is not used, so the connection can be reused.
+     */
+    private static void discardBody(HttpResponse<InputStream> response) {
+        try {
+            readBody(response.body());
+        } catch (IOException e) {
+            LOG.debug("Failed to read the body of a discarded response", e);
+        }
+    }
 
-                if (!errorMessage.isEmpty()) {
-                    detailedError += " Server message: " + errorMessage;
+    /**
+     * Waits before a retry, stopping early with a ProcessCanceledException if the caller's progress indicator is canceled.
+     */
+    private static void sleep(long delayMs) throws InterruptedIOException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        try {
+            for (long remaining = delayMs; remaining > 0; remaining = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())) {
+                ProgressManager.checkCanceled();
+                Thread.sleep(Math.min(remaining, HttpTransport.CANCEL_CHECK_INTERVAL_MS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry a request");
+        }
+    }
+
+    private HttpRequest.Builder newRequest(String method, String path, @Nullable byte[] requestBody) throws IOException {
+        HttpRequest.Builder builder = transport.newRequest(path);
+        HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.noBody();
+        if (requestBody != null) {
+            if (LOG.isDebugEnabled()) {
+                // Bodies carry whole programs, so only their size is logged
+                LOG.debug("Writing request body of " + requestBody.length + " bytes");
+            }
+            boolean compress = compressesUpload(requestBody);
+            if (compress) {
+                builder.header("Content-Encoding", ContentEncoding.GZIP);
+            }
+            bodyPublisher = transport.bodyPublisher(requestBody, compress);
+        }
+
+        int query = path.indexOf('?');
+        String operation = RequestMeter.operationOf(method, query < 0 ? path : path.substring(0, query));
+        Duration timeout = RequestTimeouts.timeoutFor(endpoint, transport.getMetrics().forOperation(operation),
+                operation, Math.max(0, bodyPublisher.contentLength()));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Timeout for " + method + " request to " + path + ": " + timeout.toMillis() + "ms");
+        }
+        return builder.timeout(timeout).method(method, bodyPublisher);
+    }
+
+    /**
+     * Checks whether a request body is large enough to be sent gzip compressed to this endpoint.
+     */
+    private boolean compressesUpload(byte[] requestBody) {
+        int thresholdKb = endpoint.getUploadCompressionThresholdKb();
+        return thresholdKb > 0 && requestBody.length >= thresholdKb * 1024L && transport.isUploadCompressionSupported();
+    }
+
+    private void uploadCompressionRejected() {
+        LOG.info("Endpoint " + endpoint.getName() + " does not accept compressed uploads, sending them uncompressed from now on");
+        transport.setUploadCompressionSupported(false);
+    }
+
+    /**
+     * Checks the status of a response.
+     *
+     * @param response The response
+     * @param url The requested URL, for logging
+     * @param handledStatuses Error statuses the caller handles, which are not logged as errors
+     * @return The response if it was successful or "304 Not Modified"
+     * @throws ApiResponseException If the API returned an error status
+     */
+    private HttpResponse<InputStream> checkResponse(HttpResponse<InputStream> response, String url,
+                                                    Set<Integer> handledStatuses) throws IOException {
+        int responseCode = response.statusCode();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received response code: " + responseCode + " from " + url);
+        }
+
+        if (responseCode >= 200 && responseCode < 300 || responseCode == HTTP_NOT_MODIFIED) {
+            return response;
+        }
+
+        String errorMessage = readBody(response.body());
+        if (CONFLICT_STATUSES.contains(responseCode) && handledStatuses.contains(responseCode)) {
+            RemoteProgram serverVersion = readServerVersion(response, errorMessage);
+            if (serverVersion != null) {
+                LOG.debug("Save rejected with status " + responseCode + " from " + url + ", the response holds the server version");
+                throw new ProgramConflictException(responseCode, "API request failed with status " + responseCode, serverVersion);
+            }
+        }
+
+        String detailedError = "API request failed with status " + responseCode;
+        if (responseCode == 401) {
+            detailedError += ": Authentication failed. Please check your username and password.";
+        } else if (responseCode == 403) {
+            detailedError += ": Access forbidden. You don't have permission to access this resource.";
+        } else if (responseCode == 404) {
+            detailedError += ": Resource not found. The requested endpoint does not exist.";
+        } else if (responseCode >= 500) {
+            detailedError += ": Server error. Please try again later or contact the API administrator.";
+        }
+
+        if (!errorMessage.isEmpty()) {
+            detailedError += " Server message: " + errorMessage;
+        }
+
+        // Unhandled statuses are logged with the connection error they are wrapped in
+        LOG.debug(detailedError);
+        throw new ApiResponseException(responseCode, detailedError);
+    }
+
+    private IOException connectionError(String url, IOException e) {
+        String errorMsg = "Connection error with endpoint " + endpoint.getName() + " (" + url + "): " + e.getMessage();
+        // An unreachable or failing server is not an error of the plugin, and background requests keep meeting it
+        // while the endpoint is offline; callers report the failure to the user
+        LOG.info(errorMsg);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(errorMsg, e);
+        }
+        if (e instanceof ApiResponseException) {
+            return new ApiResponseException(((ApiResponseException) e).getStatusCode(), errorMsg, e);
+        }
+        return new IOException(errorMsg, e);
+    }
+
+    private static String readBody(InputStream body) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            StringBuilder response = new StringBuilder();
+            String responseLine;
+            while ((responseLine = reader.readLine()) != null) {
+                response.append(responseLine.trim());
+            }
+            String responseStr = response.toString();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Received response body of " + responseStr.length() + " characters");
+            }
+            return responseStr;
+        }
+    }
+
+    /**
+     * Adapts a function that may throw IOException for use in a CompletableFuture chain.
+     */
+    private static <T, R> Function<T, R> unchecked(IoFunction<T, R> function) {
+        return value -> {
+            try {
+                return function.apply(value);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface IoFunction<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    /**
+     * Runs the requests of a multi-program fetch with a bounded number in flight, starting the next one
+     * whenever one completes. The first failure fails the whole fetch and no further requests are started.
+     *
+     * @param <T> The part of the fetch a request covers, a program ID or a batch of them
+     */
+    private static final class ParallelFetch<T> {
+        private final List<T> parts;
+        private final Function<T, CompletableFuture<List<RemoteProgram>>> request;
+        private final List<List<RemoteProgram>> results;
+        private final CompletableFuture<List<RemoteProgram>> result = new CompletableFuture<>();
+        private final AtomicInteger nextPart = new AtomicInteger();
+        private final AtomicInteger remainingParts;
+
+        ParallelFetch(List<T> parts, Function<T, CompletableFuture<List<RemoteProgram>>> request) {
+            this.parts = parts;
+            this.request = request;
+            this.results = new ArrayList<>(Collections.nCopies(parts.size(), null));
+            this.remainingParts = new AtomicInteger(parts.size());
+        }
+
+        CompletableFuture<List<RemoteProgram>> start() {
+            if (parts.isEmpty()) {
+                result.complete(Collections.emptyList());
+            }
+            for (int i = 0; i < Math.min(MAX_PARALLEL_FETCHES, parts.size()); i++) {
+                startNext();
+            }
+            return result;
+        }
+
+        private void startNext() {
+            int index = nextPart.getAndIncrement();
+            if (index >= parts.size() || result.isDone()) {
+                return;
+            }
+            request.apply(parts.get(index)).whenComplete((programs, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                    return;
                 }
+                synchronized (results) {
+                    results.set(index, programs);
+                }
+                if (remainingParts.decrementAndGet() == 0) {
+                    complete();
+                } else {
+                    startNext();
+                }
+            });
+        }
 
-                LOG.error(detailedError);
-                throw new IOException(detailedError);
+        private void complete() {
+            List<RemoteProgram> programs = new ArrayList<>();
+            synchronized (results) {
+                results.forEach(programs::addAll);
             }
-        } catch (IOException e) {
-            String errorMsg = "Connection error with endpoint " + endpoint.getName() + " (" + url + "): " + e.getMessage();
-            LOG.error(errorMsg, e);
-            throw new IOException(errorMsg, e);
+            result.complete(programs);
         }
     }
 }
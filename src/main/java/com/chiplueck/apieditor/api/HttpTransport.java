@@ -0,0 +1,417 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.metrics.EndpointMetrics;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Shared HTTP transport for a single API endpoint.
+ * Wraps one java.net.http.HttpClient so that every ApiClient call for the endpoint
+ * reuses the same pooled keep-alive connections (multiplexed over HTTP/2 when the server supports it).
+ */
+public class HttpTransport {
+    private static final Logger LOG = Logger.getInstance(HttpTransport.class);
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    // How often a request sent under a progress indicator checks whether it was canceled
+    static final long CANCEL_CHECK_INTERVAL_MS = 100;
+    // Cached in place of the header when the endpoint has no credentials
+    private static final String NO_AUTHORIZATION = "";
+
+    private final ApiEndpoint endpoint;
+    private final String baseUrl;
+    private final String username;
+    private final Supplier<String> passwordSupplier;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final EndpointMetrics metrics;
+    private final CircuitBreaker circuitBreaker;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong requestWireBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong responseWireBytes = new AtomicLong();
+    private volatile boolean patchSupported = true;
+    private volatile boolean uploadCompressionSupported = true;
+    private volatile int batchLimit;
+    private volatile String authorizationHeader;
+
+    /**
+     * Creates a transport for the given endpoint.
+     *
+     * @param endpoint The API endpoint this transport talks to
+     * @param passwordSupplier Supplies the password used for Basic authentication
+     */
+    public HttpTransport(ApiEndpoint endpoint, Supplier<String> passwordSupplier) {
+        this(endpoint, passwordSupplier, new EndpointMetrics(endpoint.getName()));
+    }
+
+    /**
+     * Creates a transport for the given endpoint.
+     *
+     * @param endpoint The API endpoint this transport talks to
+     * @param passwordSupplier Supplies the password used for Basic authentication
+     * @param metrics Where the request metrics of the endpoint are recorded
+     */
+    public HttpTransport(ApiEndpoint endpoint, Supplier<String> passwordSupplier, EndpointMetrics metrics) {
+        this.endpoint = endpoint;
+        this.metrics = metrics;
+        // Snapshot the connection settings, the endpoint object may be edited in place later
+        this.baseUrl = endpoint.getUrl();
+        this.username = endpoint.getUsername();
+        this.passwordSupplier = passwordSupplier;
+        this.circuitBreaker = new CircuitBreaker(endpoint.getName());
+        this.executor = createExecutor(endpoint.getName());
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .version(preferredVersion(baseUrl))
+                .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .proxy(ProxySelector.getDefault())
+                .sslContext(createSslContext())
+                .build();
+    }
+
+    public ApiEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Gets the request metrics of the endpoint, which the API client records per operation.
+     *
+     * @return The endpoint's metrics
+     */
+    public EndpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the circuit breaker of the endpoint, shared by all requests sent over this transport.
+     *
+     * @return The endpoint's circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Gets the executor the transport completes asynchronous requests on.
+     * Response bodies of async requests should be consumed on this executor.
+     *
+     * @return The transport's executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Checks whether this transport can still be used for the given endpoint configuration.
+     * A transport is bound to the URL and username it was created with.
+     *
+     * @param other The endpoint configuration to check against
+     * @return true if the transport matches the endpoint
+     */
+    public boolean isFor(ApiEndpoint other) {
+        return Objects.equals(endpoint.getId(), other.getId())
+                && Objects.equals(baseUrl, other.getUrl())
+                && Objects.equals(username, other.getUsername());
+    }
+
+    /**
+     * Whether the server may accept patch uploads. Cleared once it answered that it doesn't support them.
+     *
+     * @return false if patch uploads should not be attempted anymore
+     */
+    public boolean isPatchSupported() {
+        return patchSupported;
+    }
+
+    public void setPatchSupported(boolean patchSupported) {
+        this.patchSupported = patchSupported;
+    }
+
+    /**
+     * Whether the server may accept gzip compressed request bodies. Cleared once it rejected one.
+     *
+     * @return false if uploads should not be compressed anymore
+     */
+    public boolean isUploadCompressionSupported() {
+        return uploadCompressionSupported;
+    }
+
+    public void setUploadCompressionSupported(boolean uploadCompressionSupported) {
+        this.uploadCompressionSupported = uploadCompressionSupported;
+    }
+
+    /**
+     * The number of programs the server accepts in one batch request, as advertised with its listing.
+     *
+     * @return The limit, or 0 if the server doesn't offer batch requests or rejected one
+     */
+    public int getBatchLimit() {
+        return batchLimit;
+    }
+
+    public void setBatchLimit(int batchLimit) {
+        this.batchLimit = batchLimit;
+    }
+
+    /**
+     * Gets the body handler for API responses. It streams the body and decodes gzip compressed responses
+     * while they are read, counting the bytes received and decoded for the transport statistics.
+     *
+     * @param receivedBytes Incremented by the number of body bytes of this request received on the wire
+     * @return The body handler
+     */
+    public HttpResponse.BodyHandler<InputStream> bodyHandler(AtomicLong receivedBytes) {
+        return ContentEncoding.decodingHandler(bytes -> {
+            responseWireBytes.addAndGet(bytes);
+            receivedBytes.addAndGet(bytes);
+        }, responseBytes::addAndGet);
+    }
+
+    /**
+     * Creates the publisher for a request body, compressing the body with gzip if asked to.
+     * The caller must then send the "Content-Encoding: gzip" header.
+     *
+     * @param body The UTF-8 request body
+     * @param compress Whether to gzip the body
+     * @return The body publisher
+     */
+    public HttpRequest.BodyPublisher bodyPublisher(byte[] body, boolean compress) {
+        byte[] wireBytes = compress ? ContentEncoding.gzip(body) : body;
+        requestBytes.addAndGet(body.length);
+        requestWireBytes.addAndGet(wireBytes.length);
+        return HttpRequest.BodyPublishers.ofByteArray(wireBytes);
+    }
+
+    /**
+     * Creates a request builder for the given API path with the common headers
+     * and the authentication header already set.
+     *
+     * @param path The API path
+     * @return A request builder
+     * @throws IOException If the endpoint URL is invalid
+     */
+    public HttpRequest.Builder newRequest(String path) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(baseUrl + path);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL for endpoint " + endpoint.getName() + ": " + e.getMessage(), e);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", ContentEncoding.GZIP);
+
+        String authorization = getAuthorizationHeader();
+        if (!authorization.isEmpty()) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+
+    /**
+     * Discards the cached Authorization header, so the next request reads the credentials again.
+     * Must be called when the endpoint's password changed.
+     */
+    public void invalidateCredentials() {
+        authorizationHeader = null;
+    }
+
+    /**
+     * Gets the Basic Authorization header, encoding it on first use.
+     * Reading the password from the password safe is slow, so the encoded header is cached
+     * until the credentials are invalidated.
+     *
+     * @return The header value, or an empty string if the endpoint has no credentials
+     */
+    private String getAuthorizationHeader() {
+        String authorization = authorizationHeader;
+        if (authorization != null) {
+            return authorization;
+        }
+        String password = passwordSupplier.get();
+        if (username != null && password != null) {
+            String auth = username + ":" + password;
+            authorization = "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+            LOG.debug("Encoded authentication header for user: " + username);
+        } else {
+            authorization = NO_AUTHORIZATION;
+            LOG.warn("Missing credentials for endpoint: " + endpoint.getName());
+        }
+        authorizationHeader = authorization;
+        return authorization;
+    }
+
+    /**
+     * Sends a request over the shared client. When called under a progress indicator, e.g. in a background task,
+     * the request is aborted once the indicator is canceled.
+     *
+     * @param request The request to send
+     * @param bodyHandler The handler for the response body
+     * @return The response
+     * @throws IOException If an error occurs during the request
+     * @throws ProcessCanceledException If the progress indicator was canceled
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        // Null-safe without an application, as when the client runs headless in the benchmarks
+        ProgressIndicator indicator = ProgressIndicatorProvider.getGlobalProgressIndicator();
+        if (indicator == null) {
+            requestCount.incrementAndGet();
+            try {
+                HttpResponse<T> response = httpClient.send(request, bodyHandler);
+                if (response.version() == HttpClient.Version.HTTP_2) {
+                    http2Responses.incrementAndGet();
+                }
+                return response;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Request to " + request.uri() + " was interrupted");
+            }
+        }
+
+        CompletableFuture<HttpResponse<T>> response = sendAsync(request, bodyHandler);
+        try {
+            while (true) {
+                try {
+                    return response.get(CANCEL_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    indicator.checkCanceled();
+                }
+            }
+        } catch (ProcessCanceledException e) {
+            // Canceling the future aborts the exchange, see sendAsync
+            response.cancel(true);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Canceled request to " + request.uri());
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Request to " + request.uri() + " failed: " + cause, cause);
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request to " + request.uri() + " was interrupted");
+        }
+    }
+
+    /**
+     * Sends a request over the shared client without blocking the calling thread.
+     * Canceling the returned future aborts the exchange; a response that arrives anyway has its body closed.
+     *
+     * @param request The request to send
+     * @param bodyHandler The handler for the response body
+     * @return A future completing with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        requestCount.incrementAndGet();
+        CompletableFuture<HttpResponse<T>> exchange = httpClient.sendAsync(request, bodyHandler);
+        CompletableFuture<HttpResponse<T>> response = exchange.thenApply(r -> {
+            if (r.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.incrementAndGet();
+            }
+            return r;
+        });
+        // Canceling a dependent stage doesn't cancel its source, only the client's own future aborts the exchange
+        response.whenComplete((r, error) -> {
+            if (response.isCancelled()) {
+                exchange.cancel(true);
+                exchange.whenComplete((late, lateError) -> {
+                    if (late != null) {
+                        closeBody(late);
+                    }
+                });
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Closes the body of a response nobody is going to read, so its connection is released to the pool.
+     */
+    private static void closeBody(HttpResponse<?> response) {
+        if (response.body() instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) response.body()).close();
+            } catch (Exception e) {
+                LOG.debug("Could not close the body of an abandoned response", e);
+            }
+        }
+    }
+
+    /**
+     * Gets a snapshot of the connection pool statistics for this transport.
+     *
+     * @return The current statistics
+     */
+    public TransportStats getStats() {
+        return new TransportStats(endpoint.getName(), requestCount.get(), connectionsOpened.get(), http2Responses.get(),
+                requestBytes.get(), requestWireBytes.get(), responseBytes.get(), responseWireBytes.get());
+    }
+
+    /**
+     * Releases the transport's threads. Pooled connections are closed once they go idle.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService createExecutor(String endpointName) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "API Editor HTTP (" + endpointName + ") " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static HttpClient.Version preferredVersion(String url) {
+        // HTTP/2 is negotiated via ALPN on TLS; cleartext servers often choke on the h2c upgrade
+        return url != null && url.startsWith("https://") ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+    }
+
+    private SSLContext createSslContext() {
+        try {
+            // Count TLS engines so we can tell how often a new connection had to be opened
+            return new ConnectionCountingSslContext(SSLContext.getDefault(), connectionsOpened::incrementAndGet);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default SSL context available", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.chiplueck.apieditor.api;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON request bodies straight from UTF-8 content, without decoding it to a string first.
+ */
+final class JsonBodies {
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private JsonBodies() {
+    }
+
+    /**
+     * Creates the body of a full upload, {@code {"content": "..."}}, with the version it is based on if known:
+     * {@code {"baseLastModified": 123, "content": "..."}}.
+     *
+     * @param content The UTF-8 content, or null
+     * @param baseLastModified The lastModified of the version the content is based on, or 0 if it is unknown
+     * @return The body as UTF-8 bytes
+     */
+    static byte[] createContentBody(byte[] content, long baseLastModified) {
+        String prefix = baseLastModified > 0 ? "{\"baseLastModified\":" + baseLastModified + ",\"content\":" : "{\"content\":";
+        if (content == null) {
+            return (prefix + "null}").getBytes(StandardCharsets.UTF_8);
+        }
+        // Most source content needs few escapes, so this rarely has to grow
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + content.length / 16 + prefix.length() + 2);
+        body.writeBytes(prefix.getBytes(StandardCharsets.UTF_8));
+        writeString(body, content);
+        body.write('}');
+        return body.toByteArray();
+    }
+
+    /**
+     * Writes UTF-8 bytes as a quoted JSON string. Multi-byte sequences are copied as they are,
+     * only quotes, backslashes and control characters are escaped.
+     */
+    private static void writeString(ByteArrayOutputStream out, byte[] value) {
+        out.write('"');
+        int runStart = 0;
+        for (int i = 0; i < value.length; i++) {
+            int b = value[i] & 0xff;
+            if (b >= 0x20 && b != '"' && b != '\\') {
+                continue;
+            }
+            out.write(value, runStart, i - runStart);
+            runStart = i + 1;
+            out.write('\\');
+            switch (b) {
+                case '"':
+                case '\\':
+                    out.write(b);
+                    break;
+                case '\n':
+                    out.write('n');
+                    break;
+                case '\r':
+                    out.write('r');
+                    break;
+                case '\t':
+                    out.write('t');
+                    break;
+                case '\b':
+                    out.write('b');
+                    break;
+                case '\f':
+                    out.write('f');
+                    break;
+                default:
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX_DIGITS[b >> 4]);
+                    out.write(HEX_DIGITS[b & 0xf]);
+            }
+        }
+        out.write(value, runStart, value.length - runStart);
+        out.write('"');
+    }
+}
@@ -0,0 +1,111 @@
+package com.chiplueck.apieditor.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line-based patch between two versions of a program's content.
+ * Lines are split on '\n' only and keep any '\r', so joining the patched lines with '\n'
+ * restores the new content exactly.
+ */
+final class LinePatch {
+    private LinePatch() {
+    }
+
+    /**
+     * Computes the edits that turn the base content into the new content.
+     * Each edit replaces {@code delete} lines starting at base line {@code line} (0-based) with the {@code insert} lines.
+     * Edits are ordered by line and refer to line numbers of the base content.
+     *
+     * @param base The UTF-8 content of the version the server holds
+     * @param content The new UTF-8 content
+     * @return The edits, or null if the contents are too large to diff
+     */
+    @Nullable
+    static JsonArray createEdits(byte[] base, byte[] content) {
+        Line[] baseLines = Line.split(base);
+        Line[] newLines = Line.split(content);
+
+        Diff.Change change;
+        try {
+            change = Diff.buildChanges(baseLines, newLines);
+        } catch (FilesTooBigForDiffException e) {
+            return null;
+        }
+
+        JsonArray edits = new JsonArray();
+        for (; change != null; change = change.link) {
+            JsonArray inserted = new JsonArray(change.inserted);
+            for (int i = 0; i < change.inserted; i++) {
+                inserted.add(newLines[change.line1 + i].toString());
+            }
+            JsonObject edit = new JsonObject();
+            edit.addProperty("line", change.line0);
+            edit.addProperty("delete", change.deleted);
+            edit.add("insert", inserted);
+            edits.add(edit);
+        }
+        return edits;
+    }
+
+    /**
+     * A line of UTF-8 content, referenced in place rather than decoded. '\n' never occurs
+     * within a multi-byte UTF-8 sequence, so splitting the bytes on it is safe.
+     */
+    private static final class Line {
+        private final byte[] content;
+        private final int start;
+        private final int end;
+        private final int hash;
+
+        Line(byte[] content, int start, int end) {
+            this.content = content;
+            this.start = start;
+            this.end = end;
+            int h = 1;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + content[i];
+            }
+            this.hash = h;
+        }
+
+        static Line[] split(byte[] content) {
+            List<Line> lines = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == '\n') {
+                    lines.add(new Line(content, start, i));
+                    start = i + 1;
+                }
+            }
+            lines.add(new Line(content, start, content.length));
+            return lines.toArray(new Line[0]);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Line)) return false;
+            Line that = (Line) o;
+            return hash == that.hash && Arrays.equals(content, start, end, that.content, that.start, that.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return new String(content, start, end - start, StandardCharsets.UTF_8);
+        }
+    }
+}
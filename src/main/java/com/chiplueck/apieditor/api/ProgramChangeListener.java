@@ -0,0 +1,29 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+
+/**
+ * Receives the program changes an endpoint pushes to a {@link ProgramChangeSubscription}.
+ * Called on the endpoint's transport threads, so implementations must not block.
+ */
+public interface ProgramChangeListener {
+    /**
+     * Called when a program was created or saved on the server.
+     *
+     * @param program The program's metadata as listed, without content
+     */
+    void programChanged(RemoteProgram program);
+
+    /**
+     * Called when a program was deleted on the server.
+     *
+     * @param programId The ID of the deleted program
+     */
+    void programDeleted(String programId);
+
+    /**
+     * Called when changes may have been missed, e.g. because the server couldn't resume the subscription
+     * after a reconnect. The listener should fetch the state it needs again.
+     */
+    void resync();
+}
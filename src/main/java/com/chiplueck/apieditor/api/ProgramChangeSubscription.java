@@ -0,0 +1,429 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.chiplueck.apieditor.services.HttpTransportService;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscription to the program changes of an endpoint, so they are seen without polling.
+ * The server streams the changes as Server-Sent Events; servers that can't hold a stream open answer
+ * each request as a long poll instead, with the changes since the last one. The subscription reconnects
+ * when the connection drops or stays silent, resuming after the last event received.
+ * See the API specification for the event format.
+ */
+public class ProgramChangeSubscription {
+    private static final Logger LOG = Logger.getInstance(ProgramChangeSubscription.class);
+    static final String EVENTS_ENDPOINT = "/events";
+    // How long a long poll may be held open by the server
+    private static final int LONG_POLL_WAIT_SECONDS = 30;
+    // A long poll answered without events sooner than this was not held open, so the next one waits
+    private static final long MIN_LONG_POLL_MS = 5000;
+    // Invalid long poll answers in a row after which the server is taken not to offer change notifications
+    private static final int MAX_INVALID_RESPONSES = 3;
+    // Servers send a comment line every 30 seconds while there are no events
+    private static final long IDLE_TIMEOUT_MS = 90000;
+    private static final long MIN_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 60000;
+    // Statuses with which a server without change notifications answers
+    private static final Set<Integer> UNSUPPORTED_STATUSES = Set.of(404, 405, 501);
+    private static final Gson GSON = new Gson();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "API Editor change notifications");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ApiEndpoint endpoint;
+    private final ProgramChangeListener listener;
+
+    // Guarded by this
+    private String lastEventId;
+    private long reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+    // Counts the connections, so callbacks of an abandoned one are ignored
+    private int connectionCount;
+    private CompletableFuture<HttpResponse<String>> connection;
+    private EventStream eventStream;
+    private ScheduledFuture<?> reconnectTimer;
+    private ScheduledFuture<?> idleCheck;
+    private long lastActivityNanos;
+    private boolean streamed;
+    private int invalidResponses;
+    private boolean closed;
+
+    /**
+     * Creates a subscription; it only connects once started.
+     *
+     * @param endpoint The API endpoint
+     * @param listener Receives the changes
+     */
+    public ProgramChangeSubscription(ApiEndpoint endpoint, ProgramChangeListener listener) {
+        this.endpoint = endpoint;
+        this.listener = listener;
+    }
+
+    /**
+     * Connects to the endpoint's change notifications, unless the subscription is already connected or closed.
+     */
+    public synchronized void start() {
+        if (!closed && connection == null && reconnectTimer == null) {
+            connect();
+        }
+    }
+
+    public ApiEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Checks whether the subscription still receives changes.
+     *
+     * @return false if it was closed or the server doesn't offer change notifications
+     */
+    public synchronized boolean isActive() {
+        return !closed;
+    }
+
+    /**
+     * Disconnects for good.
+     */
+    public synchronized void close() {
+        closed = true;
+        abandonConnection();
+        if (reconnectTimer != null) {
+            reconnectTimer.cancel(false);
+            reconnectTimer = null;
+        }
+    }
+
+    // Called while holding this
+    private void connect() {
+        reconnectTimer = null;
+        if (closed) {
+            return;
+        }
+        int count = ++connectionCount;
+        HttpTransport transport = HttpTransportService.getInstance().getTransport(endpoint);
+        HttpRequest.Builder request;
+        try {
+            request = transport.newRequest(EVENTS_ENDPOINT + "?wait=" + LONG_POLL_WAIT_SECONDS);
+        } catch (IOException e) {
+            LOG.warn("Failed to subscribe to the changes of endpoint " + endpoint.getName(), e);
+            closed = true;
+            return;
+        }
+        // Events are small and must arrive as they are sent, so the stream is not compressed
+        request.setHeader("Accept", "text/event-stream, application/json")
+                .setHeader("Accept-Encoding", "identity")
+                .GET();
+        if (lastEventId != null) {
+            request.setHeader("Last-Event-ID", lastEventId);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Subscribing to the changes of endpoint " + endpoint.getName()
+                    + (lastEventId != null ? " after event " + lastEventId : ""));
+        }
+
+        lastActivityNanos = System.nanoTime();
+        idleCheck = SCHEDULER.scheduleWithFixedDelay(() -> checkIdle(count),
+                IDLE_TIMEOUT_MS / 3, IDLE_TIMEOUT_MS / 3, TimeUnit.MILLISECONDS);
+        connection = transport.sendAsync(request.build(), responseInfo -> bodySubscriber(count, responseInfo));
+        long startNanos = System.nanoTime();
+        connection.whenComplete((response, error) -> disconnected(count, startNanos, response, error));
+    }
+
+    /**
+     * Reads an event stream line by line as it arrives. Other responses, long polls and errors, are read whole.
+     */
+    private HttpResponse.BodySubscriber<String> bodySubscriber(int count, HttpResponse.ResponseInfo responseInfo) {
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse("");
+        if (responseInfo.statusCode() != 200 || !contentType.startsWith("text/event-stream")) {
+            return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        }
+        EventStream stream = new EventStream(count);
+        boolean missedChanges = false;
+        synchronized (this) {
+            if (count == connectionCount) {
+                eventStream = stream;
+                reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+                // Without event IDs the server can't resume the stream, so changes made while reconnecting are unknown
+                missedChanges = streamed && lastEventId == null;
+                streamed = true;
+            } else {
+                stream.cancel();
+            }
+        }
+        if (missedChanges) {
+            listener.resync();
+        }
+        return HttpResponse.BodySubscribers.fromLineSubscriber(stream, s -> null, StandardCharsets.UTF_8, null);
+    }
+
+    private void disconnected(int count, long startNanos, @Nullable HttpResponse<String> response, @Nullable Throwable error) {
+        long delayMs;
+        synchronized (this) {
+            if (count != connectionCount || closed) {
+                return;
+            }
+            abandonConnection();
+            if (error != null) {
+                LOG.info("Change notifications of endpoint " + endpoint.getName() + " disconnected: " + error.getMessage());
+                delayMs = backoff();
+            } else if (UNSUPPORTED_STATUSES.contains(response.statusCode())) {
+                LOG.info("Endpoint " + endpoint.getName() + " does not offer change notifications");
+                closed = true;
+                return;
+            } else if (response.statusCode() != 200) {
+                LOG.info("Change notifications of endpoint " + endpoint.getName() + " failed with status " + response.statusCode());
+                delayMs = backoff();
+            } else if (response.body() != null) {
+                // A long poll, see below
+                delayMs = -1;
+            } else {
+                // The server ended the event stream
+                delayMs = MIN_RECONNECT_DELAY_MS;
+            }
+        }
+        int events = delayMs < 0 ? readLongPoll(response.body()) : 0;
+        synchronized (this) {
+            if (count != connectionCount || closed) {
+                return;
+            }
+            if (delayMs < 0) {
+                delayMs = afterLongPoll(events, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+            if (!closed) {
+                reconnectTimer = SCHEDULER.schedule(this::reconnect, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Decides when to poll again after a long poll. It is repeated right away if it delivered events or was held
+     * open; a server that answers at once without events, e.g. because it ignores the wait parameter, is polled
+     * with backoff. Answers that are no long polls at all, like an HTML page, end the subscription.
+     * Called while holding this.
+     *
+     * @param events The number of events delivered, or -1 if the answer was invalid
+     * @param durationMs How long the long poll took
+     * @return The delay before the next poll in milliseconds
+     */
+    private long afterLongPoll(int events, long durationMs) {
+        if (events < 0) {
+            if (++invalidResponses >= MAX_INVALID_RESPONSES) {
+                LOG.info("Endpoint " + endpoint.getName() + " does not answer with change notifications, unsubscribing");
+                closed = true;
+            }
+            return backoff();
+        }
+        invalidResponses = 0;
+        if (events > 0 || durationMs >= MIN_LONG_POLL_MS) {
+            reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+            return 0;
+        }
+        return backoff();
+    }
+
+    private synchronized void reconnect() {
+        connect();
+    }
+
+    /**
+     * Drops a connection on which nothing arrived for too long, as it may be broken without either side noticing.
+     */
+    private void checkIdle(int count) {
+        synchronized (this) {
+            if (count != connectionCount || closed || connection == null
+                    || System.nanoTime() - lastActivityNanos < TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MS)) {
+                return;
+            }
+            LOG.info("Change notifications of endpoint " + endpoint.getName() + " were silent too long, reconnecting");
+            connectionCount++;
+            abandonConnection();
+            reconnectTimer = SCHEDULER.schedule(this::reconnect, backoff(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Called while holding this
+    private void abandonConnection() {
+        if (idleCheck != null) {
+            idleCheck.cancel(false);
+            idleCheck = null;
+        }
+        if (eventStream != null) {
+            eventStream.cancel();
+            eventStream = null;
+        }
+        if (connection != null) {
+            connection.cancel(true);
+            connection = null;
+        }
+    }
+
+    // Called while holding this
+    private long backoff() {
+        long delayMs = reconnectDelayMs;
+        reconnectDelayMs = Math.min(MAX_RECONNECT_DELAY_MS, reconnectDelayMs * 2);
+        return delayMs / 2 + ThreadLocalRandom.current().nextLong(delayMs / 2 + 1);
+    }
+
+    /**
+     * Reads the answer of a long poll: {"events": [...]}, each event as in the event stream.
+     *
+     * @return The number of events, or -1 if the answer is invalid
+     */
+    private int readLongPoll(String body) {
+        try {
+            JsonElement events = JsonParser.parseString(body).getAsJsonObject().get("events");
+            if (events == null || !events.isJsonArray()) {
+                throw new JsonParseException("no events array");
+            }
+            for (JsonElement event : events.getAsJsonArray()) {
+                JsonElement id = event.getAsJsonObject().get("id");
+                handleEvent(event.getAsJsonObject(), id != null && !id.isJsonNull() ? id.getAsString() : null);
+            }
+            return events.getAsJsonArray().size();
+        } catch (IllegalStateException | JsonParseException e) {
+            LOG.warn("Invalid change notification response from endpoint " + endpoint.getName() + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Passes an event on to the listener.
+     *
+     * @param event The event: {"type": "changed", "program": {...}}, {"type": "deleted", "programId": "..."} or {"type": "reset"}
+     * @param id The event's ID, from which a reconnect resumes, or null
+     */
+    private void handleEvent(JsonObject event, @Nullable String id) {
+        JsonElement type = event.get("type");
+        switch (type != null && !type.isJsonNull() ? type.getAsString() : "") {
+            case "changed":
+                RemoteProgram program = GSON.fromJson(event.get("program"), RemoteProgram.class);
+                if (program != null && program.getId() != null) {
+                    listener.programChanged(program);
+                }
+                break;
+            case "deleted":
+                JsonElement programId = event.get("programId");
+                if (programId != null && !programId.isJsonNull()) {
+                    listener.programDeleted(programId.getAsString());
+                }
+                break;
+            case "reset":
+                LOG.info("Endpoint " + endpoint.getName() + " could not resume its change notifications, refreshing");
+                listener.resync();
+                break;
+            default:
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Ignoring change notification of unknown type: " + type);
+                }
+        }
+        if (id != null) {
+            synchronized (this) {
+                lastEventId = id;
+            }
+        }
+    }
+
+    /**
+     * Parses the lines of an event stream: "id:" and "data:" fields, events ended by a blank line,
+     * and comment lines starting with ':' that servers send to keep the connection alive.
+     */
+    private final class EventStream implements Flow.Subscriber<String> {
+        private final int count;
+        private final StringBuilder data = new StringBuilder();
+        private Flow.Subscription subscription;
+        private String id;
+        private boolean canceled;
+
+        EventStream(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (canceled) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            synchronized (ProgramChangeSubscription.this) {
+                if (count != connectionCount) {
+                    return;
+                }
+                lastActivityNanos = System.nanoTime();
+            }
+            if (line.isEmpty()) {
+                dispatch();
+                return;
+            }
+            if (line.startsWith(":")) {
+                return;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(line.startsWith(": ", colon) ? colon + 2 : colon + 1);
+            if ("data".equals(field)) {
+                data.append(value).append('\n');
+            } else if ("id".equals(field)) {
+                id = value;
+            }
+        }
+
+        private void dispatch() {
+            if (data.length() == 0) {
+                return;
+            }
+            String eventData = data.toString();
+            data.setLength(0);
+            try {
+                handleEvent(JsonParser.parseString(eventData).getAsJsonObject(), id);
+            } catch (IllegalStateException | JsonParseException e) {
+                LOG.warn("Invalid change notification from endpoint " + endpoint.getName() + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // The connection's future fails as well, which reconnects
+        }
+
+        @Override
+        public void onComplete() {
+            // The connection's future completes as well, which reconnects
+        }
+
+        synchronized void cancel() {
+            canceled = true;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Thrown when a save was rejected because the program was changed on the server since the version
+ * the saved content is based on, with "409 Conflict" or "412 Precondition Failed".
+ */
+public class ProgramConflictException extends ApiResponseException {
+    private final RemoteProgram serverVersion;
+
+    public ProgramConflictException(int statusCode, String message, @Nullable RemoteProgram serverVersion) {
+        super(statusCode, message);
+        this.serverVersion = serverVersion;
+    }
+
+    /**
+     * Gets the version of the program the server holds, if it is known.
+     * @return The server version with its content, or null if it has to be fetched
+     */
+    @Nullable
+    public RemoteProgram getServerVersion() {
+        return serverVersion;
+    }
+}
@@ -0,0 +1,99 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.metrics.OperationMetrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a single API request for the endpoint's metrics.
+ * The latency runs from sending the request until its response body is closed, so slow transfers
+ * of large bodies are included. Body sizes are counted as sent and received on the wire.
+ * The response time until the headers arrived is recorded as well, request timeouts are adapted to it.
+ */
+final class RequestMeter {
+    private final OperationMetrics metrics;
+    private final long sentBytes;
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicBoolean recorded = new AtomicBoolean();
+    private volatile boolean responded;
+    private final long startNanos = System.nanoTime();
+
+    RequestMeter(HttpTransport transport, HttpRequest request) {
+        this.metrics = transport.getMetrics().forOperation(operationOf(request));
+        this.sentBytes = request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L);
+    }
+
+    /**
+     * Names the operation of a request: "list" for program listings, "batch" for batch fetches,
+     * otherwise the lower case HTTP method.
+     */
+    static String operationOf(HttpRequest request) {
+        return operationOf(request.method(), request.uri().getPath());
+    }
+
+    static String operationOf(String method, String path) {
+        String operation = method.toLowerCase(Locale.ROOT);
+        if ("get".equals(operation) && (path == null || path.isEmpty() || path.endsWith("/"))) {
+            return "list";
+        }
+        if ("post".equals(operation) && path != null && path.endsWith(HttpApiClient.BATCH_ENDPOINT)) {
+            return "batch";
+        }
+        return operation;
+    }
+
+    /**
+     * Wraps the transport's body handler to count the received bytes and to record the request once its body is closed.
+     *
+     * @param transport The transport the request is sent with
+     * @return The body handler for the request
+     */
+    HttpResponse.BodyHandler<InputStream> bodyHandler(HttpTransport transport) {
+        HttpResponse.BodyHandler<InputStream> bodyHandler = transport.bodyHandler(receivedBytes);
+        return responseInfo -> {
+            // The body handler is applied as soon as the response headers arrived
+            responded = true;
+            metrics.recordResponseTime(System.nanoTime() - startNanos);
+            return HttpResponse.BodySubscribers.mapping(bodyHandler.apply(responseInfo),
+                    body -> new FilterInputStream(body) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                if (recorded.compareAndSet(false, true)) {
+                                    metrics.recordResponse(responseInfo.statusCode(), System.nanoTime() - startNanos,
+                                            sentBytes, receivedBytes.get());
+                                }
+                            }
+                        }
+                    });
+        };
+    }
+
+    /**
+     * Records that the request failed without a complete response. A request that timed out waiting for the
+     * response headers is also recorded as having taken its timeout, so the adapted timeouts can grow again.
+     *
+     * @param error The error of the request
+     */
+    void failed(Throwable error) {
+        if (recorded.compareAndSet(false, true)) {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            // Timeouts while reading the body don't count, the response time was recorded with the headers
+            if (!responded && error instanceof HttpTimeoutException && !(error instanceof HttpConnectTimeoutException)) {
+                metrics.recordTimeout(elapsedNanos);
+            }
+            metrics.recordConnectionError(elapsedNanos, sentBytes);
+        }
+    }
+}
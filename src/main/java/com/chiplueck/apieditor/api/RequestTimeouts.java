@@ -0,0 +1,90 @@
+package com.chiplueck.apieditor.api;
+
+import com.chiplueck.apieditor.metrics.OperationMetrics;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the timeout of an API request: the time the server has to answer it with the response headers.
+ * Once enough responses of an operation were seen in the last minutes, the timeout follows the endpoint's
+ * recent response times, counting timed out requests as responses that took their timeout,
+ * so a stalled server is noticed after a few seconds where it usually answers in milliseconds, and a slow one
+ * isn't given up on too early. Uploads are given extra time for their body size. A deadline configured
+ * for the operation on the endpoint bounds the timeout, and also the whole exchange until the response body
+ * was read. While a body is read, the next bytes must arrive within the timeout, see {@link BodyWatchdog}.
+ */
+final class RequestTimeouts {
+    // Used until enough responses were seen and while requests time out, if the endpoint has no deadline for the operation
+    private static final long DEFAULT_TIMEOUT_MS = 10000;
+    private static final long MIN_TIMEOUT_MS = 2000;
+    private static final long MAX_TIMEOUT_MS = 120000;
+    private static final int MIN_RESPONSES = 20;
+    private static final int RESPONSE_TIME_FACTOR = 4;
+    // The slowest upload rate that is still waited for
+    private static final long MIN_UPLOAD_BYTES_PER_SECOND = 64 * 1024;
+
+    private RequestTimeouts() {
+    }
+
+    /**
+     * Gets the timeout for a request.
+     *
+     * @param endpoint The endpoint, with the configured deadlines
+     * @param metrics The metrics of the request's operation on the endpoint
+     * @param operation The operation, see {@link RequestMeter#operationOf}
+     * @param bodyBytes The size of the request body as sent
+     * @return The timeout
+     */
+    static Duration timeoutFor(ApiEndpoint endpoint, OperationMetrics metrics, String operation, long bodyBytes) {
+        long deadlineMs = deadlineMs(endpoint, operation);
+        long timeoutMs;
+        // While requests time out, the response times lag behind the server's, so the timeout isn't cut down
+        if (metrics.getResponseCount() < MIN_RESPONSES || metrics.hasRecentTimeouts()) {
+            timeoutMs = deadlineMs > 0 ? deadlineMs : DEFAULT_TIMEOUT_MS;
+        } else {
+            long p99Ms = TimeUnit.MICROSECONDS.toMillis(metrics.getResponseTimeAtPercentile(99));
+            timeoutMs = Math.max(MIN_TIMEOUT_MS, RESPONSE_TIME_FACTOR * p99Ms);
+        }
+        timeoutMs += bodyBytes * 1000 / MIN_UPLOAD_BYTES_PER_SECOND;
+        return Duration.ofMillis(Math.min(deadlineMs > 0 ? deadlineMs : MAX_TIMEOUT_MS, timeoutMs));
+    }
+
+    /**
+     * Gets the time a response body may take between two reads.
+     *
+     * @param timeout The timeout of the request
+     * @return The idle timeout in milliseconds
+     */
+    static long bodyIdleTimeoutMs(Duration timeout) {
+        // Adapted timeouts follow the time to the first byte; a body may pause longer, e.g. while the server pages a listing
+        return Math.max(DEFAULT_TIMEOUT_MS, timeout.toMillis());
+    }
+
+    /**
+     * Gets the deadline configured for an operation on the endpoint.
+     *
+     * @param endpoint The endpoint
+     * @param operation The operation, see {@link RequestMeter#operationOf}
+     * @return The deadline in milliseconds, or 0 if there is none
+     */
+    static long deadlineMs(ApiEndpoint endpoint, String operation) {
+        return TimeUnit.SECONDS.toMillis(getDeadlineSeconds(endpoint, operation));
+    }
+
+    private static int getDeadlineSeconds(ApiEndpoint endpoint, String operation) {
+        switch (operation) {
+            case "list":
+                return endpoint.getListTimeoutSeconds();
+            case "get":
+            case "batch":
+                return endpoint.getFetchTimeoutSeconds();
+            case "put":
+            case "patch":
+                return endpoint.getSaveTimeoutSeconds();
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.chiplueck.apieditor.api;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed API request is sent again and how long to wait before.
+ * Requests that the server cannot have processed, because no connection was made or it answered
+ * "429 Too Many Requests" or "503 Service Unavailable", are retried whatever their method. After other
+ * connection errors and gateway errors the request may have reached the server, so only idempotent
+ * requests are retried. Requests that timed out are not retried, they already waited for the full timeout.
+ */
+final class RetryPolicy {
+    static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_DELAY_MS = 250;
+    private static final long MAX_DELAY_MS = 4000;
+    // Longer waits asked for with Retry-After are not sat out, the request fails and the circuit breaker holds back further ones
+    private static final long MAX_RETRY_AFTER_MS = 10000;
+    // Statuses of an overloaded or unreachable server; they count as failures for the circuit breaker
+    static final Set<Integer> TRANSIENT_STATUSES = Set.of(429, 502, 503, 504);
+    private static final Set<Integer> NOT_PROCESSED_STATUSES = Set.of(429, 503);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * Checks whether sending a request twice has the same effect as sending it once.
+     * Batch fetches are POST requests but only read programs.
+     */
+    static boolean isIdempotent(HttpRequest request) {
+        String path = request.uri().getPath();
+        return IDEMPOTENT_METHODS.contains(request.method())
+                || "POST".equals(request.method()) && path != null && path.endsWith(HttpApiClient.BATCH_ENDPOINT);
+    }
+
+    /**
+     * Checks whether a request error counts as a failure of the endpoint for the circuit breaker and may be retried:
+     * the connection could not be made, was reset or timed out. TLS errors such as an untrusted certificate,
+     * malformed responses and requests interrupted by the caller are final, retrying won't help.
+     */
+    static boolean isTransient(IOException error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SSLException) {
+                return false;
+            }
+            // SocketTimeoutException is an InterruptedIOException, so it is checked before those are ruled out
+            if (cause instanceof HttpTimeoutException || cause instanceof SocketTimeoutException
+                    || cause instanceof SocketException || cause instanceof EOFException
+                    || cause instanceof ClosedChannelException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the delay before retrying a request that the server answered with an error status.
+     *
+     * @param request The request
+     * @param statusCode The status of the response
+     * @param headers The headers of the response
+     * @param attempt The number of times the request was sent
+     * @return The delay in milliseconds, or -1 if the request should not be retried
+     */
+    static long delayAfterResponse(HttpRequest request, int statusCode, HttpHeaders headers, int attempt) {
+        if (attempt >= MAX_ATTEMPTS || !TRANSIENT_STATUSES.contains(statusCode)
+                || !NOT_PROCESSED_STATUSES.contains(statusCode) && !isIdempotent(request)) {
+            return -1;
+        }
+        long retryAfterMs = getRetryAfterMs(headers);
+        if (retryAfterMs > MAX_RETRY_AFTER_MS) {
+            return -1;
+        }
+        return Math.max(retryAfterMs, backoff(attempt));
+    }
+
+    /**
+     * Gets the delay before retrying a request that failed without a response.
+     *
+     * @param request The request
+     * @param error The error of the request
+     * @param attempt The number of times the request was sent
+     * @return The delay in milliseconds, or -1 if the request should not be retried
+     */
+    static long delayAfterError(HttpRequest request, IOException error, int attempt) {
+        if (attempt >= MAX_ATTEMPTS) {
+            return -1;
+        }
+        boolean notConnected = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpConnectTimeoutException || cause instanceof ConnectException) {
+                notConnected = true;
+                break;
+            }
+            if (cause instanceof HttpTimeoutException || cause instanceof InterruptedIOException) {
+                return -1;
+            }
+        }
+        return notConnected || isIdempotent(request) ? backoff(attempt) : -1;
+    }
+
+    /**
+     * Gets the exponential backoff delay for a retry, with jitter so that the requests which failed
+     * together don't hit the server together again.
+     */
+    private static long backoff(int attempt) {
+        long delay = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Reads the Retry-After header, given in seconds or as an HTTP date.
+     *
+     * @param headers The response headers
+     * @return The time to wait in milliseconds, or 0 if the header is missing or invalid
+     */
+    static long getRetryAfterMs(HttpHeaders headers) {
+        String value = headers.firstValue("Retry-After").orElse(null);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, so an HTTP date
+        }
+        try {
+            Instant retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Math.max(0, retryAt.toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
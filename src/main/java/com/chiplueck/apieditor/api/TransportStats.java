@@ -0,0 +1,98 @@
+package com.chiplueck.apieditor.api;
+
+/**
+ * Snapshot of the connection pool and transfer statistics of an HttpTransport.
+ * Opened connections are counted from TLS handshakes, so they are only tracked for https endpoints.
+ * Body sizes are counted before and after content coding, on the wire and as seen by the API client.
+ */
+public class TransportStats {
+    private final String endpointName;
+    private final long requests;
+    private final long connectionsOpened;
+    private final long http2Responses;
+    private final long requestBytes;
+    private final long requestWireBytes;
+    private final long responseBytes;
+    private final long responseWireBytes;
+
+    public TransportStats(String endpointName, long requests, long connectionsOpened, long http2Responses,
+                          long requestBytes, long requestWireBytes, long responseBytes, long responseWireBytes) {
+        this.endpointName = endpointName;
+        this.requests = requests;
+        this.connectionsOpened = connectionsOpened;
+        this.http2Responses = http2Responses;
+        this.requestBytes = requestBytes;
+        this.requestWireBytes = requestWireBytes;
+        this.responseBytes = responseBytes;
+        this.responseWireBytes = responseWireBytes;
+    }
+
+    public String getEndpointName() {
+        return endpointName;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+    public long getHttp2Responses() {
+        return http2Responses;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getRequestWireBytes() {
+        return requestWireBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getResponseWireBytes() {
+        return responseWireBytes;
+    }
+
+    /**
+     * Gets how much smaller request bodies were on the wire than uncompressed.
+     * @return The ratio of uncompressed to transferred bytes, 1 if nothing was compressed
+     */
+    public double getRequestCompressionRatio() {
+        return requestWireBytes == 0 ? 1 : (double) requestBytes / requestWireBytes;
+    }
+
+    /**
+     * Gets how much smaller response bodies were on the wire than decoded.
+     * @return The ratio of decoded to transferred bytes, 1 if nothing was compressed
+     */
+    public double getResponseCompressionRatio() {
+        return responseWireBytes == 0 ? 1 : (double) responseBytes / responseWireBytes;
+    }
+
+    /**
+     * Gets the fraction of requests that were served over an already open connection.
+     * @return The reuse ratio between 0 and 1
+     */
+    public double getReuseRatio() {
+        if (requests == 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - (double) connectionsOpened / requests);
+    }
+
+    @Override
+    public String toString() {
+        return endpointName + ": " + requests + " requests, " +
+                connectionsOpened + " connections opened, " +
+                String.format("%.1f%%", getReuseRatio() * 100) + " reused, " +
+                http2Responses + " over HTTP/2, " +
+                responseWireBytes / 1024 + " KB received (" + String.format("%.1fx", getResponseCompressionRatio()) + " compression), " +
+                requestWireBytes / 1024 + " KB sent (" + String.format("%.1fx", getRequestCompressionRatio()) + " compression)";
+    }
+}
@@ -0,0 +1,52 @@
+package com.chiplueck.apieditor.cache;
+
+/**
+ * Snapshot of the statistics of a WeightedLruCache.
+ */
+public class CacheStats {
+    private final String name;
+    private final int size;
+    private final long weight;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public CacheStats(String name, int size, long weight, long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.weight = weight;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + size + " entries (weight " + weight + "), " +
+                hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
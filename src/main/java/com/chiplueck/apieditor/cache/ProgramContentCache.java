@@ -0,0 +1,381 @@
+package com.chiplueck.apieditor.cache;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of program contents under the IDE system directory.
+ * Entries are keyed by endpoint ID, program ID and lastModified, so content is only served
+ * for the exact version a listing announced. Entries also keep the program's name, so files
+ * can be restored after a restart without a listing. The cache is bounded by its total size on disk
+ * and evicts the least recently used entries first.
+ */
+@Service
+public final class ProgramContentCache {
+    private static final Logger LOG = Logger.getInstance(ProgramContentCache.class);
+    private static final long MAX_CACHE_BYTES = 256L * 1024 * 1024;
+    // Entries are etag, name and extension, each as an int length (-1 for null) and UTF-8 bytes, followed by the content
+    private static final String FILE_SUFFIX = ".entry";
+    // Entries of the previous format, without name and extension, are discarded
+    private static final String LEGACY_FILE_SUFFIX = ".bin";
+
+    private final Path root;
+    // Access-ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean indexLoaded;
+
+    public ProgramContentCache() {
+        this(Paths.get(PathManager.getSystemPath(), "api-editor", "content"));
+        // Scanning the cache directory stats every entry, so it is done before the first lookup needs it
+        ApplicationManager.getApplication().executeOnPooledThread(this::ensureIndexLoaded);
+    }
+
+    ProgramContentCache(Path root) {
+        this.root = root;
+    }
+
+    public static ProgramContentCache getInstance() {
+        return ApplicationManager.getApplication().getService(ProgramContentCache.class);
+    }
+
+    /**
+     * Gets the cached content for the listed version of a program.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param listed The program as announced by the listing
+     * @return A copy of the listed program with the cached content, or null if that version is not cached
+     */
+    @Nullable
+    public RemoteProgram get(String endpointId, RemoteProgram listed) {
+        String key = createKey(endpointId, listed.getId());
+        Entry entry;
+        synchronized (this) {
+            loadIndex();
+            entry = entries.get(key);
+        }
+        if (entry == null || entry.lastModified != listed.getLastModified()) {
+            return null;
+        }
+        RemoteProgram program = read(key, entry, listed.getId());
+        if (program != null) {
+            // The listing is authoritative for the name, which may have changed without a new version
+            program.setName(listed.getName());
+            program.setExtension(listed.getExtension());
+        }
+        return program;
+    }
+
+    /**
+     * Gets the cached content of a program, whichever version it is, e.g. to restore a file after a restart.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param programId The ID of the program
+     * @return The cached program with its name and content, or null if no version of it is cached
+     */
+    @Nullable
+    public RemoteProgram getLatest(String endpointId, String programId) {
+        String key = createKey(endpointId, programId);
+        Entry entry;
+        synchronized (this) {
+            loadIndex();
+            entry = entries.get(key);
+        }
+        return entry != null ? read(key, entry, programId) : null;
+    }
+
+    @Nullable
+    private RemoteProgram read(String key, Entry entry, String programId) {
+        try (FileChannel channel = FileChannel.open(entry.path, StandardOpenOption.READ)) {
+            String etag = readString(channel);
+            String name = readString(channel);
+            String extension = readString(channel);
+            byte[] content = new byte[(int) (channel.size() - channel.position())];
+            readFully(channel, ByteBuffer.wrap(content));
+
+            // Persist the access time so the LRU order survives restarts
+            Files.setLastModifiedTime(entry.path, FileTime.fromMillis(System.currentTimeMillis()));
+
+            RemoteProgram program = new RemoteProgram(programId, name, extension);
+            program.setLastModified(entry.lastModified);
+            program.setEtag(etag);
+            program.setContentBytes(content);
+            return program;
+        } catch (NoSuchFileException e) {
+            // Evicted concurrently
+            remove(key, entry);
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Failed to read cached content of program " + programId, e);
+            remove(key, entry);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the content of a program, replacing any other cached version of it.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param program The program with its content
+     */
+    public void put(String endpointId, RemoteProgram program) {
+        if (program.getContentBytes() == null) {
+            return;
+        }
+        String key = createKey(endpointId, program.getId());
+        Path directory = root.resolve(endpointId);
+        Path target = directory.resolve(key.substring(key.indexOf('/') + 1) + "-" + program.getLastModified() + FILE_SUFFIX);
+
+        ByteBuffer header = createHeader(program);
+        byte[] content = program.getContentBytes();
+        long size = header.remaining() + content.length;
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(channel, header);
+                writeFully(channel, ByteBuffer.wrap(content));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Failed to cache content of program " + program.getId(), e);
+            return;
+        }
+
+        Entry entry = new Entry(target, program.getLastModified(), size);
+        List<Path> obsolete = new ArrayList<>();
+        synchronized (this) {
+            loadIndex();
+            Entry previous = entries.put(key, entry);
+            totalBytes += entry.size;
+            if (previous != null) {
+                totalBytes -= previous.size;
+                if (!previous.path.equals(target)) {
+                    obsolete.add(previous.path);
+                }
+            }
+            evict(obsolete);
+        }
+        deleteAll(obsolete);
+    }
+
+    /**
+     * Removes all cached content of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    public void invalidateEndpoint(String endpointId) {
+        List<Path> obsolete = new ArrayList<>();
+        synchronized (this) {
+            loadIndex();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> mapEntry = iterator.next();
+                if (mapEntry.getKey().startsWith(endpointId + "/")) {
+                    obsolete.add(mapEntry.getValue().path);
+                    totalBytes -= mapEntry.getValue().size;
+                    iterator.remove();
+                }
+            }
+        }
+        deleteAll(obsolete);
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            totalBytes -= entry.size;
+            deleteAll(Collections.singletonList(entry.path));
+        }
+    }
+
+    private void evict(List<Path> obsolete) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            obsolete.add(eldest.path);
+            totalBytes -= eldest.size;
+            iterator.remove();
+        }
+    }
+
+    private synchronized void ensureIndexLoaded() {
+        loadIndex();
+    }
+
+    /**
+     * Builds the in-memory index on first use. Called while holding this.
+     */
+    private void loadIndex() {
+        if (indexLoaded) {
+            return;
+        }
+        scanIndex();
+        indexLoaded = true;
+    }
+
+    /**
+     * Builds the in-memory index from the cache directory, oldest access first.
+     */
+    private void scanIndex() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        List<Path> legacyFiles = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(root, 2)) {
+            walk.forEach(path -> {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(FILE_SUFFIX)) {
+                    files.add(path);
+                } else if (fileName.endsWith(LEGACY_FILE_SUFFIX)) {
+                    legacyFiles.add(path);
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Failed to scan program content cache " + root, e);
+            return;
+        }
+        deleteAll(legacyFiles);
+
+        Map<Path, FileTime> accessTimes = new HashMap<>();
+        for (Path file : files) {
+            try {
+                accessTimes.put(file, Files.getLastModifiedTime(file));
+            } catch (IOException e) {
+                accessTimes.put(file, FileTime.fromMillis(0));
+            }
+        }
+        files.sort(Comparator.comparing(accessTimes::get));
+
+        List<Path> obsolete = new ArrayList<>();
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            int separator = fileName.lastIndexOf('-');
+            if (separator < 0) {
+                obsolete.add(file);
+                continue;
+            }
+            try {
+                long lastModified = Long.parseLong(fileName.substring(separator + 1, fileName.length() - FILE_SUFFIX.length()));
+                String key = file.getParent().getFileName() + "/" + fileName.substring(0, separator);
+                Entry entry = new Entry(file, lastModified, Files.size(file));
+                Entry previous = entries.put(key, entry);
+                totalBytes += entry.size;
+                if (previous != null) {
+                    obsolete.add(previous.path);
+                    totalBytes -= previous.size;
+                }
+            } catch (NumberFormatException | IOException e) {
+                obsolete.add(file);
+            }
+        }
+        evict(obsolete);
+        deleteAll(obsolete);
+        LOG.info("Loaded program content cache: " + entries.size() + " entries, " + totalBytes + " bytes");
+    }
+
+    @NotNull
+    private static String createKey(String endpointId, String programId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(programId.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(endpointId).append('/');
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ByteBuffer createHeader(RemoteProgram program) {
+        byte[][] fields = {bytesOf(program.getEtag()), bytesOf(program.getName()), bytesOf(program.getExtension())};
+        int size = 0;
+        for (byte[] field : fields) {
+            size += Integer.BYTES + (field != null ? field.length : 0);
+        }
+        ByteBuffer header = ByteBuffer.allocate(size);
+        for (byte[] field : fields) {
+            if (field == null) {
+                header.putInt(-1);
+            } else {
+                header.putInt(field.length).put(field);
+            }
+        }
+        return header.flip();
+    }
+
+    @Nullable
+    private static byte[] bytesOf(@Nullable String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Nullable
+    private static String readString(FileChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length);
+        int size = length.flip().getInt();
+        if (size < 0) {
+            return null;
+        }
+        if (size > channel.size() - channel.position()) {
+            throw new IOException("Corrupt cache entry");
+        }
+        byte[] bytes = new byte[size];
+        readFully(channel, ByteBuffer.wrap(bytes));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of cache entry");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void deleteAll(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete cache entry " + path, e);
+            }
+        }
+    }
+
+    private static class Entry {
+        final Path path;
+        final long lastModified;
+        final long size;
+
+        Entry(Path path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.chiplueck.apieditor.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe in-memory cache bounded by the total weight of its values.
+ * When the bound is exceeded, the least recently used entries are evicted first.
+ * Pinned entries (e.g. files open in an editor) are never evicted, but still count towards the weight.
+ * The most recently used entry is kept even if it alone exceeds the bound, so a value heavier than
+ * the bound, like the listing of a huge catalog, isn't evicted by the put that stores it.
+ */
+public class WeightedLruCache<K, V> {
+    private final String name;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final Predicate<V> pinned;
+
+    // Ordered by last use, so iteration starts with the least recently used entry
+    private final LinkedHashMap<K, Node<V>> entries = new LinkedHashMap<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param name The name of the cache, for statistics
+     * @param maxWeight The maximum total weight of the cached values
+     * @param weigher Computes the weight of a value when it is added or reweighed
+     * @param pinned Tells whether a value must not be evicted
+     */
+    public WeightedLruCache(String name, long maxWeight, ToLongFunction<V> weigher, Predicate<V> pinned) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.pinned = pinned;
+    }
+
+    /**
+     * Gets a cached value to use it, which counts as a hit or miss and marks the entry as most recently used.
+     */
+    @Nullable
+    public synchronized V get(K key) {
+        Node<V> node = entries.remove(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entries.put(key, node);
+        return node.value;
+    }
+
+    /**
+     * Gets a cached value for bookkeeping, e.g. to update it, without counting it in the statistics
+     * or changing the order of eviction.
+     */
+    @Nullable
+    public synchronized V peek(K key) {
+        Node<V> node = entries.get(key);
+        return node != null ? node.value : null;
+    }
+
+    public synchronized void put(K key, V value) {
+        Node<V> node = new Node<>(value, weigher.applyAsLong(value));
+        Node<V> previous = entries.remove(key);
+        entries.put(key, node);
+        weight += node.weight;
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        evict();
+    }
+
+    /**
+     * Recomputes the weight of a cached value after it changed, e.g. when a file got new content.
+     */
+    public synchronized void reweigh(K key) {
+        Node<V> node = entries.get(key);
+        if (node != null) {
+            long newWeight = weigher.applyAsLong(node.value);
+            weight += newWeight - node.weight;
+            node.weight = newWeight;
+            evict();
+        }
+    }
+
+    @Nullable
+    public synchronized V remove(K key) {
+        Node<V> node = entries.remove(key);
+        if (node == null) {
+            return null;
+        }
+        weight -= node.weight;
+        return node.value;
+    }
+
+    public synchronized void removeIf(Predicate<K> keyFilter) {
+        Iterator<Map.Entry<K, Node<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Node<V>> entry = iterator.next();
+            if (keyFilter.test(entry.getKey())) {
+                weight -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized List<V> values() {
+        List<V> values = new ArrayList<>(entries.size());
+        for (Node<V> node : entries.values()) {
+            values.add(node.value);
+        }
+        return values;
+    }
+
+    /**
+     * Evicts entries until the cache is within its bound again, e.g. after entries got unpinned.
+     */
+    public synchronized void trim() {
+        evict();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(name, entries.size(), weight, hits, misses, evictions);
+    }
+
+    private void evict() {
+        Iterator<Node<V>> iterator = entries.values().iterator();
+        // The last entry is the most recently used one
+        int evictable = entries.size() - 1;
+        while (weight > maxWeight && evictable-- > 0) {
+            Node<V> node = iterator.next();
+            if (!pinned.test(node.value)) {
+                weight -= node.weight;
+                evictions++;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Node<V> {
+        final V value;
+        long weight;
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileSystem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Root directory of an API endpoint in the virtual file system.
+ * Its children are the endpoint's programs, created on demand from the cached listing.
+ */
+public class ApiEditorEndpointDirectory extends VirtualFile {
+    private volatile ApiEndpoint endpoint;
+
+    public ApiEditorEndpointDirectory(ApiEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public ApiEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    void setEndpoint(ApiEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return endpoint.getName();
+    }
+
+    @NotNull
+    @Override
+    public VirtualFileSystem getFileSystem() {
+        return ApiEditorVirtualFileSystem.getInstance();
+    }
+
+    @NotNull
+    @Override
+    public String getPath() {
+        return ApiEditorVirtualFileSystem.createPath(endpoint.getId());
+    }
+
+    @Override
+    public boolean isWritable() {
+        return false;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return true;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public VirtualFile getParent() {
+        return null;
+    }
+
+    @Override
+    public VirtualFile[] getChildren() {
+        return ApiEditorFileSystem.getInstance().getProgramFiles(endpoint).toArray(VirtualFile.EMPTY_ARRAY);
+    }
+
+    @NotNull
+    @Override
+    public OutputStream getOutputStream(Object requestor, long newModificationStamp, long newTimeStamp) throws IOException {
+        throw new IOException("Cannot write to directory " + getPath());
+    }
+
+    @NotNull
+    @Override
+    public byte[] contentsToByteArray() throws IOException {
+        throw new IOException("Cannot read directory " + getPath());
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return 0;
+    }
+
+    @Override
+    public long getLength() {
+        return 0;
+    }
+
+    @Override
+    public void refresh(boolean asynchronous, boolean recursive, @Nullable Runnable postRunnable) {
+        // Children follow the cached listing, which is refreshed through the program list; open ones are checked
+        if (recursive) {
+            ApiEditorFileSystem.getInstance().refreshOpenFiles(endpoint.getId(), postRunnable);
+        } else if (postRunnable != null) {
+            postRunnable.run();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        throw new IOException("Cannot read directory " + getPath());
+    }
+}
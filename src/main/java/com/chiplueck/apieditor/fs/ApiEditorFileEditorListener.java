@@ -0,0 +1,26 @@
+package com.chiplueck.apieditor.fs;
+
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Pins program files in the program file cache while editors show them, and lets the cache evict them once closed.
+ */
+public class ApiEditorFileEditorListener implements FileEditorManagerListener {
+
+    @Override
+    public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        if (file instanceof ApiEditorVirtualFile) {
+            ApiEditorFileSystem.getInstance().editorOpened((ApiEditorVirtualFile) file);
+        }
+    }
+
+    @Override
+    public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        if (file instanceof ApiEditorVirtualFile) {
+            ApiEditorFileSystem.getInstance().editorClosed((ApiEditorVirtualFile) file);
+        }
+    }
+}
@@ -1,34 +1,106 @@
 package com.chiplueck.apieditor.fs;
 
 import com.chiplueck.apieditor.api.ApiClient;
+import com.chiplueck.apieditor.api.ApiResponseException;
+import com.chiplueck.apieditor.api.AsyncApiClient;
 import com.chiplueck.apieditor.api.HttpApiClient;
+import com.chiplueck.apieditor.api.ProgramChangeListener;
+import com.chiplueck.apieditor.api.ProgramChangeSubscription;
+import com.chiplueck.apieditor.cache.CacheStats;
+import com.chiplueck.apieditor.cache.ProgramContentCache;
+import com.chiplueck.apieditor.cache.WeightedLruCache;
 import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.ListingPage;
 import com.chiplueck.apieditor.model.RemoteProgram;
+import com.chiplueck.apieditor.services.ApiEndpointService;
+import com.chiplueck.apieditor.services.ProgramOpenHistory;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing the API Editor virtual file system.
  */
 @Service
-public final class ApiEditorFileSystem {
+public final class ApiEditorFileSystem implements Disposable {
     private static final Logger LOG = Logger.getInstance(ApiEditorFileSystem.class);
 
+    private static final long MAX_LISTED_PROGRAMS = 500_000;
+    private static final long MAX_FILE_CONTENT_BYTES = 64L * 1024 * 1024;
+    // Tiny files still count for something, so their number stays bounded
+    private static final long MIN_FILE_WEIGHT = 1024;
+    private static final long SHUTDOWN_SAVE_TIMEOUT_MS = 5000;
+
     private final Map<String, ApiEndpoint> activeEndpoints = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, RemoteProgram>> programCache = new ConcurrentHashMap<>();
-    private final Map<String, VirtualFile> virtualFiles = new ConcurrentHashMap<>();
+    // Listings are weighed by their number of programs, files by their content size
+    private final WeightedLruCache<String, ProgramListing> programCache =
+            new WeightedLruCache<>("Program listings", MAX_LISTED_PROGRAMS, ProgramListing::size, listing -> false);
+    private final Map<String, Long> syncTimes = new ConcurrentHashMap<>();
+    // Every file still referenced, keyed by file path, so each path has a single file instance
+    private final Map<String, ApiEditorVirtualFile> fileInstances = ContainerUtil.createConcurrentWeakValueMap();
+    // Keeps loaded files in memory up to a bound; unloaded ones only live as long as they are referenced
+    private final WeightedLruCache<String, ApiEditorVirtualFile> virtualFiles =
+            new WeightedLruCache<>("Program files", MAX_FILE_CONTENT_BYTES,
+                    file -> Math.max(file.getLength(), MIN_FILE_WEIGHT), ApiEditorVirtualFile::isPinned);
+    private final Map<String, ApiEditorEndpointDirectory> endpointDirectories = new ConcurrentHashMap<>();
+    // Loads in flight by file key, so an open joins a prefetch of the same program instead of repeating it
+    private final Map<String, CompletableFuture<ApiEditorVirtualFile>> pendingLoads = new ConcurrentHashMap<>();
+    // Unloaded files whose content is being restored in the background after they were read
+    private final Set<String> pendingRestores = ConcurrentHashMap.newKeySet();
+    private final Map<String, ProgramChangeSubscription> changeSubscriptions = new ConcurrentHashMap<>();
+    private final ProgramReconciler reconciler = new ProgramReconciler(this);
+    private final ProgramSaveQueue saveQueue = new ProgramSaveQueue(new ProgramSaveQueue.SaveListener() {
+        @Override
+        public void saved(ApiEditorVirtualFile file, RemoteProgram snapshot, RemoteProgram savedProgram) {
+            applySavedProgram(file, snapshot, savedProgram);
+        }
+
+        @Override
+        public boolean merged(ApiEditorVirtualFile file, RemoteProgram conflicted, RemoteProgram serverVersion, byte[] mergedContent) {
+            return applyMerge(file, conflicted, serverVersion, mergedContent);
+        }
+
+        @Override
+        public void discarded(ApiEditorVirtualFile file, RemoteProgram serverVersion) {
+            applyServerVersion(file, serverVersion);
+        }
+
+        @Override
+        public void settled(ApiEditorVirtualFile file) {
+            // An editor closed with unsaved edits kept the file pinned until they were saved
+            updateEditorPin(file);
+        }
+    });
+
+    public ApiEditorFileSystem() {
+        // Saves that didn't reach the server before the IDE was closed are sent again
+        ApplicationManager.getApplication().executeOnPooledThread(this::recoverUnsavedChanges);
+        // Open programs are checked for changes made elsewhere
+        reconciler.start();
+    }
 
     public static ApiEditorFileSystem getInstance() {
         return ApplicationManager.getApplication().getService(ApiEditorFileSystem.class);
@@ -36,47 +108,228 @@ public final class ApiEditorFileSystem {
 
     /**
      * Connects to an API endpoint and caches its programs.
+     * Reconnecting to an endpoint configured for incremental sync only fetches the changes.
      *
      * @param endpoint The API endpoint to connect to
      * @return The list of programs from the endpoint
      * @throws IOException If an error occurs during the API call
      */
     public List<RemoteProgram> connectToEndpoint(ApiEndpoint endpoint) throws IOException {
-        ApiClient apiClient = new HttpApiClient(endpoint);
-        List<RemoteProgram> programs = apiClient.listPrograms();
+        List<RemoteProgram> programs = syncPrograms(endpoint);
 
-        // Cache the endpoint and its programs
+        // Cache the endpoint
         activeEndpoints.put(endpoint.getId(), endpoint);
-        Map<String, RemoteProgram> programMap = new HashMap<>();
-        for (RemoteProgram program : programs) {
-            programMap.put(program.getId(), program);
-        }
-        programCache.put(endpoint.getId(), programMap);
 
+        // The endpoint is reachable, send the saves held back while it was not
+        saveQueue.resume(endpoint.getId());
+
+        subscribeToChanges(endpoint);
         return programs;
     }
 
+    /**
+     * Subscribes to the program changes of an endpoint configured for change notifications,
+     * or ends the subscription if the endpoint no longer is.
+     */
+    private void subscribeToChanges(ApiEndpoint endpoint) {
+        if (!endpoint.isChangeNotifications()) {
+            ProgramChangeSubscription subscription = changeSubscriptions.remove(endpoint.getId());
+            if (subscription != null) {
+                subscription.close();
+            }
+            return;
+        }
+        changeSubscriptions.compute(endpoint.getId(), (id, subscription) -> {
+            if (subscription != null && !endpoint.equals(subscription.getEndpoint())) {
+                // The endpoint's settings were edited
+                subscription.close();
+            }
+            if (subscription == null || !subscription.isActive()) {
+                subscription = new ProgramChangeSubscription(endpoint, new ProgramChangeListener() {
+                    @Override
+                    public void programChanged(RemoteProgram program) {
+                        applyRemoteChange(endpoint, program);
+                    }
+
+                    @Override
+                    public void programDeleted(String programId) {
+                        applyRemoteDeletion(endpoint, programId);
+                    }
+
+                    @Override
+                    public void resync() {
+                        resyncEndpoint(endpoint);
+                    }
+                });
+            }
+            subscription.start();
+            return subscription;
+        });
+    }
+
+    /**
+     * Applies edited endpoint settings. The endpoint's directory and files, and with them their fetches, saves
+     * and reconciliation, use the updated endpoint from now on.
+     *
+     * @param endpoint The updated endpoint
+     */
+    public void updateEndpoint(ApiEndpoint endpoint) {
+        activeEndpoints.replace(endpoint.getId(), endpoint);
+        ApiEditorEndpointDirectory directory = endpointDirectories.get(endpoint.getId());
+        if (directory != null) {
+            directory.setEndpoint(endpoint);
+        }
+        for (ApiEditorVirtualFile file : fileInstances.values()) {
+            if (file.getEndpoint().getId().equals(endpoint.getId())) {
+                file.setEndpoint(endpoint);
+            }
+        }
+        updateChangeSubscription(endpoint);
+    }
+
+    /**
+     * Applies edited endpoint settings to the endpoint's change subscription, if it has one.
+     */
+    private void updateChangeSubscription(ApiEndpoint endpoint) {
+        if (changeSubscriptions.containsKey(endpoint.getId())) {
+            subscribeToChanges(endpoint);
+        }
+    }
+
+    /**
+     * Takes over a program changed on the server: its listing entry is replaced and, if its content
+     * is held in memory, the newer version is fetched and shown unless the file has local changes.
+     */
+    private void applyRemoteChange(ApiEndpoint endpoint, RemoteProgram program) {
+        ProgramListing listing = programCache.peek(endpoint.getId());
+        if (listing != null) {
+            RemoteProgram listed = listing.get(program.getId());
+            // The listing may already hold the version, e.g. after a save from this IDE
+            if (listed == null || listed.getLastModified() < program.getLastModified()) {
+                listing.put(program);
+            }
+            if (listed == null) {
+                programCache.reweigh(endpoint.getId());
+            }
+        }
+        ApiEditorVirtualFile file = fileInstances.get(createFileKey(endpoint.getId(), program.getId()));
+        if (file != null && file.isLoaded() && file.getProgram().getLastModified() < program.getLastModified()) {
+            revalidate(file, file.getProgram());
+        }
+    }
+
+    /**
+     * Drops the listing entry of a program deleted on the server. A file showing it keeps its content;
+     * saving it creates the program again.
+     */
+    private void applyRemoteDeletion(ApiEndpoint endpoint, String programId) {
+        ProgramListing listing = programCache.peek(endpoint.getId());
+        if (listing != null && listing.remove(programId)) {
+            programCache.reweigh(endpoint.getId());
+        }
+    }
+
+    /**
+     * Fetches the listing of an endpoint again and revalidates the programs held in memory,
+     * after changes pushed by the server may have been missed.
+     */
+    private void resyncEndpoint(ApiEndpoint endpoint) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                syncPrograms(endpoint);
+            } catch (IOException e) {
+                // A background refresh; the endpoint is synced again on the next change or check
+                LOG.info("Failed to refresh the programs of endpoint " + endpoint.getName() + ": " + e.getMessage());
+            }
+            String prefix = ApiEditorVirtualFileSystem.createPath(endpoint.getId()) + "/";
+            for (ApiEditorVirtualFile file : fileInstances.values()) {
+                if (file.isLoaded() && file.getPath().startsWith(prefix)) {
+                    revalidate(file, file.getProgram());
+                }
+            }
+        });
+    }
+
     /**
      * Refreshes the programs for an API endpoint.
+     * For endpoints configured for incremental sync only the programs changed since the last sync are fetched.
      *
      * @param endpoint The API endpoint to refresh
      * @return The updated list of programs
      * @throws IOException If an error occurs during the API call
      */
     public List<RemoteProgram> refreshEndpoint(ApiEndpoint endpoint) throws IOException {
+        return syncPrograms(endpoint);
+    }
+
+    /**
+     * Streams the program listing of an endpoint into the program cache, page by page.
+     * A delta listing is merged into the cached programs; a full listing replaces them.
+     *
+     * @param endpoint The API endpoint
+     * @return The cached programs of the endpoint, sorted by name
+     * @throws IOException If an error occurs during the API call
+     */
+    private List<RemoteProgram> syncPrograms(ApiEndpoint endpoint) throws IOException {
+        ProgramListing cachedPrograms = programCache.get(endpoint.getId());
+        Long lastSync = syncTimes.get(endpoint.getId());
+        boolean incremental = endpoint.isIncrementalSync() && cachedPrograms != null && lastSync != null;
+
         ApiClient apiClient = new HttpApiClient(endpoint);
-        List<RemoteProgram> programs = apiClient.listPrograms();
+        Map<String, RemoteProgram> received = new HashMap<>();
+        List<String> deletedIds = new ArrayList<>();
+        boolean delta = incremental;
+        long serverTime = 0;
+        String cursor = null;
+        do {
+            ListingPage page = apiClient.listProgramPage(cursor, incremental ? lastSync : 0,
+                    program -> received.put(program.getId(), program));
+            // A server that ignores "since" answers with a full listing
+            delta &= page.isDelta();
+            deletedIds.addAll(page.getDeletedIds());
+            serverTime = Math.max(serverTime, page.getServerTime());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
 
-        // Update the program cache
-        Map<String, RemoteProgram> programMap = new HashMap<>();
-        for (RemoteProgram program : programs) {
-            programMap.put(program.getId(), program);
+        ProgramListing listing;
+        if (delta) {
+            listing = cachedPrograms;
+            listing.putAll(received.values());
+            for (String deletedId : deletedIds) {
+                listing.remove(deletedId);
+            }
+            LOG.info("Merged delta listing for endpoint " + endpoint.getName() + ": " +
+                    received.size() + " changed, " + deletedIds.size() + " deleted");
+        } else if (cachedPrograms != null) {
+            // Update the listing in place, so its search index is not built again
+            listing = cachedPrograms;
+            listing.putAll(received.values());
+            for (RemoteProgram listed : new ArrayList<>(listing.values())) {
+                if (!received.containsKey(listed.getId())) {
+                    listing.remove(listed.getId());
+                }
+            }
+        } else {
+            listing = new ProgramListing(received.values());
         }
-        programCache.put(endpoint.getId(), programMap);
+        // Put the listing back even after a merge, so its weight is updated
+        programCache.put(endpoint.getId(), listing);
 
+        syncTimes.put(endpoint.getId(), serverTime > 0 ? serverTime : latestModification(listing.values()));
+
+        List<RemoteProgram> programs = new ArrayList<>(listing.values());
+        programs.sort(Comparator.comparing(RemoteProgram::getFullName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)));
         return programs;
     }
 
+    private static long latestModification(Collection<RemoteProgram> programs) {
+        long latest = 0;
+        for (RemoteProgram program : programs) {
+            latest = Math.max(latest, program.getLastModified());
+        }
+        return latest;
+    }
+
     /**
      * Opens a remote program in the editor.
      *
@@ -86,45 +339,699 @@ public final class ApiEditorFileSystem {
      * @throws IOException If an error occurs during the API call
      */
     public void openProgram(Project project, ApiEndpoint endpoint, RemoteProgram program) throws IOException {
+        ProgramOpenHistory.getInstance().recordOpen(endpoint.getId(), program.getId());
+        openInEditor(project, loadProgram(endpoint, program));
+    }
+
+    /**
+     * Opens a remote program in the editor without blocking the calling thread.
+     * Many programs can be opened at once this way, as no thread is held while waiting for the API.
+     *
+     * @param project The current project
+     * @param endpoint The API endpoint
+     * @param program The program to open
+     * @return A future completing with the opened file, or exceptionally with an IOException
+     */
+    public CompletableFuture<VirtualFile> openProgramAsync(Project project, ApiEndpoint endpoint, RemoteProgram program) {
+        ProgramOpenHistory.getInstance().recordOpen(endpoint.getId(), program.getId());
+        return loadProgramAsync(endpoint, program).thenApply(file -> {
+            openInEditor(project, file);
+            return file;
+        });
+    }
+
+    /**
+     * Opens several remote programs in the editor at once, without blocking the calling thread.
+     * Programs that aren't held in memory or in the content cache are fetched together, see {@link #loadProgramsAsync}.
+     *
+     * @param project The current project
+     * @param endpoint The API endpoint
+     * @param programs The programs to open
+     * @return A future completing with the opened files, or exceptionally with an IOException
+     */
+    public CompletableFuture<List<ApiEditorVirtualFile>> openProgramsAsync(Project project, ApiEndpoint endpoint,
+                                                                          Collection<RemoteProgram> programs) {
+        for (RemoteProgram program : programs) {
+            ProgramOpenHistory.getInstance().recordOpen(endpoint.getId(), program.getId());
+        }
+        return loadProgramsAsync(endpoint, programs).thenApply(files -> {
+            files.forEach(file -> openInEditor(project, file));
+            return files;
+        });
+    }
+
+    /**
+     * Loads the content of several remote programs into their virtual files, without opening editors.
+     * Programs already held in memory are not fetched again, and programs being loaded are waited for.
+     * The others come from the content cache, or are fetched with as few requests as the server allows.
+     *
+     * @param endpoint The API endpoint
+     * @param programs The programs to load
+     * @return A future completing with the files of the programs that exist, or exceptionally with an IOException
+     */
+    public CompletableFuture<List<ApiEditorVirtualFile>> loadProgramsAsync(ApiEndpoint endpoint, Collection<RemoteProgram> programs) {
+        List<ApiEditorVirtualFile> files = new ArrayList<>();
+        List<CompletableFuture<ApiEditorVirtualFile>> joinedLoads = new ArrayList<>();
+        // Loads of the programs not held in memory, registered so single opens join them
+        Map<String, CompletableFuture<ApiEditorVirtualFile>> fetchLoads = new HashMap<>();
+        List<RemoteProgram> unloadedPrograms = new ArrayList<>();
+        for (RemoteProgram program : programs) {
+            String key = createFileKey(endpoint.getId(), program.getId());
+            ApiEditorVirtualFile file = getLoadedFile(key);
+            if (file != null) {
+                files.add(file);
+                continue;
+            }
+            CompletableFuture<ApiEditorVirtualFile> load = new CompletableFuture<>();
+            CompletableFuture<ApiEditorVirtualFile> pendingLoad = pendingLoads.putIfAbsent(key, load);
+            if (pendingLoad != null) {
+                joinedLoads.add(pendingLoad.copy());
+            } else {
+                fetchLoads.put(program.getId(), load);
+                unloadedPrograms.add(program);
+            }
+        }
+
+        // Reading the content cache may wait for its index, so it is not done on the calling thread
+        CompletableFuture<List<RemoteProgram>> fetch = fetchLoads.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyList())
+                : CompletableFuture.supplyAsync(() -> loadFromDiskCache(endpoint, unloadedPrograms, fetchLoads, files),
+                                AppExecutorUtil.getAppExecutorService())
+                        .thenCompose(fetchIds -> fetchIds.isEmpty()
+                                ? CompletableFuture.completedFuture(Collections.<RemoteProgram>emptyList())
+                                : new HttpApiClient(endpoint).getProgramsAsync(fetchIds));
+        return fetch.handle((fetchedPrograms, error) -> {
+            Map<String, ApiEditorVirtualFile> fetchedFiles = new HashMap<>();
+            if (error == null) {
+                for (RemoteProgram fullProgram : fetchedPrograms) {
+                    ProgramContentCache.getInstance().put(endpoint.getId(), fullProgram);
+                    fetchedFiles.put(fullProgram.getId(), cacheProgram(endpoint, fullProgram));
+                }
+                files.addAll(fetchedFiles.values());
+            }
+            fetchLoads.forEach((programId, load) -> {
+                pendingLoads.remove(createFileKey(endpoint.getId(), programId), load);
+                ApiEditorVirtualFile file = fetchedFiles.get(programId);
+                if (error != null) {
+                    load.completeExceptionally(error);
+                } else if (file != null) {
+                    load.complete(file);
+                } else {
+                    load.completeExceptionally(new ApiResponseException(404, "Program " + programId + " not found"));
+                }
+            });
+            if (error != null) {
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            return files;
+        }).thenCompose(loadedFiles -> CompletableFuture.allOf(joinedLoads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    joinedLoads.forEach(load -> loadedFiles.add(load.join()));
+                    return loadedFiles;
+                }));
+    }
+
+    /**
+     * Loads the programs found in the content cache and completes their loads.
+     *
+     * @param programs The programs to load
+     * @param loads The loads of the programs by program ID; the completed ones are removed
+     * @param files Receives the files of the programs found
+     * @return The IDs of the programs that must be fetched
+     */
+    private List<String> loadFromDiskCache(ApiEndpoint endpoint, List<RemoteProgram> programs,
+                                           Map<String, CompletableFuture<ApiEditorVirtualFile>> loads,
+                                           List<ApiEditorVirtualFile> files) {
+        for (RemoteProgram program : programs) {
+            ApiEditorVirtualFile cachedFile = loadFromDiskCache(endpoint, program);
+            if (cachedFile != null) {
+                CompletableFuture<ApiEditorVirtualFile> load = loads.remove(program.getId());
+                pendingLoads.remove(createFileKey(endpoint.getId(), program.getId()), load);
+                load.complete(cachedFile);
+                files.add(cachedFile);
+            }
+        }
+        return new ArrayList<>(loads.keySet());
+    }
+
+    /**
+     * Loads the content of a remote program into its virtual file, without opening an editor.
+     *
+     * @param endpoint The API endpoint
+     * @param program The program to load
+     * @return The virtual file of the program
+     * @throws IOException If an error occurs during the API call
+     */
+    public ApiEditorVirtualFile loadProgram(ApiEndpoint endpoint, RemoteProgram program) throws IOException {
+        CompletableFuture<ApiEditorVirtualFile> pendingLoad = pendingLoads.get(createFileKey(endpoint.getId(), program.getId()));
+        if (pendingLoad != null) {
+            return awaitLoad(pendingLoad);
+        }
+
+        RemoteProgram knownVersion = getLoadedProgram(endpoint, program.getId());
+        if (knownVersion == null) {
+            ApiEditorVirtualFile cachedFile = loadFromDiskCache(endpoint, program);
+            if (cachedFile != null) {
+                return cachedFile;
+            }
+        }
+
         ApiClient apiClient = new HttpApiClient(endpoint);
-        RemoteProgram fullProgram = apiClient.getProgram(program.getId());
+        RemoteProgram fullProgram = apiClient.getProgram(program.getId(), knownVersion);
+        if (fullProgram != knownVersion) {
+            ProgramContentCache.getInstance().put(endpoint.getId(), fullProgram);
+        }
+        return cacheProgram(endpoint, fullProgram);
+    }
 
-        // Create a virtual file for the program
+    /**
+     * Loads the content of a remote program into its virtual file without blocking the calling thread
+     * and without opening an editor.
+     *
+     * @param endpoint The API endpoint
+     * @param program The program to load
+     * @return A future completing with the virtual file of the program, or exceptionally with an IOException
+     */
+    public CompletableFuture<ApiEditorVirtualFile> loadProgramAsync(ApiEndpoint endpoint, RemoteProgram program) {
         String key = createFileKey(endpoint.getId(), program.getId());
-        VirtualFile file = virtualFiles.computeIfAbsent(key, k -> new ApiEditorVirtualFile(endpoint, fullProgram));
+        CompletableFuture<ApiEditorVirtualFile> load = pendingLoads.get(key);
+        if (load == null) {
+            CompletableFuture<ApiEditorVirtualFile> newLoad = new CompletableFuture<>();
+            load = pendingLoads.putIfAbsent(key, newLoad);
+            if (load == null) {
+                load = newLoad;
+                startLoadAsync(endpoint, program).whenComplete((file, error) -> {
+                    pendingLoads.remove(key, newLoad);
+                    if (error != null) {
+                        newLoad.completeExceptionally(error);
+                    } else {
+                        newLoad.complete(file);
+                    }
+                });
+            }
+        }
+        // A caller cancelling its copy doesn't affect the others waiting for the load
+        return load.copy();
+    }
 
-        // Update the file content if it already exists
-        if (file instanceof ApiEditorVirtualFile) {
-            ((ApiEditorVirtualFile) file).updateProgram(fullProgram);
+    private CompletableFuture<ApiEditorVirtualFile> startLoadAsync(ApiEndpoint endpoint, RemoteProgram program) {
+        RemoteProgram knownVersion = getLoadedProgram(endpoint, program.getId());
+        if (knownVersion != null) {
+            return fetchAsync(endpoint, program, knownVersion);
         }
+        // Reading the content cache may wait for its index, so it is not done on the calling thread
+        return CompletableFuture.supplyAsync(() -> loadFromDiskCache(endpoint, program), AppExecutorUtil.getAppExecutorService())
+                .thenCompose(cachedFile -> cachedFile != null
+                        ? CompletableFuture.completedFuture(cachedFile)
+                        : fetchAsync(endpoint, program, null));
+    }
+
+    private CompletableFuture<ApiEditorVirtualFile> fetchAsync(ApiEndpoint endpoint, RemoteProgram program,
+                                                               @Nullable RemoteProgram knownVersion) {
+        AsyncApiClient apiClient = new HttpApiClient(endpoint);
+        return apiClient.getProgramAsync(program.getId(), knownVersion)
+                .thenApply(fullProgram -> {
+                    if (fullProgram != knownVersion) {
+                        ProgramContentCache.getInstance().put(endpoint.getId(), fullProgram);
+                    }
+                    return cacheProgram(endpoint, fullProgram);
+                });
+    }
+
+    private static ApiEditorVirtualFile awaitLoad(CompletableFuture<ApiEditorVirtualFile> load) throws IOException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether the content of a program is already held in memory.
+     */
+    boolean isProgramLoaded(ApiEndpoint endpoint, String programId) {
+        return getLoadedProgram(endpoint, programId) != null;
+    }
 
-        // Open the file in the editor
+    /**
+     * Loads the listed version of a program from the persistent content cache, if it is there,
+     * and revalidates it against the server in the background.
+     *
+     * @return The file of the program, or null if the listed version is not cached
+     */
+    @Nullable
+    private ApiEditorVirtualFile loadFromDiskCache(ApiEndpoint endpoint, RemoteProgram program) {
+        RemoteProgram cachedProgram = ProgramContentCache.getInstance().get(endpoint.getId(), program);
+        if (cachedProgram == null) {
+            return null;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loading program " + program.getFullName() + " from the content cache");
+        }
+        ApiEditorVirtualFile file = cacheProgram(endpoint, cachedProgram);
+        revalidate(file, cachedProgram);
+        return file;
+    }
+
+    /**
+     * Checks a cached program version against the server without blocking,
+     * and reloads the file if the server has a newer version.
+     *
+     * @param file The virtual file showing the cached version
+     * @param cachedVersion The cached version
+     */
+    private void revalidate(ApiEditorVirtualFile file, RemoteProgram cachedVersion) {
+        revalidateAsync(file, cachedVersion).exceptionally(e -> {
+            // The cached version stays shown; the reconciler checks it again later
+            LOG.info("Failed to revalidate cached program " + cachedVersion.getFullName() + ": " + e.getMessage());
+            return false;
+        });
+    }
+
+    /**
+     * Checks a cached program version against the server, and reloads the file if the server has a newer version.
+     *
+     * @param file The virtual file showing the cached version
+     * @param cachedVersion The cached version
+     * @return Completes with true if the server has a newer version, or exceptionally if the request failed
+     */
+    CompletableFuture<Boolean> revalidateAsync(ApiEditorVirtualFile file, RemoteProgram cachedVersion) {
+        ApiEndpoint endpoint = file.getEndpoint();
+        AsyncApiClient apiClient = new HttpApiClient(endpoint);
+        return apiClient.getProgramAsync(cachedVersion.getId(), cachedVersion)
+                .thenApply(latestVersion -> {
+                    if (latestVersion == cachedVersion) {
+                        return false;
+                    }
+                    ProgramContentCache.getInstance().put(endpoint.getId(), latestVersion);
+                    reloadFile(file, cachedVersion, latestVersion);
+                    return true;
+                });
+    }
+
+    /**
+     * Checks the programs open in editors for changes on the server right away.
+     *
+     * @param endpointId The ID of the API endpoint whose programs are checked, or null for all endpoints
+     * @param postRunnable Run on the event dispatch thread once the programs were checked, or null
+     */
+    public void refreshOpenFiles(@Nullable String endpointId, @Nullable Runnable postRunnable) {
+        List<ApiEditorVirtualFile> files = getOpenFiles();
+        if (endpointId != null) {
+            files.removeIf(file -> !file.getEndpoint().getId().equals(endpointId));
+        }
+        reconciler.refresh(files, postRunnable);
+    }
+
+    /**
+     * Checks a program for changes on the server right away.
+     *
+     * @param file The file of the program
+     * @param postRunnable Run on the event dispatch thread once the program was checked, or null
+     */
+    public void refreshFile(ApiEditorVirtualFile file, @Nullable Runnable postRunnable) {
+        reconciler.refresh(List.of(file), postRunnable);
+    }
+
+    /**
+     * Gets the files whose program content is loaded and shown in an editor.
+     */
+    List<ApiEditorVirtualFile> getOpenFiles() {
+        Project[] projects = ProjectManager.getInstance().getOpenProjects();
+        List<ApiEditorVirtualFile> files = new ArrayList<>();
+        for (ApiEditorVirtualFile file : fileInstances.values()) {
+            if (file.isLoaded() && isOpenInEditor(file, projects)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Checks whether a file has changes that are not on the server yet: unsaved edits, or a save in progress.
+     */
+    boolean isLocallyChanged(ApiEditorVirtualFile file) {
+        return FileDocumentManager.getInstance().isFileModified(file) || saveQueue.isPending(file);
+    }
+
+    /**
+     * Checks whether saves to an endpoint are held back because it could not be reached.
+     */
+    boolean isOffline(String endpointId) {
+        return saveQueue.isOffline(endpointId);
+    }
+
+    /**
+     * Checks whether the programs of an endpoint can be refreshed with a delta listing of the changes since the last sync.
+     */
+    boolean hasDeltaListing(ApiEndpoint endpoint) {
+        return endpoint.isIncrementalSync() && syncTimes.containsKey(endpoint.getId())
+                && programCache.peek(endpoint.getId()) != null;
+    }
+
+    /**
+     * Checks whether an endpoint currently pushes its program changes.
+     */
+    boolean hasChangeSubscription(String endpointId) {
+        ProgramChangeSubscription subscription = changeSubscriptions.get(endpointId);
+        return subscription != null && subscription.isActive();
+    }
+
+    /**
+     * Replaces the content of a file with a newer server version, unless it was edited in the meantime.
+     */
+    private void reloadFile(ApiEditorVirtualFile file, RemoteProgram expectedVersion, RemoteProgram latestVersion) {
         ApplicationManager.getApplication().invokeLater(() -> {
-            FileEditorManager.getInstance(project).openFile(file, true);
+            if (file.getProgram() != expectedVersion || FileDocumentManager.getInstance().isFileModified(file)
+                    || saveQueue.isPending(file)) {
+                return;
+            }
+            file.updateProgram(latestVersion);
+            virtualFiles.reweigh(createFileKey(file.getEndpoint().getId(), latestVersion.getId()));
+            FileDocumentManager.getInstance().reloadFiles(file);
         });
     }
 
     /**
-     * Saves a program to the remote API.
+     * Gets the loaded file of a program to serve it, which marks it as used in the program file cache.
+     * A file that was evicted while still referenced, e.g. by an editor, is cached again.
+     */
+    @Nullable
+    private ApiEditorVirtualFile getLoadedFile(String key) {
+        ApiEditorVirtualFile file = virtualFiles.get(key);
+        if (file != null) {
+            return file;
+        }
+        file = fileInstances.get(key);
+        if (file == null || !file.isLoaded()) {
+            return null;
+        }
+        virtualFiles.put(key, file);
+        return file;
+    }
+
+    /**
+     * Gets the program version whose content is already held by an open virtual file.
+     * It is sent along with program requests, so unchanged content is not downloaded again.
+     */
+    @Nullable
+    private RemoteProgram getLoadedProgram(ApiEndpoint endpoint, String programId) {
+        ApiEditorVirtualFile file = fileInstances.get(createFileKey(endpoint.getId(), programId));
+        return file != null && file.isLoaded() ? file.getProgram() : null;
+    }
+
+    /**
+     * Finds the file of a program by its IDs, e.g. to resolve a path from the editor history.
+     * Files are only served from the caches, no network call is made: a listed program gets its cached
+     * content, or an unloaded file whose content is loaded when it is first read. Without a listing,
+     * as after a restart, the last cached version of the program is restored. Changes that were not saved
+     * yet are restored from the save journal. The event dispatch thread doesn't read the content cache or
+     * the save journal from disk, there an unloaded file stands in for the program until it is read.
      *
-     * @param file The virtual file to save
-     * @throws IOException If an error occurs during the API call
+     * @param endpointId The ID of the API endpoint
+     * @param programId The ID of the program
+     * @return The file, or null if the endpoint or program is unknown
      */
-    public void saveProgram(ApiEditorVirtualFile file) throws IOException {
+    @Nullable
+    public ApiEditorVirtualFile findFile(String endpointId, String programId) {
+        String key = createFileKey(endpointId, programId);
+        ApiEditorVirtualFile file = getLoadedFile(key);
+        if (file == null) {
+            file = fileInstances.get(key);
+        }
+        if (file != null) {
+            return file;
+        }
+        ApiEndpoint endpoint = resolveEndpoint(endpointId);
+        if (endpoint == null) {
+            return null;
+        }
+
+        RemoteProgram listed = getCachedProgram(endpointId, programId);
+        if (ApplicationManager.getApplication().isDispatchThread()) {
+            // As while the editor history is restored at startup: whether the program is cached isn't known here
+            RemoteProgram program = listed != null ? listed : new RemoteProgram(programId, programId, null);
+            return fileInstances.computeIfAbsent(key, k -> ApiEditorVirtualFile.createUnloaded(endpoint, program));
+        }
+        ApiEditorVirtualFile restoredFile = restoreFile(endpoint, programId);
+        if (restoredFile != null) {
+            return restoredFile;
+        }
+        if (listed != null) {
+            return fileInstances.computeIfAbsent(key, k -> ApiEditorVirtualFile.createUnloaded(endpoint, listed));
+        }
+        return null;
+    }
+
+    /**
+     * Restores the file of a program from the content cache, in the listed version if there is a listing,
+     * or from the save journal if it has changes that were not saved yet. Both are read from disk,
+     * so this is not done on the event dispatch thread.
+     *
+     * @return The file, or null if the program's content is not at hand
+     */
+    @Nullable
+    private ApiEditorVirtualFile restoreFile(ApiEndpoint endpoint, String programId) {
+        ProgramContentCache contentCache = ProgramContentCache.getInstance();
+        RemoteProgram listed = getCachedProgram(endpoint.getId(), programId);
+        RemoteProgram cachedProgram = listed != null
+                ? contentCache.get(endpoint.getId(), listed)
+                : contentCache.getLatest(endpoint.getId(), programId);
+        if (cachedProgram != null) {
+            return cacheProgram(endpoint, cachedProgram);
+        }
+        RemoteProgram unsavedProgram = saveQueue.getUnsavedProgram(endpoint.getId(), programId);
+        return unsavedProgram != null ? cacheProgram(endpoint, unsavedProgram) : null;
+    }
+
+    /**
+     * Gets the content of an unloaded file without a network call. Off the event dispatch thread, the content
+     * is restored from the content cache or the save journal. On it, or if the content isn't there,
+     * it is restored or loaded in the background and the file reloaded once it arrived.
+     *
+     * @param file The unloaded file
+     * @return The program with its content, or null if the content isn't at hand yet
+     */
+    @Nullable
+    RemoteProgram restoreContent(ApiEditorVirtualFile file) {
+        if (!ApplicationManager.getApplication().isDispatchThread()) {
+            ApiEditorVirtualFile restoredFile = restoreFile(file.getEndpoint(), file.getProgram().getId());
+            if (restoredFile != null) {
+                return restoredFile.getProgram();
+            }
+        }
+        restoreAsync(file);
+        return null;
+    }
+
+    /**
+     * Restores the content of an unloaded file on a pooled thread, or loads it if it isn't cached,
+     * and reloads the file once it arrived. Reads of the file while that is under way don't start it again.
+     */
+    private void restoreAsync(ApiEditorVirtualFile file) {
         ApiEndpoint endpoint = file.getEndpoint();
         RemoteProgram program = file.getProgram();
+        String key = createFileKey(endpoint.getId(), program.getId());
+        if (!pendingRestores.add(key)) {
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> restoreFile(endpoint, program.getId()), AppExecutorUtil.getAppExecutorService())
+                .thenCompose(restoredFile -> restoredFile != null
+                        ? CompletableFuture.completedFuture(restoredFile)
+                        : loadProgramAsync(endpoint, program))
+                .whenComplete((loadedFile, error) -> {
+                    pendingRestores.remove(key);
+                    if (error != null) {
+                        // Reading the file again retries the load
+                        LOG.info("Failed to load program " + program.getFullName() + ": " + error.getMessage());
+                        return;
+                    }
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        // The loaded file is a different one if the endpoint was forgotten in the meantime
+                        if (loadedFile != file && !file.isLoaded()) {
+                            file.updateProgram(loadedFile.getProgram());
+                        }
+                        FileDocumentManager.getInstance().reloadFiles(file);
+                    });
+                });
+    }
 
-        ApiClient apiClient = new HttpApiClient(endpoint);
-        RemoteProgram savedProgram = apiClient.saveProgram(program);
+    /**
+     * Finds the root directory of an endpoint.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @return The directory, or null if the endpoint is unknown
+     */
+    @Nullable
+    public ApiEditorEndpointDirectory findEndpointDirectory(String endpointId) {
+        ApiEndpoint endpoint = resolveEndpoint(endpointId);
+        return endpoint != null ? getEndpointDirectory(endpoint) : null;
+    }
 
+    /**
+     * Gets the root directory of an endpoint.
+     *
+     * @param endpoint The API endpoint
+     * @return The directory
+     */
+    public ApiEditorEndpointDirectory getEndpointDirectory(ApiEndpoint endpoint) {
+        return endpointDirectories.computeIfAbsent(endpoint.getId(), id -> new ApiEditorEndpointDirectory(endpoint));
+    }
+
+    /**
+     * Gets the files of an endpoint's programs. Listed programs that have no file yet get an unloaded one,
+     * which isn't cached, so listing a huge catalog doesn't evict loaded files.
+     * Without a cached listing only the files already created are known.
+     *
+     * @param endpoint The API endpoint
+     * @return The program files
+     */
+    public List<ApiEditorVirtualFile> getProgramFiles(ApiEndpoint endpoint) {
+        ProgramListing listing = programCache.get(endpoint.getId());
+        List<ApiEditorVirtualFile> files = new ArrayList<>();
+        if (listing == null) {
+            String prefix = ApiEditorVirtualFileSystem.createPath(endpoint.getId()) + "/";
+            for (ApiEditorVirtualFile file : fileInstances.values()) {
+                if (file.getPath().startsWith(prefix)) {
+                    files.add(file);
+                }
+            }
+            return files;
+        }
+        for (RemoteProgram listed : listing.values()) {
+            files.add(fileInstances.computeIfAbsent(createFileKey(endpoint.getId(), listed.getId()),
+                    k -> ApiEditorVirtualFile.createUnloaded(endpoint, listed)));
+        }
+        return files;
+    }
+
+    /**
+     * Gets an endpoint by its ID, whether or not it was connected to in this session.
+     */
+    @Nullable
+    private ApiEndpoint resolveEndpoint(String endpointId) {
+        ApiEndpoint endpoint = activeEndpoints.get(endpointId);
+        return endpoint != null ? endpoint : ApiEndpointService.getInstance().findEndpointById(endpointId).orElse(null);
+    }
+
+    /**
+     * Updates or creates the virtual file for a fetched program, unless the file has unsaved edits or a pending save.
+     * Changes to the program that are still in the save journal are restored on top of it.
+     *
+     * @param endpoint The API endpoint
+     * @param fullProgram The program with its content
+     * @return The virtual file of the program
+     */
+    private ApiEditorVirtualFile cacheProgram(ApiEndpoint endpoint, RemoteProgram fullProgram) {
+        // Create a virtual file for the program, or load the one already shown for its path
+        String key = createFileKey(endpoint.getId(), fullProgram.getId());
+        ApiEditorVirtualFile file = fileInstances.computeIfAbsent(key, k -> new ApiEditorVirtualFile(endpoint, fullProgram));
+
+        // Update the file content if it changed; an unchanged program keeps its already decoded bytes.
+        // Local changes are kept: their save is based on the older version and merges with the newer one.
+        if (file.getProgram() != fullProgram && !isLocallyChanged(file)) {
+            file.updateProgram(fullProgram);
+        }
+        saveQueue.recover(file);
+        // Putting the file again updates its weight
+        virtualFiles.put(key, file);
+        return file;
+    }
+
+    private static void openInEditor(Project project, ApiEditorVirtualFile file) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            FileEditorManager.getInstance(project).openFile(file, true);
+        });
+    }
+
+    /**
+     * Schedules a written program file to be saved to the remote API.
+     * Saves run in the background; rapid writes are coalesced into a single request with the latest content.
+     *
+     * @param file The virtual file that was written
+     */
+    public void scheduleSave(ApiEditorVirtualFile file) {
+        saveQueue.schedule(file);
+    }
+
+    /**
+     * Saves a program to the remote API right away, without blocking the calling thread.
+     *
+     * @param file The virtual file to save
+     * @return A future completing when the program was saved, or exceptionally with an IOException
+     */
+    public CompletableFuture<Void> saveProgramAsync(ApiEditorVirtualFile file) {
+        return saveQueue.flush(file);
+    }
+
+    private void applySavedProgram(ApiEditorVirtualFile file, RemoteProgram snapshot, RemoteProgram savedProgram) {
         // Update the program in the cache
-        Map<String, RemoteProgram> programMap = programCache.get(endpoint.getId());
-        if (programMap != null) {
-            programMap.put(savedProgram.getId(), savedProgram);
+        ProgramListing listing = programCache.peek(file.getEndpoint().getId());
+        if (listing != null) {
+            listing.put(savedProgram);
         }
+        ProgramContentCache.getInstance().put(file.getEndpoint().getId(), savedProgram);
+
+        // Update the file with the saved program, unless it was written again in the meantime
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (file.updateSavedProgram(snapshot, savedProgram)) {
+                virtualFiles.reweigh(createFileKey(file.getEndpoint().getId(), savedProgram.getId()));
+            }
+        });
+    }
+
+    private boolean applyMerge(ApiEditorVirtualFile file, RemoteProgram conflicted, RemoteProgram serverVersion, byte[] mergedContent) {
+        cacheServerVersion(file, serverVersion);
+        if (FileDocumentManager.getInstance().isFileModified(file) || !file.applyMerge(conflicted, serverVersion, mergedContent)) {
+            return false;
+        }
+        virtualFiles.reweigh(createFileKey(file.getEndpoint().getId(), serverVersion.getId()));
+        FileDocumentManager.getInstance().reloadFiles(file);
+        return true;
+    }
+
+    private void applyServerVersion(ApiEditorVirtualFile file, RemoteProgram serverVersion) {
+        cacheServerVersion(file, serverVersion);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            file.updateProgram(serverVersion);
+            virtualFiles.reweigh(createFileKey(file.getEndpoint().getId(), serverVersion.getId()));
+            FileDocumentManager.getInstance().reloadFiles(file);
+        });
+    }
+
+    private void cacheServerVersion(ApiEditorVirtualFile file, RemoteProgram serverVersion) {
+        ProgramListing listing = programCache.peek(file.getEndpoint().getId());
+        if (listing != null) {
+            listing.put(serverVersion);
+        }
+        ProgramContentCache.getInstance().put(file.getEndpoint().getId(), serverVersion);
+    }
+
+    /**
+     * Restores the files of programs with changes left in the save journal, which queues those changes
+     * to be saved again.
+     */
+    private void recoverUnsavedChanges() {
+        saveQueue.getUnsavedProgramIds().forEach((endpointId, programIds) -> {
+            for (String programId : programIds) {
+                if (findFile(endpointId, programId) == null) {
+                    LOG.warn("Unsaved changes to program " + programId + " of unknown endpoint " + endpointId
+                            + " are kept in the save journal");
+                }
+            }
+        });
+    }
 
-        // Update the file with the saved program
-        file.updateProgram(savedProgram);
+    /**
+     * Drops the changes of an endpoint's programs that were not saved yet, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    public void discardUnsavedChanges(String endpointId) {
+        saveQueue.discardJournal(endpointId);
     }
 
     /**
@@ -136,8 +1043,20 @@ public final class ApiEditorFileSystem {
      */
     @Nullable
     public RemoteProgram getCachedProgram(String endpointId, String programId) {
-        Map<String, RemoteProgram> programMap = programCache.get(endpointId);
-        return programMap != null ? programMap.get(programId) : null;
+        ProgramListing listing = programCache.peek(endpointId);
+        return listing != null ? listing.get(programId) : null;
+    }
+
+    /**
+     * Gets the search index over the cached listing of an endpoint. It follows the listing as it changes.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @return The search index, or null if the endpoint's programs are not listed
+     */
+    @Nullable
+    public ProgramSearchIndex getSearchIndex(String endpointId) {
+        ProgramListing listing = programCache.get(endpointId);
+        return listing != null ? listing.getSearchIndex() : null;
     }
 
     /**
@@ -152,7 +1071,82 @@ public final class ApiEditorFileSystem {
     }
 
     /**
-     * Creates a unique key for a file based on endpoint and program IDs.
+     * Drops everything cached for an endpoint, e.g. after the endpoint was removed.
+     * Files still open in an editor stay usable, they are just no longer tracked.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    public void forgetEndpoint(String endpointId) {
+        ProgramChangeSubscription subscription = changeSubscriptions.remove(endpointId);
+        if (subscription != null) {
+            subscription.close();
+        }
+        reconciler.forgetEndpoint(endpointId);
+        activeEndpoints.remove(endpointId);
+        programCache.remove(endpointId);
+        syncTimes.remove(endpointId);
+        endpointDirectories.remove(endpointId);
+        String prefix = ApiEditorVirtualFileSystem.createPath(endpointId) + "/";
+        virtualFiles.removeIf(key -> key.startsWith(prefix));
+        fileInstances.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Pins a file shown in a newly opened editor, so it stays cached.
+     *
+     * @param file The file of the editor
+     */
+    public void editorOpened(ApiEditorVirtualFile file) {
+        file.setOpenInEditor(true);
+    }
+
+    /**
+     * Unpins a file once no editor shows it anymore, and evicts files no longer in use if the cache is over its bound.
+     *
+     * @param file The file of the closed editor
+     */
+    public void editorClosed(ApiEditorVirtualFile file) {
+        updateEditorPin(file);
+    }
+
+    /**
+     * Pins a file while an editor shows it or its document has edits that were not written yet.
+     * Evaluated only when editors close or saves complete, so eviction just tests the file's pins.
+     */
+    private void updateEditorPin(ApiEditorVirtualFile file) {
+        file.setOpenInEditor(FileDocumentManager.getInstance().isFileModified(file)
+                || isOpenInEditor(file, ProjectManager.getInstance().getOpenProjects()));
+        virtualFiles.trim();
+    }
+
+    /**
+     * Gets the statistics of the in-memory caches.
+     *
+     * @return The statistics of the listing and file caches
+     */
+    public List<CacheStats> getCacheStats() {
+        return List.of(programCache.getStats(), virtualFiles.getStats());
+    }
+
+    @Override
+    public void dispose() {
+        changeSubscriptions.values().forEach(ProgramChangeSubscription::close);
+        reconciler.stop();
+        // Give pending saves a chance to reach the server before the IDE exits
+        saveQueue.shutdown(SHUTDOWN_SAVE_TIMEOUT_MS);
+    }
+
+    private static boolean isOpenInEditor(ApiEditorVirtualFile file, Project[] projects) {
+        for (Project project : projects) {
+            if (!project.isDisposed() && FileEditorManager.getInstance(project).isFileOpen(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a unique key for a file based on endpoint and program IDs: the file's path.
      *
      * @param endpointId The ID of the API endpoint
      * @param programId The ID of the program
@@ -160,6 +1154,6 @@ public final class ApiEditorFileSystem {
      */
     @NotNull
     private String createFileKey(String endpointId, String programId) {
-        return endpointId + ":" + programId;
+        return ApiEditorVirtualFileSystem.createPath(endpointId, programId);
     }
 }
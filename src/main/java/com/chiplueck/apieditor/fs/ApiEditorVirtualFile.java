@@ -14,36 +14,223 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Virtual file implementation for remote programs.
+ * The file's content is the UTF-8 content array of its program, shared rather than copied.
+ * A file created from a listing entry is unloaded; when it is first read, its content is restored from the
+ * content cache or fetched, in the background on the event dispatch thread, and the file reloaded once it arrived.
  */
 public class ApiEditorVirtualFile extends VirtualFile {
-    private final ApiEndpoint endpoint;
+    private volatile ApiEndpoint endpoint;
     private RemoteProgram program;
+    // The version the server holds, kept as the base of patch uploads
+    private RemoteProgram serverVersion;
+    private static final byte[] NO_CONTENT = new byte[0];
+
+    // Null while the file is unloaded
     private byte[] content;
     private long modificationStamp = 0;
     private boolean isWritable = true;
+    // Pins that keep the file in the program file cache, maintained as editors open and close and saves come and go
+    private volatile boolean openInEditor;
+    private volatile boolean savePending;
 
     public ApiEditorVirtualFile(ApiEndpoint endpoint, RemoteProgram program) {
         this.endpoint = endpoint;
         updateProgram(program);
     }
 
-    public void updateProgram(RemoteProgram program) {
+    private ApiEditorVirtualFile(ApiEndpoint endpoint, String programId, String name, String extension, long lastModified) {
+        this.endpoint = endpoint;
+        this.program = new RemoteProgram(programId, name, extension);
+        this.program.setLastModified(lastModified);
+    }
+
+    /**
+     * Creates a file for a listed program without loading its content.
+     * The listing entry itself is not kept, so it is never modified through the file.
+     *
+     * @param endpoint The API endpoint
+     * @param listedProgram The program as listed, without content
+     * @return The unloaded file
+     */
+    static ApiEditorVirtualFile createUnloaded(ApiEndpoint endpoint, RemoteProgram listedProgram) {
+        return new ApiEditorVirtualFile(endpoint, listedProgram.getId(), listedProgram.getName(),
+                listedProgram.getExtension(), listedProgram.getLastModified());
+    }
+
+    /**
+     * Checks whether the file holds the content of its program.
+     *
+     * @return false if the content is only fetched when the file is first read
+     */
+    public synchronized boolean isLoaded() {
+        return content != null;
+    }
+
+    /**
+     * Gets the file's content, restoring it first if the file is unloaded.
+     * The server is never waited for here, the platform reads files on the event dispatch thread.
+     * An unloaded file whose content isn't at hand yet reads as empty until it is reloaded.
+     */
+    private byte[] loadedContent() {
+        synchronized (this) {
+            if (content != null) {
+                return content;
+            }
+        }
+        RemoteProgram restoredProgram = ApiEditorFileSystem.getInstance().restoreContent(this);
+        if (restoredProgram == null) {
+            return NO_CONTENT;
+        }
+        synchronized (this) {
+            // The restored file is a different one if the endpoint was forgotten in the meantime
+            if (content == null) {
+                updateProgram(restoredProgram);
+            }
+            return content;
+        }
+    }
+
+    public synchronized void updateProgram(RemoteProgram program) {
         this.program = program;
-        this.content = program.getContent() != null
-                ? program.getContent().getBytes(StandardCharsets.UTF_8)
-                : new byte[0];
+        this.content = program.getContentBytes() != null ? program.getContentBytes() : NO_CONTENT;
+        this.serverVersion = endpoint.isPatchUploads() ? copyOf(program) : null;
+        this.modificationStamp++;
+    }
+
+    /**
+     * Takes over a program returned by a save. If the file was written again after the saved
+     * content was sent, the newer content is kept and only the saved version is taken over.
+     *
+     * @param snapshot The program as it was sent
+     * @param savedProgram The program as returned by the server
+     * @return true if the saved program replaced the file's content
+     */
+    public synchronized boolean updateSavedProgram(RemoteProgram snapshot, RemoteProgram savedProgram) {
+        if (program.getContentBytes() != snapshot.getContentBytes()) {
+            program.setLastModified(savedProgram.getLastModified());
+            program.setEtag(savedProgram.getEtag());
+            if (endpoint.isPatchUploads()) {
+                serverVersion = copyOf(savedProgram);
+                if (serverVersion.getContentBytes() == null) {
+                    serverVersion.setContentBytes(snapshot.getContentBytes());
+                }
+            }
+            return false;
+        }
+        updateProgram(savedProgram);
+        return true;
+    }
+
+    /**
+     * Bases the file's content on a newer server version, so it is saved against that version,
+     * e.g. after the user chose to overwrite or merge changes made on the server.
+     *
+     * @param newServerVersion The program as the server holds it
+     */
+    public synchronized void rebase(RemoteProgram newServerVersion) {
+        program.setLastModified(newServerVersion.getLastModified());
+        program.setEtag(newServerVersion.getEtag());
+        if (endpoint.isPatchUploads()) {
+            serverVersion = copyOf(newServerVersion);
+        }
+    }
+
+    /**
+     * Replaces content that conflicted with a newer server version by the merged content, based on that version.
+     *
+     * @param conflicted The program as it was sent and rejected
+     * @param newServerVersion The program as the server holds it
+     * @param mergedContent The merged UTF-8 content
+     * @return false if the file was written again since the conflicting content was sent
+     */
+    public synchronized boolean applyMerge(RemoteProgram conflicted, RemoteProgram newServerVersion, byte[] mergedContent) {
+        if (content != conflicted.getContentBytes()) {
+            return false;
+        }
+        rebase(newServerVersion);
+        content = mergedContent;
+        program.setContentBytes(mergedContent);
+        modificationStamp++;
+        return true;
+    }
+
+    /**
+     * Restores content that was written but never saved, e.g. from the save journal after a restart.
+     * The server version is only kept as the base of patch uploads if it is the version the content was edited from.
+     *
+     * @param unsavedProgram The program with the unsaved content and the lastModified and ETag of its base version
+     */
+    public synchronized void restoreUnsaved(RemoteProgram unsavedProgram) {
+        if (serverVersion != null && (serverVersion.getLastModified() != unsavedProgram.getLastModified()
+                || serverVersion.getContentBytes() == unsavedProgram.getContentBytes())) {
+            serverVersion = null;
+        }
+        this.program = unsavedProgram;
+        this.content = unsavedProgram.getContentBytes();
         this.modificationStamp++;
     }
 
+    /**
+     * Creates a copy of the program holding the file's current content, to be sent to the server.
+     *
+     * @return The program snapshot
+     */
+    public synchronized RemoteProgram createSnapshot() {
+        return copyOf(program);
+    }
+
+    /**
+     * Gets the version of the program the server is known to hold, with its content.
+     *
+     * @return The server version, or null if it is not kept because the endpoint doesn't use patch uploads
+     */
+    @Nullable
+    public synchronized RemoteProgram getServerVersion() {
+        return serverVersion;
+    }
+
+    private static RemoteProgram copyOf(RemoteProgram program) {
+        RemoteProgram copy = new RemoteProgram(program.getId(), program.getName(), program.getExtension());
+        copy.setContentBytes(program.getContentBytes());
+        copy.setLastModified(program.getLastModified());
+        copy.setEtag(program.getEtag());
+        return copy;
+    }
+
+    private synchronized void updateContent(byte[] bytes, long newModificationStamp) {
+        content = bytes;
+        program.setContentBytes(bytes);
+        modificationStamp = newModificationStamp;
+    }
+
+    /**
+     * Checks whether the file must stay in the program file cache: an editor shows it, it has unsaved edits,
+     * or its save to the remote API is still pending.
+     */
+    boolean isPinned() {
+        return openInEditor || savePending;
+    }
+
+    void setOpenInEditor(boolean openInEditor) {
+        this.openInEditor = openInEditor;
+    }
+
+    void setSavePending(boolean savePending) {
+        this.savePending = savePending;
+    }
+
     public ApiEndpoint getEndpoint() {
         return endpoint;
     }
 
-    public RemoteProgram getProgram() {
+    void setEndpoint(ApiEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public synchronized RemoteProgram getProgram() {
         return program;
     }
 
@@ -56,20 +243,19 @@ public class ApiEditorVirtualFile extends VirtualFile {
     @NotNull
     @Override
     public VirtualFileSystem getFileSystem() {
-        // We're not implementing a full VirtualFileSystem, so we return null
-        // This is a simplification for the example
         return ApiEditorVirtualFileSystem.getInstance();
     }
 
     @NotNull
     @Override
     public String getPath() {
-        return "/api/" + endpoint.getName() + "/" + program.getFullName();
+        return ApiEditorVirtualFileSystem.createPath(endpoint.getId(), program.getId());
     }
 
     @Override
     public boolean isWritable() {
-        return isWritable;
+        // Edits to the empty stand-in for content that is still being restored would overwrite the program
+        return isWritable && isLoaded();
     }
 
     @Override
@@ -84,7 +270,7 @@ public class ApiEditorVirtualFile extends VirtualFile {
 
     @Override
     public VirtualFile getParent() {
-        return null;
+        return ApiEditorFileSystem.getInstance().getEndpointDirectory(endpoint);
     }
 
     @Override
@@ -99,13 +285,10 @@ public class ApiEditorVirtualFile extends VirtualFile {
             @Override
             public void close() throws IOException {
                 super.close();
-                byte[] bytes = toByteArray();
-                content = bytes;
-                program.setContent(new String(bytes, StandardCharsets.UTF_8));
-                modificationStamp = newModificationStamp;
+                updateContent(toByteArray(), newModificationStamp);
 
-                // Save the program to the remote API
-                ApiEditorFileSystem.getInstance().saveProgram(ApiEditorVirtualFile.this);
+                // Queue the save, the remote API is updated in the background once writes settle
+                ApiEditorFileSystem.getInstance().scheduleSave(ApiEditorVirtualFile.this);
             }
         };
     }
@@ -113,7 +296,7 @@ public class ApiEditorVirtualFile extends VirtualFile {
     @NotNull
     @Override
     public byte[] contentsToByteArray() throws IOException {
-        return content;
+        return loadedContent();
     }
 
     @Override
@@ -122,18 +305,19 @@ public class ApiEditorVirtualFile extends VirtualFile {
     }
 
     @Override
-    public long getLength() {
-        return content.length;
+    public synchronized long getLength() {
+        return content != null ? content.length : 0;
     }
 
     @Override
     public void refresh(boolean asynchronous, boolean recursive, @Nullable Runnable postRunnable) {
-        // No-op for this implementation
+        // Always asynchronous, the server is not waited for on the calling thread
+        ApiEditorFileSystem.getInstance().refreshFile(this, postRunnable);
     }
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return new ByteArrayInputStream(content);
+        return new ByteArrayInputStream(loadedContent());
     }
 
     @Override
@@ -1,25 +1,52 @@
 package com.chiplueck.apieditor.fs;
 
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.components.Service;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileListener;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.VirtualFileSystem;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Virtual file system implementation for API Editor.
+ * Each endpoint is a root directory containing its programs: "/{endpointId}/{programId}",
+ * with both IDs URL-encoded. Paths use IDs rather than names, so they stay valid across renames
+ * and can be resolved after a restart, e.g. for the editor history.
  */
-@Service
 public final class ApiEditorVirtualFileSystem extends VirtualFileSystem {
-    private static final String PROTOCOL = "apieditor";
+    public static final String PROTOCOL = "apieditor";
 
     public static ApiEditorVirtualFileSystem getInstance() {
-        return ApplicationManager.getApplication().getService(ApiEditorVirtualFileSystem.class);
+        return (ApiEditorVirtualFileSystem) VirtualFileManager.getInstance().getFileSystem(PROTOCOL);
+    }
+
+    /**
+     * Creates the path of an endpoint's root directory.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @return The path
+     */
+    @NotNull
+    public static String createPath(String endpointId) {
+        return "/" + URLEncoder.encode(endpointId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates the path of a program file.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param programId The ID of the program
+     * @return The path
+     */
+    @NotNull
+    public static String createPath(String endpointId, String programId) {
+        return createPath(endpointId) + "/" + URLEncoder.encode(programId, StandardCharsets.UTF_8);
     }
 
     @Override
@@ -29,19 +56,39 @@ public final class ApiEditorVirtualFileSystem extends VirtualFileSystem {
 
     @Override
     public @Nullable VirtualFile findFileByPath(@NotNull @NonNls String path) {
-        // This is a simplified implementation
-        // In a real implementation, we would parse the path and find the corresponding file
-        return null;
+        String relativePath = path.startsWith("/") ? path.substring(1) : path;
+        if (relativePath.isEmpty()) {
+            return null;
+        }
+        int separator = relativePath.indexOf('/');
+        try {
+            if (separator < 0) {
+                return ApiEditorFileSystem.getInstance().findEndpointDirectory(decode(relativePath));
+            }
+            String programId = relativePath.substring(separator + 1);
+            if (programId.isEmpty() || programId.indexOf('/') >= 0) {
+                return null;
+            }
+            return ApiEditorFileSystem.getInstance().findFile(decode(relativePath.substring(0, separator)), decode(programId));
+        } catch (IllegalArgumentException e) {
+            // Malformed escape sequence, not a path of ours
+            return null;
+        }
+    }
+
+    private static String decode(String pathElement) {
+        return URLDecoder.decode(pathElement, StandardCharsets.UTF_8);
     }
 
     @Override
     public void refresh(boolean asynchronous) {
-        // No-op for this implementation
+        // Always asynchronous, the server is not waited for on the calling thread
+        ApiEditorFileSystem.getInstance().refreshOpenFiles(null, null);
     }
 
     @Override
     public @Nullable VirtualFile refreshAndFindFileByPath(@NotNull String path) {
-        // This is a simplified implementation
+        // Files are served from the caches, there is nothing to refresh from
         return findFileByPath(path);
     }
 
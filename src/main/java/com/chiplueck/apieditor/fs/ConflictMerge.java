@@ -0,0 +1,67 @@
+package com.chiplueck.apieditor.fs;
+
+import com.intellij.diff.DiffManager;
+import com.intellij.diff.DiffRequestFactory;
+import com.intellij.diff.InvalidDiffRequestException;
+import com.intellij.diff.merge.MergeRequest;
+import com.intellij.diff.merge.MergeResult;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Opens the IDE's merge tool for changes to a program that conflict with the server version.
+ */
+final class ConflictMerge {
+    private static final Logger LOG = Logger.getInstance(ConflictMerge.class);
+
+    private ConflictMerge() {
+    }
+
+    /**
+     * Shows the merge tool on the EDT. The result is written to the file's document and saved like any other edit.
+     *
+     * @param file The file with the local changes
+     * @param local The UTF-8 content with the local changes
+     * @param base The UTF-8 content of the version both sides are based on
+     * @param server The UTF-8 content of the server version
+     * @param onMerged Called once the user applied a merge result, before the document is saved
+     * @return false if the merge tool could not be opened
+     */
+    static boolean show(ApiEditorVirtualFile file, byte[] local, byte[] base, byte[] server, Runnable onMerged) {
+        Project project = findProject(file);
+        MergeRequest request;
+        try {
+            request = DiffRequestFactory.getInstance().createMergeRequest(project, file, List.of(local, base, server),
+                    "Merge Changes to " + file.getName(), List.of("Your Changes", "Base Version", "Server Version"),
+                    result -> {
+                        if (result != MergeResult.CANCEL) {
+                            onMerged.run();
+                        }
+                    });
+        } catch (InvalidDiffRequestException e) {
+            LOG.warn("Failed to open the merge tool for " + file.getName(), e);
+            return false;
+        }
+        DiffManager.getInstance().showMerge(project, request);
+        return true;
+    }
+
+    /**
+     * Gets the project showing the file, or any open project.
+     */
+    @Nullable
+    private static Project findProject(ApiEditorVirtualFile file) {
+        Project[] projects = ProjectManager.getInstance().getOpenProjects();
+        for (Project project : projects) {
+            if (!project.isDisposed() && FileEditorManager.getInstance(project).isFileOpen(file)) {
+                return project;
+            }
+        }
+        return projects.length > 0 ? projects[0] : null;
+    }
+}
@@ -0,0 +1,57 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cached program listing of an endpoint, with a search index over it that follows every change.
+ * Lookups don't lock; changes are serialized, so the map and the index agree.
+ */
+final class ProgramListing {
+    private final Map<String, RemoteProgram> programs = new ConcurrentHashMap<>();
+    private final ProgramSearchIndex searchIndex = new ProgramSearchIndex();
+
+    ProgramListing(Collection<RemoteProgram> listed) {
+        putAll(listed);
+    }
+
+    RemoteProgram get(String programId) {
+        return programs.get(programId);
+    }
+
+    synchronized void put(RemoteProgram program) {
+        programs.put(program.getId(), program);
+        searchIndex.put(program);
+    }
+
+    synchronized void putAll(Collection<RemoteProgram> listed) {
+        for (RemoteProgram program : listed) {
+            put(program);
+        }
+    }
+
+    /**
+     * Removes a program from the listing.
+     *
+     * @return true if it was listed
+     */
+    synchronized boolean remove(String programId) {
+        searchIndex.remove(programId);
+        return programs.remove(programId) != null;
+    }
+
+    int size() {
+        return programs.size();
+    }
+
+    Collection<RemoteProgram> values() {
+        return programs.values();
+    }
+
+    ProgramSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+}
@@ -0,0 +1,186 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.chiplueck.apieditor.services.ProgramOpenHistory;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the content of programs the user is likely to open while the program list is shown,
+ * so opening them doesn't wait for the server: the most frequently and recently opened programs,
+ * and the entry highlighted in the list once the selection rests on it.
+ * Only a couple of loads run at a time, so prefetching never competes much with the user's own requests.
+ * An open of a program that is still being prefetched joins the prefetch.
+ */
+public class ProgramPrefetcher {
+    private static final Logger LOG = Logger.getInstance(ProgramPrefetcher.class);
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final int MAX_LIKELY_PROGRAMS = 8;
+    // Scrolling through the list shouldn't fetch every entry passed on the way
+    private static final long HIGHLIGHT_DELAY_MS = 300;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "API Editor prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final ApiEditorFileSystem fileSystem;
+    private final ApiEndpoint endpoint;
+
+    // Guarded by this
+    private final Deque<RemoteProgram> queue = new ArrayDeque<>();
+    private final Set<String> requestedIds = new HashSet<>();
+    private int inFlight;
+    private ScheduledFuture<?> highlightTimer;
+    private boolean cancelled;
+
+    /**
+     * Creates a prefetcher for the program list of an endpoint.
+     *
+     * @param endpoint The API endpoint
+     */
+    public ProgramPrefetcher(ApiEndpoint endpoint) {
+        this(ApiEditorFileSystem.getInstance(), endpoint);
+    }
+
+    ProgramPrefetcher(ApiEditorFileSystem fileSystem, ApiEndpoint endpoint) {
+        this.fileSystem = fileSystem;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Starts loading the listed programs that were opened most often and most recently, in the background,
+     * as reading them from the content cache touches the disk.
+     * They are fetched together, with a single batch request where the server supports it.
+     *
+     * @param programs The listed programs
+     */
+    public void prefetchLikely(List<RemoteProgram> programs) {
+        SCHEDULER.execute(() -> startLikely(programs));
+    }
+
+    private void startLikely(List<RemoteProgram> programs) {
+        List<String> likelyIds = ProgramOpenHistory.getInstance().getLikelyPrograms(endpoint.getId(), MAX_LIKELY_PROGRAMS);
+        if (likelyIds.isEmpty()) {
+            return;
+        }
+        Map<String, RemoteProgram> programsById = new HashMap<>();
+        for (RemoteProgram program : programs) {
+            programsById.put(program.getId(), program);
+        }
+        List<RemoteProgram> likelyPrograms = new ArrayList<>();
+        synchronized (this) {
+            if (cancelled || inFlight >= MAX_IN_FLIGHT) {
+                return;
+            }
+            for (String programId : likelyIds) {
+                RemoteProgram program = programsById.get(programId);
+                if (program != null && requestedIds.add(programId)) {
+                    likelyPrograms.add(program);
+                }
+            }
+            if (likelyPrograms.isEmpty()) {
+                return;
+            }
+            inFlight++;
+        }
+        fileSystem.loadProgramsAsync(endpoint, likelyPrograms).whenComplete((files, error) -> {
+            if (error != null && LOG.isDebugEnabled()) {
+                LOG.debug("Failed to prefetch programs of endpoint " + endpoint.getName(), error);
+            }
+            finished();
+        });
+    }
+
+    /**
+     * Loads the highlighted program ahead of all others, once the highlight has rested on it for a moment.
+     *
+     * @param program The highlighted program, or null if nothing is highlighted
+     */
+    public synchronized void prefetchHighlighted(@Nullable RemoteProgram program) {
+        if (cancelled) {
+            return;
+        }
+        if (highlightTimer != null) {
+            highlightTimer.cancel(false);
+            highlightTimer = null;
+        }
+        if (program != null) {
+            highlightTimer = SCHEDULER.schedule(() -> {
+                synchronized (this) {
+                    enqueue(program);
+                }
+                startNext();
+            }, HIGHLIGHT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops prefetching, e.g. when the program list is closed. Loads already in flight are not aborted;
+     * they complete in the background and their content stays cached.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        queue.clear();
+        if (highlightTimer != null) {
+            highlightTimer.cancel(false);
+            highlightTimer = null;
+        }
+    }
+
+    // Called while holding this; the latest highlighted program goes ahead of the ones highlighted before
+    private void enqueue(RemoteProgram program) {
+        if (cancelled || !requestedIds.add(program.getId())) {
+            return;
+        }
+        queue.addFirst(program);
+    }
+
+    private void startNext() {
+        while (true) {
+            RemoteProgram program;
+            synchronized (this) {
+                if (cancelled || inFlight >= MAX_IN_FLIGHT || queue.isEmpty()) {
+                    return;
+                }
+                program = queue.pollFirst();
+                if (fileSystem.isProgramLoaded(endpoint, program.getId())) {
+                    continue;
+                }
+                inFlight++;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Prefetching program " + program.getFullName());
+            }
+            fileSystem.loadProgramAsync(endpoint, program).whenComplete((file, error) -> {
+                if (error != null && LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to prefetch program " + program.getFullName(), error);
+                }
+                finished();
+            });
+        }
+    }
+
+    private void finished() {
+        synchronized (this) {
+            inFlight--;
+        }
+        startNext();
+    }
+}
@@ -0,0 +1,390 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.chiplueck.apieditor.services.HttpTransportService;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the programs open in editors against the server in the background, so changes saved elsewhere
+ * show up without reconnecting. Checks are cheap: a conditional request that the server answers with
+ * "304 Not Modified" while the program is unchanged, or on endpoints with incremental sync a single delta
+ * listing for all open programs of the endpoint, after which only the programs with a newer lastModified are fetched.
+ * <p>
+ * Each file is checked at its own interval, which shrinks while its program keeps changing on the server
+ * and grows while it doesn't. The intervals of an endpoint stretch while its checks are slow and while it
+ * pushes its changes itself. Only a couple of checks per endpoint run at a time, none while the endpoint
+ * is unreachable, and none while no IDE window has the focus; overdue files are checked once it's back.
+ */
+public class ProgramReconciler {
+    private static final Logger LOG = Logger.getInstance(ProgramReconciler.class);
+    private static final long TICK_MS = 5000;
+    private static final long INITIAL_INTERVAL_MS = 30000;
+    private static final long MIN_INTERVAL_MS = 15000;
+    private static final long MAX_INTERVAL_MS = 300000;
+    // Endpoints with change notifications are only checked for changes that may have been missed
+    private static final int SUBSCRIBED_INTERVAL_FACTOR = 4;
+    // Checks slower than this on average stretch the intervals of the endpoint's files
+    private static final long UNLOADED_CHECK_MS = 250;
+    private static final int MAX_LOAD_FACTOR = 8;
+    private static final int MAX_IN_FLIGHT_PER_ENDPOINT = 2;
+    // The most files of an endpoint waiting to be checked, so a burst of overdue files is spread over several ticks
+    private static final int MAX_QUEUED_PER_ENDPOINT = 20;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "API Editor reconciliation");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final ApiEditorFileSystem fileSystem;
+
+    // Guarded by this
+    private final Map<String, FileSchedule> schedules = new HashMap<>();
+    private final Map<String, EndpointState> endpointStates = new HashMap<>();
+    private ScheduledFuture<?> timer;
+
+    ProgramReconciler(ApiEditorFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    synchronized void start() {
+        if (timer == null) {
+            timer = SCHEDULER.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void stop() {
+        List<RefreshRequest> completed = new ArrayList<>();
+        synchronized (this) {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            schedules.values().forEach(schedule -> completeRequests(schedule, completed));
+            schedules.clear();
+            endpointStates.clear();
+        }
+        runCompleted(completed);
+    }
+
+    /**
+     * Checks files right away, whether or not an IDE window has the focus.
+     *
+     * @param files The files to check; files whose content isn't loaded are skipped
+     * @param postRunnable Run on the event dispatch thread once all files were checked, or null
+     */
+    void refresh(Collection<ApiEditorVirtualFile> files, @Nullable Runnable postRunnable) {
+        RefreshRequest request = postRunnable != null ? new RefreshRequest(postRunnable) : null;
+        long now = System.nanoTime();
+        boolean nothingToCheck;
+        synchronized (this) {
+            for (ApiEditorVirtualFile file : files) {
+                if (timer == null || !file.isLoaded()) {
+                    continue;
+                }
+                FileSchedule schedule = schedules.computeIfAbsent(file.getPath(), path -> new FileSchedule(file, now));
+                schedule.forced = true;
+                if (request != null) {
+                    schedule.requests.add(request);
+                    request.remaining++;
+                }
+            }
+            nothingToCheck = request != null && request.remaining == 0;
+        }
+        if (nothingToCheck) {
+            runCompleted(List.of(request));
+            return;
+        }
+        SCHEDULER.execute(this::tick);
+    }
+
+    /**
+     * Stops checking the files of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    void forgetEndpoint(String endpointId) {
+        List<RefreshRequest> completed = new ArrayList<>();
+        synchronized (this) {
+            schedules.values().removeIf(schedule -> {
+                if (!schedule.file.getEndpoint().getId().equals(endpointId)) {
+                    return false;
+                }
+                completeRequests(schedule, completed);
+                return true;
+            });
+            endpointStates.remove(endpointId);
+        }
+        runCompleted(completed);
+    }
+
+    private void tick() {
+        try {
+            queueDueFiles();
+        } catch (RuntimeException e) {
+            // Keeps the periodic task alive
+            LOG.warn("Failed to check the open programs against the server", e);
+        }
+    }
+
+    private void queueDueFiles() {
+        boolean focused = ApplicationManager.getApplication().isActive();
+        List<ApiEditorVirtualFile> openFiles = focused ? fileSystem.getOpenFiles() : List.of();
+        long now = System.nanoTime();
+        Map<String, ApiEndpoint> dueEndpoints = new HashMap<>();
+        synchronized (this) {
+            if (timer == null) {
+                return;
+            }
+            if (focused) {
+                Set<String> openPaths = new HashSet<>();
+                for (ApiEditorVirtualFile file : openFiles) {
+                    openPaths.add(file.getPath());
+                    schedules.computeIfAbsent(file.getPath(), path -> new FileSchedule(file, now));
+                }
+                // Closed files are forgotten, unless a refresh asked for them
+                schedules.values().removeIf(schedule -> !schedule.forced && !schedule.queued && !schedule.checking
+                        && !openPaths.contains(schedule.file.getPath()));
+            }
+
+            List<FileSchedule> due = new ArrayList<>();
+            for (FileSchedule schedule : schedules.values()) {
+                if (!schedule.queued && !schedule.checking
+                        && (schedule.forced || focused && now - schedule.nextCheckNanos >= 0)) {
+                    due.add(schedule);
+                }
+            }
+            // The most overdue files first, so none is starved while an endpoint's queue is full
+            due.sort(Comparator.comparingLong(schedule -> schedule.nextCheckNanos - now));
+            for (FileSchedule schedule : due) {
+                ApiEndpoint endpoint = schedule.file.getEndpoint();
+                EndpointState state = endpointStates.computeIfAbsent(endpoint.getId(), id -> new EndpointState());
+                if (state.queue.size() >= MAX_QUEUED_PER_ENDPOINT && !schedule.forced) {
+                    continue;
+                }
+                state.queue.add(schedule);
+                schedule.queued = true;
+                dueEndpoints.put(endpoint.getId(), endpoint);
+            }
+        }
+        for (ApiEndpoint endpoint : dueEndpoints.values()) {
+            startChecks(endpoint);
+        }
+    }
+
+    /**
+     * Starts checking the queued files of an endpoint, as far as its limit of checks in flight allows.
+     * With a delta listing, one check covers all queued files.
+     */
+    private void startChecks(ApiEndpoint endpoint) {
+        boolean unreachable = fileSystem.isOffline(endpoint.getId())
+                || HttpTransportService.getInstance().getTransport(endpoint).getCircuitBreaker().isOpen();
+        boolean deltaListing = fileSystem.hasDeltaListing(endpoint);
+        List<List<FileSchedule>> checks = new ArrayList<>();
+        List<RefreshRequest> completed = new ArrayList<>();
+        synchronized (this) {
+            EndpointState state = endpointStates.get(endpoint.getId());
+            if (state == null) {
+                return;
+            }
+            if (unreachable) {
+                // The files stay due and are checked once the endpoint answers again; refreshes get no better answer by waiting
+                for (FileSchedule schedule : state.queue) {
+                    schedule.queued = false;
+                    completeRequests(schedule, completed);
+                }
+                state.queue.clear();
+            }
+            while (state.inFlight < MAX_IN_FLIGHT_PER_ENDPOINT && !state.queue.isEmpty()) {
+                List<FileSchedule> check = new ArrayList<>();
+                do {
+                    FileSchedule schedule = state.queue.poll();
+                    schedule.queued = false;
+                    schedule.checking = true;
+                    check.add(schedule);
+                } while (deltaListing && !state.queue.isEmpty());
+                state.inFlight++;
+                checks.add(check);
+            }
+        }
+        runCompleted(completed);
+
+        for (List<FileSchedule> check : checks) {
+            if (deltaListing) {
+                checkListing(endpoint, check);
+            } else {
+                checkFile(endpoint, check.get(0));
+            }
+        }
+    }
+
+    /**
+     * Checks a single file with a conditional request for its program.
+     */
+    private void checkFile(ApiEndpoint endpoint, FileSchedule schedule) {
+        long start = System.nanoTime();
+        ApiEditorVirtualFile file = schedule.file;
+        // A file with local changes is brought up to date by its save
+        CompletableFuture<Boolean> check = fileSystem.isLocallyChanged(file)
+                ? CompletableFuture.completedFuture(false)
+                : fileSystem.revalidateAsync(file, file.getProgram());
+        check.whenComplete((changed, error) -> checked(endpoint, List.of(schedule),
+                Boolean.TRUE.equals(changed) ? Set.of(schedule) : Set.of(), error, System.nanoTime() - start));
+    }
+
+    /**
+     * Checks several files of an endpoint with a delta listing, then fetches the programs listed with a newer version.
+     */
+    private void checkListing(ApiEndpoint endpoint, List<FileSchedule> check) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            long start = System.nanoTime();
+            try {
+                fileSystem.refreshEndpoint(endpoint);
+            } catch (IOException | RuntimeException e) {
+                checked(endpoint, check, Set.of(), e, System.nanoTime() - start);
+                return;
+            }
+            long listingNanos = System.nanoTime() - start;
+
+            Set<FileSchedule> changed = ConcurrentHashMap.newKeySet();
+            List<CompletableFuture<?>> fetches = new ArrayList<>();
+            for (FileSchedule schedule : check) {
+                RemoteProgram shown = schedule.file.getProgram();
+                RemoteProgram listed = fileSystem.getCachedProgram(endpoint.getId(), shown.getId());
+                if (listed != null && listed.getLastModified() > shown.getLastModified()
+                        && !fileSystem.isLocallyChanged(schedule.file)) {
+                    fetches.add(fileSystem.revalidateAsync(schedule.file, shown).thenAccept(newer -> {
+                        if (newer) {
+                            changed.add(schedule);
+                        }
+                    }));
+                }
+            }
+            CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0]))
+                    .whenComplete((ignored, error) -> checked(endpoint, check, changed, error, listingNanos));
+        });
+    }
+
+    /**
+     * Schedules the next checks of files after a check, and starts the endpoint's next queued check.
+     *
+     * @param endpoint The API endpoint
+     * @param checked The checked files
+     * @param changed The checked files for which a newer version was found
+     * @param error The error of the check, or null
+     * @param durationNanos The time the check's request took
+     */
+    private void checked(ApiEndpoint endpoint, List<FileSchedule> checked, Set<FileSchedule> changed,
+                         @Nullable Throwable error, long durationNanos) {
+        if (error != null && LOG.isDebugEnabled()) {
+            LOG.debug("Failed to check programs of endpoint " + endpoint.getName() + " for changes", error);
+        }
+        int intervalFactor = fileSystem.hasChangeSubscription(endpoint.getId()) ? SUBSCRIBED_INTERVAL_FACTOR : 1;
+        long now = System.nanoTime();
+        List<RefreshRequest> completed = new ArrayList<>();
+        synchronized (this) {
+            EndpointState state = endpointStates.get(endpoint.getId());
+            if (state != null) {
+                state.inFlight--;
+                state.recordCheck(durationNanos);
+                intervalFactor *= state.getLoadFactor();
+            }
+            for (FileSchedule schedule : checked) {
+                schedule.checking = false;
+                if (error == null) {
+                    // Programs edited often on the server are checked more often
+                    schedule.intervalMs = changed.contains(schedule)
+                            ? Math.max(MIN_INTERVAL_MS, schedule.intervalMs / 2)
+                            : Math.min(MAX_INTERVAL_MS, schedule.intervalMs * 3 / 2);
+                }
+                long delayMs = Math.min(MAX_INTERVAL_MS * SUBSCRIBED_INTERVAL_FACTOR,
+                        schedule.intervalMs * intervalFactor * (error != null ? 2 : 1));
+                schedule.nextCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(delayMs);
+                completeRequests(schedule, completed);
+            }
+        }
+        runCompleted(completed);
+        startChecks(endpoint);
+    }
+
+    // Called while holding this
+    private static void completeRequests(FileSchedule schedule, List<RefreshRequest> completed) {
+        schedule.forced = false;
+        for (RefreshRequest request : schedule.requests) {
+            if (--request.remaining == 0) {
+                completed.add(request);
+            }
+        }
+        schedule.requests.clear();
+    }
+
+    private static void runCompleted(List<RefreshRequest> completed) {
+        for (RefreshRequest request : completed) {
+            ApplicationManager.getApplication().invokeLater(request.postRunnable);
+        }
+    }
+
+    private static class FileSchedule {
+        final ApiEditorVirtualFile file;
+        final List<RefreshRequest> requests = new ArrayList<>();
+        long intervalMs = INITIAL_INTERVAL_MS;
+        long nextCheckNanos;
+        // Asked for by a refresh, so checked right away
+        boolean forced;
+        boolean queued;
+        boolean checking;
+
+        FileSchedule(ApiEditorVirtualFile file, long now) {
+            this.file = file;
+            this.nextCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        }
+    }
+
+    private static class EndpointState {
+        final Deque<FileSchedule> queue = new ArrayDeque<>();
+        int inFlight;
+        // Moving average of the check durations, 0 before the first check
+        double averageCheckMs;
+
+        void recordCheck(long durationNanos) {
+            double durationMs = durationNanos / 1e6;
+            averageCheckMs = averageCheckMs == 0 ? durationMs : averageCheckMs * 0.8 + durationMs * 0.2;
+        }
+
+        int getLoadFactor() {
+            return (int) Math.max(1, Math.min(MAX_LOAD_FACTOR, averageCheckMs / UNLOADED_CHECK_MS));
+        }
+    }
+
+    private static class RefreshRequest {
+        final Runnable postRunnable;
+        // Guarded by the reconciler
+        int remaining;
+
+        RefreshRequest(Runnable postRunnable) {
+            this.postRunnable = postRunnable;
+        }
+    }
+}
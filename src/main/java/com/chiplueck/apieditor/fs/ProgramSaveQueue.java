@@ -0,0 +1,878 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.api.ApiResponseException;
+import com.chiplueck.apieditor.api.AsyncApiClient;
+import com.chiplueck.apieditor.api.EndpointUnavailableException;
+import com.chiplueck.apieditor.api.HttpApiClient;
+import com.chiplueck.apieditor.api.ProgramConflictException;
+import com.chiplueck.apieditor.cache.ProgramContentCache;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationAction;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Background save pipeline for program files.
+ * Writes to a file are debounced, so a burst of document flushes turns into a single PUT
+ * carrying the latest content. At most one save per file and a few saves per endpoint are in flight;
+ * writes arriving during a save are sent once it completes.
+ * <p>
+ * Every save is recorded in the {@link SaveJournal} before it is sent, so it survives a crash or restart.
+ * When an endpoint can't be reached, the endpoint goes offline: its saves stay journaled and queued,
+ * and the oldest one is retried with growing delays until the endpoint answers again. Saves that were held back
+ * are then sent in the order they were made, each after checking that the program was not changed on the server
+ * since the version the edit is based on.
+ * <p>
+ * Saves are conditional on the version the edit is based on. If the server holds a different version,
+ * the changes are merged with it where they don't overlap; otherwise the user is asked to merge them,
+ * overwrite the server version or discard them.
+ */
+class ProgramSaveQueue {
+    private static final Logger LOG = Logger.getInstance(ProgramSaveQueue.class);
+    private static final long DEBOUNCE_MS = 750;
+    private static final int MAX_IN_FLIGHT_PER_ENDPOINT = 2;
+    private static final long MIN_PROBE_DELAY_MS = 5_000;
+    private static final long MAX_PROBE_DELAY_MS = 60_000;
+    static final String NOTIFICATION_GROUP = "API Editor";
+
+    private final SaveListener listener;
+    private final SaveJournal journal;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "API Editor save queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private final Map<ApiEditorVirtualFile, PendingSave> pendingSaves = new HashMap<>();
+    private final Map<String, EndpointSlots> endpointSlots = new HashMap<>();
+
+    /**
+     * Creates a save queue.
+     *
+     * @param listener Notified when a save succeeded or was discarded
+     */
+    ProgramSaveQueue(SaveListener listener) {
+        this(listener, new SaveJournal());
+    }
+
+    ProgramSaveQueue(SaveListener listener, SaveJournal journal) {
+        this.listener = listener;
+        this.journal = journal;
+    }
+
+    /**
+     * Schedules the current content of a file to be saved once writes to it have settled.
+     *
+     * @param file The file that was written
+     */
+    void schedule(ApiEditorVirtualFile file) {
+        synchronized (this) {
+            PendingSave save = pendingSaves.computeIfAbsent(file, PendingSave::new);
+            file.setSavePending(true);
+            save.generation++;
+            if (save.timer != null) {
+                save.timer.cancel(false);
+            }
+            save.timer = scheduler.schedule(() -> startDue(save), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Saves the current content of a file right away, skipping the debounce delay.
+     *
+     * @param file The file to save
+     * @return A future completing once the content is saved, or exceptionally with an IOException
+     */
+    CompletableFuture<Void> flush(ApiEditorVirtualFile file) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            PendingSave save = pendingSaves.computeIfAbsent(file, PendingSave::new);
+            file.setSavePending(true);
+            if (save.generation == save.savedGeneration) {
+                // Nothing pending, save the current content anyway
+                save.generation++;
+            }
+            save.waiters.add(new Waiter(save.generation, future));
+            if (save.timer != null) {
+                save.timer.cancel(false);
+            }
+            scheduler.execute(() -> startDue(save));
+        }
+        return future;
+    }
+
+    /**
+     * Checks whether a file has writes that are not saved to the remote API yet.
+     *
+     * @param file The file to check
+     * @return true if a save is pending or in flight
+     */
+    synchronized boolean isPending(ApiEditorVirtualFile file) {
+        return pendingSaves.containsKey(file);
+    }
+
+    /**
+     * Checks whether an endpoint is offline, so its saves are held back until it can be reached again.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @return true if the last save to the endpoint failed because it was unreachable
+     */
+    synchronized boolean isOffline(String endpointId) {
+        EndpointSlots slots = endpointSlots.get(endpointId);
+        return slots != null && slots.offline;
+    }
+
+    /**
+     * Restores the journaled content of a file whose last save didn't reach the server, e.g. before a restart,
+     * and queues it to be sent again. The program is checked for changes on the server before it is overwritten.
+     *
+     * @param file The file of the program, as just created or loaded
+     * @return true if unsaved content was restored
+     */
+    boolean recover(ApiEditorVirtualFile file) {
+        SaveJournal.Entry entry = journal.getPending(file.getEndpoint().getId(), file.getProgram().getId());
+        if (entry == null) {
+            return false;
+        }
+        PendingSave save;
+        synchronized (this) {
+            if (pendingSaves.containsKey(file)) {
+                // Written in this session, the file already holds the latest content
+                return false;
+            }
+            save = new PendingSave(file);
+            save.generation++;
+            save.sequence = entry.sequence;
+            save.verifyBase = true;
+            pendingSaves.put(file, save);
+            file.setSavePending(true);
+        }
+        LOG.info("Restoring unsaved changes to program " + entry.toProgram().getFullName() + " from the save journal");
+        file.restoreUnsaved(entry.toProgram());
+        scheduler.execute(() -> startDue(save));
+        return true;
+    }
+
+    /**
+     * Gets the unsaved content of a program from the save journal.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param programId The ID of the program
+     * @return The program with its unsaved content, based on the version it was edited from, or null if it has none
+     */
+    @Nullable
+    RemoteProgram getUnsavedProgram(String endpointId, String programId) {
+        SaveJournal.Entry entry = journal.getPending(endpointId, programId);
+        return entry != null ? entry.toProgram() : null;
+    }
+
+    /**
+     * Gets the programs with unsaved content in the save journal.
+     *
+     * @return The program IDs by endpoint ID
+     */
+    Map<String, List<String>> getUnsavedProgramIds() {
+        Map<String, List<String>> programIds = new HashMap<>();
+        for (String endpointId : journal.getEndpointIds()) {
+            List<String> ids = new ArrayList<>();
+            for (SaveJournal.Entry entry : journal.getPending(endpointId)) {
+                ids.add(entry.programId);
+            }
+            programIds.put(endpointId, ids);
+        }
+        return programIds;
+    }
+
+    /**
+     * Drops the journaled saves of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    void discardJournal(String endpointId) {
+        journal.discard(endpointId);
+    }
+
+    /**
+     * Retries the saves held back for an offline endpoint right away, e.g. after connecting to it succeeded.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    synchronized void resume(String endpointId) {
+        EndpointSlots slots = endpointSlots.get(endpointId);
+        if (slots == null || !slots.offline) {
+            return;
+        }
+        if (slots.probeTimer != null) {
+            slots.probeTimer.cancel(false);
+        }
+        slots.probeDelayMs = MIN_PROBE_DELAY_MS;
+        slots.probeTimer = scheduler.schedule(() -> probe(endpointId), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes pending saves, waiting a bounded time for those sent to the server, and stops the queue.
+     * Saves held back for an offline endpoint are only journaled. Those and saves that don't complete
+     * stay in the journal and are sent again after the next start.
+     *
+     * @param timeoutMs How long to wait for the saves in flight
+     */
+    void shutdown(long timeoutMs) {
+        List<ApiEditorVirtualFile> files;
+        synchronized (this) {
+            files = new ArrayList<>(pendingSaves.keySet());
+        }
+        CompletableFuture<?>[] saves = new CompletableFuture<?>[files.size()];
+        int heldBack = 0;
+        for (int i = 0; i < files.size(); i++) {
+            ApiEditorVirtualFile file = files.get(i);
+            CompletableFuture<Void> save = flush(file);
+            if (isOffline(file.getEndpoint().getId())) {
+                // Fails right away once the save is journaled
+                save = save.exceptionally(error -> null);
+                heldBack++;
+            }
+            saves[i] = save;
+        }
+        if (heldBack > 0) {
+            LOG.info(heldBack + " program saves for unreachable endpoints are kept in the save journal until the next start");
+        }
+        try {
+            CompletableFuture.allOf(saves).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.info("Program saves still in flight after " + timeoutMs + " ms are kept in the save journal until the next start");
+        } catch (ExecutionException e) {
+            LOG.info("Program saves that failed before shutdown are kept in the save journal until the next start: "
+                    + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.info("Interrupted while waiting for program saves, those in flight are kept in the save journal until the next start");
+        }
+        scheduler.shutdownNow();
+        journal.close();
+    }
+
+    private void startDue(PendingSave save) {
+        RemoteProgram snapshot;
+        synchronized (this) {
+            save.timer = null;
+            if (save.generation == save.savedGeneration) {
+                return;
+            }
+            snapshot = createSnapshot(save);
+        }
+        // Journal the save once writes settled, even if it has to wait for a slot or for the endpoint
+        journal(save, snapshot);
+
+        List<Waiter> heldBack;
+        synchronized (this) {
+            String endpointId = save.file.getEndpoint().getId();
+            EndpointSlots slots = endpointSlots.computeIfAbsent(endpointId, id -> new EndpointSlots());
+            if (slots.offline && !save.inFlight && save.generation != save.savedGeneration) {
+                if (!save.queued) {
+                    save.queued = true;
+                    slots.waiting.add(save);
+                }
+                save.verifyBase = true;
+                if (slots.probeTimer == null) {
+                    scheduleProbe(endpointId, slots);
+                }
+                heldBack = new ArrayList<>(save.waiters);
+                save.waiters.clear();
+            } else if (save.inFlight || save.queued || save.generation == save.savedGeneration) {
+                // An in-flight save picks up newer writes once it completes
+                return;
+            } else if (slots.inFlight >= MAX_IN_FLIGHT_PER_ENDPOINT) {
+                save.queued = true;
+                slots.waiting.add(save);
+                return;
+            } else {
+                slots.inFlight++;
+                save.inFlight = true;
+                heldBack = null;
+            }
+        }
+
+        if (heldBack != null) {
+            // Don't keep callers waiting for an endpoint that may not come back for a while
+            IOException offline = new IOException(save.file.getEndpoint().getName()
+                    + " is unreachable, the save is kept and sent once it is reachable again");
+            heldBack.forEach(waiter -> waiter.future.completeExceptionally(offline));
+            return;
+        }
+        upload(save);
+    }
+
+    /**
+     * Sends the oldest save held back for an offline endpoint, to find out whether it is reachable again.
+     */
+    private void probe(String endpointId) {
+        PendingSave save;
+        synchronized (this) {
+            EndpointSlots slots = endpointSlots.get(endpointId);
+            slots.probeTimer = null;
+            if (!slots.offline || slots.inFlight > 0) {
+                // A save in flight tells as much once it completes
+                return;
+            }
+            save = slots.waiting.poll();
+            if (save == null) {
+                // The next save schedules another probe
+                return;
+            }
+            save.queued = false;
+            save.inFlight = true;
+            slots.inFlight++;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Checking whether endpoint " + save.file.getEndpoint().getName() + " is reachable again");
+        }
+        upload(save);
+    }
+
+    // Called while holding this
+    private static void requeue(EndpointSlots slots, PendingSave save) {
+        // Saves held back are sent in the order they were first journaled
+        ListIterator<PendingSave> iterator = slots.waiting.listIterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().sequence > save.sequence) {
+                iterator.previous();
+                break;
+            }
+        }
+        iterator.add(save);
+    }
+
+    // Called while holding this
+    private void scheduleProbe(String endpointId, EndpointSlots slots) {
+        slots.probeTimer = scheduler.schedule(() -> probe(endpointId), slots.probeDelayMs, TimeUnit.MILLISECONDS);
+        slots.probeDelayMs = Math.min(slots.probeDelayMs * 2, MAX_PROBE_DELAY_MS);
+    }
+
+    private void upload(PendingSave save) {
+        long generation;
+        RemoteProgram snapshot;
+        RemoteProgram baseVersion;
+        boolean verifyBase;
+        synchronized (this) {
+            generation = save.generation;
+            snapshot = createSnapshot(save);
+            baseVersion = save.file.getServerVersion();
+            verifyBase = save.verifyBase;
+        }
+        SaveJournal.Entry entry = journal(save, snapshot);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Saving program " + snapshot.getFullName() + " (write " + generation + ")");
+        }
+
+        AsyncApiClient apiClient = new HttpApiClient(save.file.getEndpoint());
+        CompletableFuture<RemoteProgram> upload = verifyBase
+                ? checkBase(apiClient, snapshot).thenCompose(latestVersion -> latestVersion != null
+                        ? CompletableFuture.completedFuture(latestVersion)
+                        : apiClient.saveProgramAsync(snapshot, baseVersion))
+                : apiClient.saveProgramAsync(snapshot, baseVersion);
+        upload = upload.exceptionallyCompose(error -> checkConflict(apiClient, snapshot, error));
+        upload.whenComplete((savedProgram, error) -> {
+            if (error == null) {
+                acknowledge(entry);
+                listener.saved(save.file, snapshot, savedProgram);
+            }
+            completed(save, generation, snapshot, savedProgram, error);
+        });
+    }
+
+    /**
+     * Checks that a program was not changed on the server since the version an edit held back is based on.
+     *
+     * @return A future completing with null if the edit can be saved, with the server version if it already
+     * holds the edited content, or exceptionally with a {@link ProgramConflictException}
+     */
+    private static CompletableFuture<RemoteProgram> checkBase(AsyncApiClient apiClient, RemoteProgram snapshot) {
+        if (snapshot.getLastModified() <= 0 && snapshot.getEtag() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        RemoteProgram baseVersion = new RemoteProgram(snapshot.getId(), snapshot.getName(), snapshot.getExtension());
+        baseVersion.setLastModified(snapshot.getLastModified());
+        baseVersion.setEtag(snapshot.getEtag());
+        return apiClient.getProgramAsync(snapshot.getId(), baseVersion).thenApply(latestVersion -> {
+            if (latestVersion == baseVersion || (latestVersion.getLastModified() == baseVersion.getLastModified()
+                    && Objects.equals(latestVersion.getEtag(), baseVersion.getEtag()))) {
+                // Not modified since the edit was made
+                return null;
+            }
+            if (Arrays.equals(latestVersion.getContentBytes(), snapshot.getContentBytes())) {
+                // The save reached the server before, only its acknowledgement got lost
+                return latestVersion;
+            }
+            throw new CompletionException(new ProgramConflictException(409,
+                    "Program " + snapshot.getFullName() + " was changed on the server", latestVersion));
+        });
+    }
+
+    /**
+     * Checks whether the server already holds the content of a save rejected as conflicting. A save sent again
+     * because the response to the first attempt got lost, e.g. after a 502 or a dropped connection,
+     * is rejected if the first attempt was applied.
+     *
+     * @return A future completing with the server version if it holds the saved content,
+     * or exceptionally with the save's error, a conflict then carrying the server version
+     */
+    private static CompletableFuture<RemoteProgram> checkConflict(AsyncApiClient apiClient, RemoteProgram snapshot, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!(cause instanceof ProgramConflictException)) {
+            return CompletableFuture.failedFuture(error);
+        }
+        ProgramConflictException conflict = (ProgramConflictException) cause;
+        CompletableFuture<RemoteProgram> serverVersion = conflict.getServerVersion() != null
+                ? CompletableFuture.completedFuture(conflict.getServerVersion())
+                : apiClient.getProgramAsync(snapshot.getId());
+        return serverVersion.handle((latestVersion, fetchError) -> {
+            if (fetchError != null) {
+                throw new CompletionException(conflict);
+            }
+            if (Arrays.equals(latestVersion.getContentBytes(), snapshot.getContentBytes())) {
+                // The save reached the server before, only its acknowledgement got lost
+                return latestVersion;
+            }
+            throw new CompletionException(conflict.getServerVersion() != null ? conflict
+                    : new ProgramConflictException(conflict.getStatusCode(), conflict.getMessage(), latestVersion));
+        });
+    }
+
+    // Called while holding this
+    private static RemoteProgram createSnapshot(PendingSave save) {
+        RemoteProgram snapshot = save.file.createSnapshot();
+        RemoteProgram savedVersion = save.savedVersion;
+        if (savedVersion != null && savedVersion.getLastModified() > snapshot.getLastModified()) {
+            // The file takes over the version of the last save on the EDT, it may not have done so yet
+            snapshot.setLastModified(savedVersion.getLastModified());
+            snapshot.setEtag(savedVersion.getEtag());
+        }
+        return snapshot;
+    }
+
+    @Nullable
+    private SaveJournal.Entry journal(PendingSave save, RemoteProgram snapshot) {
+        if (snapshot.getContentBytes() == null) {
+            return null;
+        }
+        try {
+            SaveJournal.Entry entry = journal.append(save.file.getEndpoint().getId(), snapshot);
+            synchronized (this) {
+                save.sequence = entry.sequence;
+            }
+            return entry;
+        } catch (IOException e) {
+            LOG.warn("Failed to journal the save of program " + snapshot.getFullName(), e);
+            return null;
+        }
+    }
+
+    private void acknowledge(@Nullable SaveJournal.Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        try {
+            journal.acknowledge(entry);
+        } catch (IOException e) {
+            LOG.warn("Failed to acknowledge the save of program " + entry.programId + " in the save journal", e);
+        }
+    }
+
+    private void completed(PendingSave save, long generation, RemoteProgram snapshot, RemoteProgram savedProgram, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        boolean unreachable = error != null && isUnreachable(cause);
+        String endpointId = save.file.getEndpoint().getId();
+        List<Waiter> finished = new ArrayList<>();
+        List<PendingSave> toStart = new ArrayList<>();
+        Notification staleNotification;
+        Notification offlineNotification = null;
+        boolean wentOffline = false;
+        boolean settled = false;
+        synchronized (this) {
+            EndpointSlots slots = endpointSlots.get(endpointId);
+            slots.inFlight--;
+            save.inFlight = false;
+
+            Iterator<Waiter> iterator = save.waiters.iterator();
+            while (iterator.hasNext()) {
+                Waiter waiter = iterator.next();
+                if (error != null || waiter.generation <= generation) {
+                    finished.add(waiter);
+                    iterator.remove();
+                }
+            }
+
+            staleNotification = save.failureNotification;
+            save.failureNotification = null;
+            if (error == null) {
+                save.savedGeneration = generation;
+                save.savedVersion = savedProgram;
+                save.verifyBase = false;
+                if (save.generation > generation && save.timer == null) {
+                    // Written again while the save was in flight and the debounce delay already passed
+                    save.queued = true;
+                    slots.waiting.addFirst(save);
+                }
+            }
+            if (unreachable) {
+                // Put the save back in its place, it is sent again once the endpoint answers
+                save.verifyBase = true;
+                if (save.timer == null) {
+                    save.queued = true;
+                    requeue(slots, save);
+                }
+                wentOffline = !slots.offline;
+                slots.offline = true;
+                if (slots.probeTimer == null) {
+                    scheduleProbe(endpointId, slots);
+                }
+            } else if (slots.offline) {
+                // Any answer means the endpoint is reachable again
+                slots.offline = false;
+                if (slots.probeTimer != null) {
+                    slots.probeTimer.cancel(false);
+                    slots.probeTimer = null;
+                }
+                slots.probeDelayMs = MIN_PROBE_DELAY_MS;
+                offlineNotification = slots.offlineNotification;
+                slots.offlineNotification = null;
+            }
+            if (error == null && save.generation == save.savedGeneration && save.timer == null) {
+                pendingSaves.remove(save.file);
+                save.file.setSavePending(false);
+                settled = true;
+            }
+
+            while (!slots.offline && slots.inFlight < MAX_IN_FLIGHT_PER_ENDPOINT && !slots.waiting.isEmpty()) {
+                PendingSave next = slots.waiting.poll();
+                next.queued = false;
+                next.inFlight = true;
+                slots.inFlight++;
+                toStart.add(next);
+            }
+        }
+
+        if (staleNotification != null) {
+            staleNotification.expire();
+        }
+        if (offlineNotification != null) {
+            offlineNotification.expire();
+        }
+        for (Waiter waiter : finished) {
+            if (error == null) {
+                waiter.future.complete(null);
+            } else {
+                waiter.future.completeExceptionally(error);
+            }
+        }
+        if (error == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Saved program " + savedProgram.getFullName());
+            }
+        } else if (unreachable) {
+            if (wentOffline) {
+                reportOffline(save.file, cause);
+            }
+        } else if (cause instanceof ProgramConflictException) {
+            resolveConflict(save, snapshot, (ProgramConflictException) cause);
+        } else {
+            reportFailure(save, cause);
+        }
+        for (PendingSave next : toStart) {
+            upload(next);
+        }
+        if (settled) {
+            listener.settled(save.file);
+        }
+    }
+
+    /**
+     * Checks whether a save failed because the endpoint could not be reached, rather than being rejected.
+     */
+    private static boolean isUnreachable(Throwable error) {
+        if (error instanceof ApiResponseException) {
+            int statusCode = ((ApiResponseException) error).getStatusCode();
+            return statusCode == 502 || statusCode == 503 || statusCode == 504;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof EndpointUnavailableException
+                    || cause instanceof SocketException || cause instanceof UnknownHostException
+                    || cause instanceof HttpTimeoutException || cause instanceof EOFException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reportFailure(PendingSave save, Throwable cause) {
+        String name = save.file.getProgram().getFullName();
+        LOG.warn("Failed to save program " + name, cause);
+
+        Notification notification = NotificationGroupManager.getInstance()
+                .getNotificationGroup(NOTIFICATION_GROUP)
+                .createNotification("Failed to save " + name, cause.getMessage(), NotificationType.ERROR)
+                .addAction(NotificationAction.createSimpleExpiring("Retry", () -> flush(save.file)));
+        synchronized (this) {
+            save.failureNotification = notification;
+        }
+        notification.notify(null);
+    }
+
+    private void reportOffline(ApiEditorVirtualFile file, Throwable cause) {
+        String endpointId = file.getEndpoint().getId();
+        String name = file.getEndpoint().getName();
+        LOG.warn("Endpoint " + name + " is unreachable, holding back its saves", cause);
+
+        Notification notification = NotificationGroupManager.getInstance()
+                .getNotificationGroup(NOTIFICATION_GROUP)
+                .createNotification(name + " is unreachable",
+                        "Your changes are kept locally and saved once the endpoint is reachable again.",
+                        NotificationType.WARNING)
+                .addAction(NotificationAction.createSimpleExpiring("Retry Now", () -> resume(endpointId)));
+        synchronized (this) {
+            EndpointSlots slots = endpointSlots.get(endpointId);
+            if (!slots.offline) {
+                // Already back online
+                return;
+            }
+            slots.offlineNotification = notification;
+        }
+        notification.notify(null);
+    }
+
+    /**
+     * Handles a save rejected because the program was changed on the server. Changes to different lines
+     * are merged with the server version and saved again; overlapping changes are left to the user.
+     */
+    private void resolveConflict(PendingSave save, RemoteProgram snapshot, ProgramConflictException conflict) {
+        ApiEditorVirtualFile file = save.file;
+        CompletableFuture<RemoteProgram> serverVersion = conflict.getServerVersion() != null
+                ? CompletableFuture.completedFuture(conflict.getServerVersion())
+                : new HttpApiClient(file.getEndpoint()).getProgramAsync(snapshot.getId());
+        serverVersion.whenComplete((latestVersion, error) -> {
+            if (error != null) {
+                reportFailure(save, conflict);
+                return;
+            }
+            byte[] base = getBaseContent(file, snapshot);
+            byte[] merged = base != null
+                    ? ThreeWayMerge.merge(base, snapshot.getContentBytes(), latestVersion.getContentBytes())
+                    : null;
+            if (merged == null) {
+                reportConflict(save, latestVersion, base);
+                return;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (!listener.merged(file, snapshot, latestVersion, merged)) {
+                    // Edited again in the meantime
+                    reportConflict(save, latestVersion, base);
+                    return;
+                }
+                LOG.info("Merged changes to program " + snapshot.getFullName() + " with the server version");
+                synchronized (this) {
+                    save.verifyBase = false;
+                }
+                flush(file);
+            });
+        });
+    }
+
+    /**
+     * Gets the content of the version an edit is based on, from the file if it keeps it or from the content cache.
+     */
+    @Nullable
+    private static byte[] getBaseContent(ApiEditorVirtualFile file, RemoteProgram snapshot) {
+        RemoteProgram serverVersion = file.getServerVersion();
+        if (serverVersion != null && serverVersion.getContentBytes() != null
+                && serverVersion.getLastModified() == snapshot.getLastModified()) {
+            return serverVersion.getContentBytes();
+        }
+        RemoteProgram baseVersion = new RemoteProgram(snapshot.getId(), snapshot.getName(), snapshot.getExtension());
+        baseVersion.setLastModified(snapshot.getLastModified());
+        RemoteProgram cachedVersion = ProgramContentCache.getInstance().get(file.getEndpoint().getId(), baseVersion);
+        return cachedVersion != null ? cachedVersion.getContentBytes() : null;
+    }
+
+    private void reportConflict(PendingSave save, RemoteProgram serverVersion, @Nullable byte[] base) {
+        String name = save.file.getProgram().getFullName();
+        LOG.warn("Changes to program " + name + " conflict with changes made on the server");
+
+        Notification notification = NotificationGroupManager.getInstance()
+                .getNotificationGroup(NOTIFICATION_GROUP)
+                .createNotification("Conflicting changes to " + name,
+                        "The program was changed on the server since you started editing it.",
+                        NotificationType.WARNING);
+        if (base != null) {
+            notification.addAction(NotificationAction.createSimpleExpiring("Merge...", () -> merge(save, serverVersion, base)));
+        }
+        notification
+                .addAction(NotificationAction.createSimpleExpiring("Overwrite", () -> overwrite(save, serverVersion)))
+                .addAction(NotificationAction.createSimpleExpiring("Use Server Version", () -> discard(save, serverVersion)));
+        synchronized (this) {
+            save.failureNotification = notification;
+        }
+        notification.notify(null);
+    }
+
+    /**
+     * Lets the user merge conflicting changes in the merge tool. The result is saved against the server version.
+     */
+    private void merge(PendingSave save, RemoteProgram serverVersion, byte[] base) {
+        ApiEditorVirtualFile file = save.file;
+        byte[] local = file.createSnapshot().getContentBytes();
+        boolean shown = ConflictMerge.show(file, local, base, serverVersion.getContentBytes(), () -> {
+            file.rebase(serverVersion);
+            synchronized (this) {
+                save.verifyBase = false;
+            }
+        });
+        if (!shown) {
+            reportConflict(save, serverVersion, null);
+        }
+    }
+
+    /**
+     * Saves conflicting changes as they are, replacing the server version.
+     */
+    private void overwrite(PendingSave save, RemoteProgram serverVersion) {
+        save.file.rebase(serverVersion);
+        synchronized (this) {
+            save.verifyBase = false;
+        }
+        flush(save.file);
+    }
+
+    /**
+     * Drops the unsaved changes of a file in favor of the server version.
+     */
+    private void discard(PendingSave save, RemoteProgram serverVersion) {
+        synchronized (this) {
+            if (save.inFlight || pendingSaves.get(save.file) != save) {
+                return;
+            }
+            if (save.timer != null) {
+                save.timer.cancel(false);
+                save.timer = null;
+            }
+            if (save.queued) {
+                endpointSlots.get(save.file.getEndpoint().getId()).waiting.remove(save);
+                save.queued = false;
+            }
+            pendingSaves.remove(save.file);
+            save.file.setSavePending(false);
+        }
+        SaveJournal.Entry entry = journal.getPending(save.file.getEndpoint().getId(), save.file.getProgram().getId());
+        acknowledge(entry);
+        listener.discarded(save.file, serverVersion);
+        listener.settled(save.file);
+    }
+
+    interface SaveListener {
+        /**
+         * Called on a background thread once a save succeeded.
+         *
+         * @param file The saved file
+         * @param snapshot The program as it was sent, the file may have been written again since
+         * @param savedProgram The program as returned by the server
+         */
+        void saved(ApiEditorVirtualFile file, RemoteProgram snapshot, RemoteProgram savedProgram);
+
+        /**
+         * Called on the EDT to apply changes merged with a newer server version.
+         *
+         * @param file The file
+         * @param conflicted The program as it was sent and rejected
+         * @param serverVersion The program as the server holds it
+         * @param mergedContent The merged UTF-8 content
+         * @return false if the file was written again since the rejected save, so the merge no longer applies
+         */
+        boolean merged(ApiEditorVirtualFile file, RemoteProgram conflicted, RemoteProgram serverVersion, byte[] mergedContent);
+
+        /**
+         * Called once the unsaved changes of a file were dropped in favor of the server version.
+         *
+         * @param file The file
+         * @param serverVersion The program as the server holds it
+         */
+        void discarded(ApiEditorVirtualFile file, RemoteProgram serverVersion);
+
+        /**
+         * Called on a background thread once a file has no save pending anymore.
+         *
+         * @param file The file
+         */
+        void settled(ApiEditorVirtualFile file);
+    }
+
+    /**
+     * Save state of one file. Each write bumps the generation; the saved generation trails it.
+     */
+    private static class PendingSave {
+        final ApiEditorVirtualFile file;
+        final List<Waiter> waiters = new ArrayList<>();
+        long generation;
+        long savedGeneration;
+        // The program as returned by the last save
+        RemoteProgram savedVersion;
+        // The journal sequence number of the latest save, orders saves held back
+        long sequence;
+        ScheduledFuture<?> timer;
+        boolean inFlight;
+        boolean queued;
+        // Set for saves held back or restored from the journal, the server may have changed the program since
+        boolean verifyBase;
+        Notification failureNotification;
+
+        PendingSave(ApiEditorVirtualFile file) {
+            this.file = file;
+        }
+    }
+
+    private static class Waiter {
+        final long generation;
+        final CompletableFuture<Void> future;
+
+        Waiter(long generation, CompletableFuture<Void> future) {
+            this.generation = generation;
+            this.future = future;
+        }
+    }
+
+    private static class EndpointSlots {
+        final LinkedList<PendingSave> waiting = new LinkedList<>();
+        int inFlight;
+        // Set while the endpoint can't be reached; saves are then only journaled and queued
+        boolean offline;
+        long probeDelayMs = MIN_PROBE_DELAY_MS;
+        ScheduledFuture<?> probeTimer;
+        Notification offlineNotification;
+    }
+}
@@ -0,0 +1,538 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory search index over the program names of an endpoint, for picking a program from a large catalog.
+ * Names are matched case-insensitively together with their extension, as shown in the program list.
+ * Results come in three ranks, each sorted by name: names starting with the query, names containing it,
+ * found through bigram and trigram postings, and names containing the query's characters in order, e.g. "hwj"
+ * for "HelloWorld.java". A search produces its results page by page as they are asked for. A page costs
+ * the names passed over to fill it: a prefix page only its results, later ranks the names in between, which
+ * are mostly ruled out by the postings or by a character mask without looking at the name. Walks in name
+ * order release the index every few thousand names, so updates aren't held up by a search for a rare match.
+ * The index is updated incrementally as programs are listed, changed and deleted.
+ */
+public class ProgramSearchIndex {
+    private static final int TRIGRAM_LENGTH = 3;
+    // Tags bigram keys, so they don't collide with the trigrams packed into the lower 48 bits
+    private static final long BIGRAM_TAG = 1L << 48;
+    // Names containing the query up to this many are sorted when the rank is reached, more are found by walking the name order
+    private static final int SORTED_MATCHES_LIMIT = 1024;
+    // The most names walked in name order while holding the index
+    private static final int WALK_LIMIT = 4096;
+    private static final int[] NO_SLOTS = new int[0];
+
+    // Guarded by this. Every program has a slot; slots are not reused, so postings stay sorted as they are appended.
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private RemoteProgram[] programs = new RemoteProgram[16];
+    private String[] names = new String[16];
+    // Per slot, a bit for each kind of character in the name, to rule out most names before matching characters in order
+    private long[] characterMasks = new long[16];
+    private int nextSlot;
+    // Sort keys (lowercase name, then ID) in name order, for prefix ranges and listing in order
+    private final TreeMap<String, Integer> slotsByKey = new TreeMap<>();
+    // The slots in name order and each slot's position in it, taken from slotsByKey when a search needs them after a change
+    private int[] orderedSlots = NO_SLOTS;
+    private int[] slotPositions = NO_SLOTS;
+    private boolean orderChanged;
+    // Counts the times the slots were reassigned, so a search drops the slots it noted before
+    private int slotGeneration;
+    // Bigrams and trigrams to the slots of the names containing them
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Adds a program or replaces the listed version of it.
+     *
+     * @param program The program's metadata
+     */
+    public synchronized void put(RemoteProgram program) {
+        String fullName = program.getFullName();
+        String name = fullName != null ? normalize(fullName) : "";
+        Integer slot = slotsById.get(program.getId());
+        if (slot != null && names[slot].equals(name)) {
+            // Same name, e.g. a newer version; the postings stay as they are
+            programs[slot] = program;
+            return;
+        }
+        if (slot != null) {
+            remove(program.getId());
+        }
+        if (nextSlot == programs.length) {
+            programs = Arrays.copyOf(programs, nextSlot * 2);
+            names = Arrays.copyOf(names, nextSlot * 2);
+            characterMasks = Arrays.copyOf(characterMasks, nextSlot * 2);
+        }
+        slot = nextSlot++;
+        programs[slot] = program;
+        names[slot] = name;
+        characterMasks[slot] = characterMask(name);
+        slotsById.put(program.getId(), slot);
+        slotsByKey.put(sortKey(name, program.getId()), slot);
+        orderChanged = true;
+        for (long gram : grams(name)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(slot);
+        }
+    }
+
+    /**
+     * Removes a program, e.g. after it was deleted on the server.
+     *
+     * @param programId The ID of the program
+     */
+    public synchronized void remove(String programId) {
+        Integer slot = slotsById.remove(programId);
+        if (slot == null) {
+            return;
+        }
+        String name = names[slot];
+        slotsByKey.remove(sortKey(name, programId));
+        orderChanged = true;
+        for (long gram : grams(name)) {
+            Postings gramPostings = postings.get(gram);
+            if (gramPostings != null && gramPostings.remove(slot) && gramPostings.size == 0) {
+                postings.remove(gram);
+            }
+        }
+        programs[slot] = null;
+        names[slot] = null;
+        // Compact once most slots are free, so a catalog that keeps changing doesn't grow the arrays forever
+        if (nextSlot > 1024 && slotsById.size() < nextSlot / 4) {
+            List<RemoteProgram> remaining = new ArrayList<>(slotsById.size());
+            for (int i = 0; i < nextSlot; i++) {
+                if (programs[i] != null) {
+                    remaining.add(programs[i]);
+                }
+            }
+            clear();
+            remaining.forEach(this::put);
+        }
+    }
+
+    public synchronized void clear() {
+        slotsById.clear();
+        slotsByKey.clear();
+        postings.clear();
+        programs = new RemoteProgram[16];
+        names = new String[16];
+        characterMasks = new long[16];
+        orderedSlots = NO_SLOTS;
+        slotPositions = NO_SLOTS;
+        orderChanged = false;
+        slotGeneration++;
+        nextSlot = 0;
+    }
+
+    public synchronized int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Starts a search. Results are only computed as pages are taken from it.
+     *
+     * @param query The text typed by the user; an empty query lists all programs by name
+     * @return The search
+     */
+    public Search search(String query) {
+        return new Search(normalize(query.trim()));
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String sortKey(String name, String programId) {
+        // The separator sorts before every character of a name, so "a" comes before "ab"
+        return name + '\0' + programId;
+    }
+
+    /**
+     * Gets the distinct bigrams and trigrams of a name, sorted.
+     */
+    private static long[] grams(String text) {
+        int bigramCount = Math.max(0, text.length() - 1);
+        int trigramCount = Math.max(0, text.length() - TRIGRAM_LENGTH + 1);
+        long[] grams = new long[bigramCount + trigramCount];
+        for (int i = 0; i < bigramCount; i++) {
+            grams[i] = bigram(text, i);
+        }
+        for (int i = 0; i < trigramCount; i++) {
+            grams[bigramCount + i] = trigram(text, i);
+        }
+        return distinct(grams);
+    }
+
+    /**
+     * Gets the distinct trigrams of a query, sorted.
+     */
+    private static long[] trigrams(String text) {
+        int count = Math.max(0, text.length() - TRIGRAM_LENGTH + 1);
+        long[] trigrams = new long[count];
+        for (int i = 0; i < count; i++) {
+            trigrams[i] = trigram(text, i);
+        }
+        return distinct(trigrams);
+    }
+
+    private static long[] distinct(long[] values) {
+        Arrays.sort(values);
+        int distinct = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+    }
+
+    private static long bigram(String text, int start) {
+        return BIGRAM_TAG | (long) text.charAt(start) << 16 | text.charAt(start + 1);
+    }
+
+    private static long trigram(String text, int start) {
+        return (long) text.charAt(start) << 32 | (long) text.charAt(start + 1) << 16 | text.charAt(start + 2);
+    }
+
+    private static long characterMask(String text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            mask |= 1L << (text.charAt(i) & 63);
+        }
+        return mask;
+    }
+
+    /**
+     * Checks whether a name contains the characters of the query in order.
+     */
+    private static boolean containsInOrder(String name, String query) {
+        int position = 0;
+        for (int i = 0; i < query.length(); i++) {
+            position = name.indexOf(query.charAt(i), position) + 1;
+            if (position == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Brings the name order of the slots up to date. Called while holding this.
+     */
+    private void updateOrder() {
+        if (!orderChanged) {
+            return;
+        }
+        orderedSlots = new int[slotsByKey.size()];
+        slotPositions = new int[nextSlot];
+        int position = 0;
+        for (int slot : slotsByKey.values()) {
+            slotPositions[slot] = position;
+            orderedSlots[position++] = slot;
+        }
+        orderChanged = false;
+    }
+
+    /**
+     * Gets the position in name order after a sort key. Called while holding this, with the order up to date.
+     */
+    private int positionAfter(String key) {
+        int low = 0;
+        int high = orderedSlots.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int slot = orderedSlots[middle];
+            if (sortKey(names[slot], programs[slot].getId()).compareTo(key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the slots of the names that may contain a query of at least two characters:
+     * those with its bigram, or with all its trigrams. Called while holding this.
+     */
+    private int[] substringCandidates(String query) {
+        if (query.length() < TRIGRAM_LENGTH) {
+            Postings bigramPostings = postings.get(bigram(query, 0));
+            return bigramPostings != null ? Arrays.copyOf(bigramPostings.slots, bigramPostings.size) : NO_SLOTS;
+        }
+        List<Postings> lists = new ArrayList<>();
+        for (long trigram : trigrams(query)) {
+            Postings trigramPostings = postings.get(trigram);
+            if (trigramPostings == null) {
+                return NO_SLOTS;
+            }
+            lists.add(trigramPostings);
+        }
+        // Intersect starting with the shortest list, so the intermediate results stay small
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        int[] candidates = Arrays.copyOf(lists.get(0).slots, lists.get(0).size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = lists.get(i).retainIn(candidates, count);
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * A search over the index, taking its results page by page. Changes to the index between pages
+     * are taken into account as far as the search hasn't passed them yet.
+     */
+    public class Search {
+        private final String query;
+        private final long queryMask;
+        // 0: name starts with the query, 1: name contains it, 2: name contains its characters in order, 3: done
+        private int rank;
+        // The sort key of the last name passed over by the ranks walked in name order
+        private String lastKey;
+        // Few names containing the query: their program IDs in name order, taken when that rank is reached
+        private List<String> containing;
+        private int containingPosition;
+        // Many names containing the query: the slots that may contain it, from the postings when that rank is reached.
+        // Slots from the limit on were added since and are checked by name; null for single characters, which have no postings.
+        private BitSet candidateSlots;
+        private int candidateSlotLimit;
+        private int candidateGeneration;
+        private boolean walkingContaining;
+
+        Search(String query) {
+            this.query = query;
+            this.queryMask = characterMask(query);
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Takes the next results.
+         *
+         * @param max The most results to take
+         * @return The results, fewer than asked for only if the search is exhausted
+         */
+        public List<RemoteProgram> next(int max) {
+            List<RemoteProgram> page = new ArrayList<>(Math.min(max, 256));
+            while (page.size() < max) {
+                // Each step holds the index for a bounded walk, so updates can get in between
+                synchronized (ProgramSearchIndex.this) {
+                    if (rank >= 3) {
+                        break;
+                    }
+                    boolean exhausted;
+                    if (rank == 0) {
+                        exhausted = nextStartingWith(page, max);
+                    } else if (rank == 1) {
+                        exhausted = nextContaining(page, max);
+                    } else {
+                        exhausted = nextContainingInOrder(page, max);
+                    }
+                    if (exhausted) {
+                        rank++;
+                        lastKey = null;
+                    }
+                }
+            }
+            return page;
+        }
+
+        public boolean isExhausted() {
+            synchronized (ProgramSearchIndex.this) {
+                return rank >= 3;
+            }
+        }
+
+        private boolean nextStartingWith(List<RemoteProgram> page, int max) {
+            Map<String, Integer> range = lastKey != null ? slotsByKey.tailMap(lastKey, false) : slotsByKey.tailMap(query, true);
+            for (Map.Entry<String, Integer> entry : range.entrySet()) {
+                if (!entry.getKey().startsWith(query)) {
+                    return true;
+                }
+                if (page.size() == max) {
+                    return false;
+                }
+                page.add(programs[entry.getValue()]);
+                lastKey = entry.getKey();
+            }
+            return true;
+        }
+
+        private boolean nextContaining(List<RemoteProgram> page, int max) {
+            if (query.isEmpty()) {
+                // Everything was listed by the first rank
+                return true;
+            }
+            if (containing == null && !walkingContaining) {
+                findContaining();
+            }
+            if (walkingContaining) {
+                if (candidateSlots != null && candidateGeneration != slotGeneration) {
+                    // The index was compacted, so the noted slots are stale
+                    findContaining();
+                }
+                return walk(page, max, this::isContaining);
+            }
+            while (containingPosition < containing.size()) {
+                if (page.size() == max) {
+                    return false;
+                }
+                // The program may have been removed or renamed since
+                Integer slot = slotsById.get(containing.get(containingPosition++));
+                if (slot != null && names[slot].contains(query) && !names[slot].startsWith(query)) {
+                    page.add(programs[slot]);
+                }
+            }
+            containing = null;
+            return true;
+        }
+
+        /**
+         * Prepares the rank of names containing the query: few matches are sorted right away,
+         * otherwise the candidates are noted for walking the name order. Called while holding the index.
+         */
+        private void findContaining() {
+            updateOrder();
+            if (query.length() == 1) {
+                walkingContaining = true;
+                return;
+            }
+            int[] candidates = substringCandidates(query);
+            if (candidates.length > SORTED_MATCHES_LIMIT) {
+                candidateSlots = new BitSet(nextSlot);
+                for (int slot : candidates) {
+                    candidateSlots.set(slot);
+                }
+                candidateSlotLimit = nextSlot;
+                candidateGeneration = slotGeneration;
+                walkingContaining = true;
+                return;
+            }
+            // Each matching slot with its position in name order in the upper half, so sorting orders them by name
+            long[] matches = new long[candidates.length];
+            int count = 0;
+            for (int slot : candidates) {
+                String name = names[slot];
+                if (name.contains(query) && !name.startsWith(query)) {
+                    matches[count++] = (long) slotPositions[slot] << 32 | slot;
+                }
+            }
+            Arrays.sort(matches, 0, count);
+            containing = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                containing.add(programs[(int) matches[i]].getId());
+            }
+        }
+
+        private boolean isContaining(int slot) {
+            if (candidateSlots != null ? slot < candidateSlotLimit && !candidateSlots.get(slot)
+                    : (characterMasks[slot] & queryMask) != queryMask) {
+                return false;
+            }
+            String name = names[slot];
+            return name.contains(query) && !name.startsWith(query);
+        }
+
+        private boolean nextContainingInOrder(List<RemoteProgram> page, int max) {
+            if (query.length() < 2) {
+                // A single character is found by the ranks before
+                return true;
+            }
+            return walk(page, max, this::isContainingInOrder);
+        }
+
+        private boolean isContainingInOrder(int slot) {
+            String name = names[slot];
+            return (characterMasks[slot] & queryMask) == queryMask && containsInOrder(name, query) && !name.contains(query);
+        }
+
+        /**
+         * Walks the names in order after the last one passed over, adding the programs of the matching ones,
+         * until the page is full or the walk limit is reached. Called while holding the index.
+         *
+         * @return true if the walk reached the end of the names
+         */
+        private boolean walk(List<RemoteProgram> page, int max, IntPredicate matches) {
+            updateOrder();
+            int position = lastKey != null ? positionAfter(lastKey) : 0;
+            int end = Math.min(orderedSlots.length, position + WALK_LIMIT);
+            boolean exhausted = true;
+            for (; position < orderedSlots.length; position++) {
+                if (position == end) {
+                    exhausted = false;
+                    break;
+                }
+                int slot = orderedSlots[position];
+                if (matches.test(slot)) {
+                    if (page.size() == max) {
+                        exhausted = false;
+                        break;
+                    }
+                    page.add(programs[slot]);
+                }
+            }
+            if (!exhausted && position > 0) {
+                int last = orderedSlots[position - 1];
+                lastKey = sortKey(names[last], programs[last].getId());
+            }
+            return exhausted;
+        }
+    }
+
+    /**
+     * The slots of the names containing a bigram or trigram, in ascending order.
+     */
+    private static class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        boolean remove(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Keeps only the candidates that are in these postings.
+         *
+         * @param candidates Sorted slots; the retained ones are moved to the front
+         * @param count The number of candidates
+         * @return The number of retained candidates
+         */
+        int retainIn(int[] candidates, int count) {
+            int retained = 0;
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                position = Arrays.binarySearch(slots, position, size, candidates[i]);
+                if (position >= 0) {
+                    candidates[retained++] = candidates[i];
+                } else {
+                    position = -position - 1;
+                }
+            }
+            return retained;
+        }
+    }
+}
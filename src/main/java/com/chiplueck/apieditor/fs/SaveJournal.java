@@ -0,0 +1,461 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of program saves, one file per endpoint under the IDE system directory.
+ * Every save is written and forced to disk before it is sent, and acknowledged once the server has it,
+ * so edits survive an unreachable server, a crash or a restart until they are uploaded.
+ * <p>
+ * Records are an int length, a type byte, a long sequence number and, for saves, the program ID, name,
+ * extension, the lastModified and ETag of the server version the edit is based on and the content,
+ * followed by a CRC32 of everything after the length. A torn record at the end, as left by a crash
+ * during a write, is cut off when the journal is read.
+ */
+final class SaveJournal {
+    private static final Logger LOG = Logger.getInstance(SaveJournal.class);
+    private static final String FILE_SUFFIX = ".journal";
+    private static final byte SAVE = 1;
+    private static final byte ACKNOWLEDGE = 2;
+    // Journals with pending saves are rewritten without the acknowledged ones once they grow beyond this
+    private static final long COMPACT_BYTES = 16L * 1024 * 1024;
+
+    private final Path root;
+    // Guarded by this
+    private final Map<String, EndpointJournal> journals = new HashMap<>();
+    private boolean loaded;
+
+    SaveJournal() {
+        this(Paths.get(PathManager.getSystemPath(), "api-editor", "journal"));
+    }
+
+    SaveJournal(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Records a save before it is sent. A program's earlier pending save is superseded by the new one.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param snapshot The program as it is sent; its lastModified and ETag are those of the version the edit is based on
+     * @return The journal entry, to be acknowledged once the save succeeded
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized Entry append(String endpointId, RemoteProgram snapshot) throws IOException {
+        EndpointJournal journal = open(endpointId);
+        Entry pending = journal.pending.get(snapshot.getId());
+        if (pending != null && pending.content == snapshot.getContentBytes()
+                && pending.baseLastModified == snapshot.getLastModified()) {
+            // The same save again, e.g. a retry
+            return pending;
+        }
+
+        Entry entry = new Entry(endpointId, journal.nextSequence++, snapshot.getId(), snapshot.getName(),
+                snapshot.getExtension(), snapshot.getLastModified(), snapshot.getEtag(), snapshot.getContentBytes());
+        journal.write(encode(entry));
+        journal.pending.remove(entry.programId);
+        journal.pending.put(entry.programId, entry);
+        return entry;
+    }
+
+    /**
+     * Records that a save reached the server. If the program was saved again since, the newer save stays pending.
+     *
+     * @param entry The entry returned when the save was recorded
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void acknowledge(Entry entry) throws IOException {
+        EndpointJournal journal = journals.get(entry.endpointId);
+        if (journal == null || journal.pending.get(entry.programId) != entry) {
+            return;
+        }
+        journal.pending.remove(entry.programId);
+        if (journal.pending.isEmpty()) {
+            journal.truncate();
+        } else {
+            journal.write(encodeAcknowledge(entry.sequence));
+            if (journal.size() > COMPACT_BYTES) {
+                compact(journal);
+            }
+        }
+    }
+
+    /**
+     * Gets the pending save of a program.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param programId The ID of the program
+     * @return The entry, or null if the program has no pending save
+     */
+    @Nullable
+    synchronized Entry getPending(String endpointId, String programId) {
+        load();
+        EndpointJournal journal = journals.get(endpointId);
+        return journal != null ? journal.pending.get(programId) : null;
+    }
+
+    /**
+     * Gets the pending saves of an endpoint.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @return The entries in the order they were recorded
+     */
+    synchronized List<Entry> getPending(String endpointId) {
+        load();
+        EndpointJournal journal = journals.get(endpointId);
+        return journal != null ? new ArrayList<>(journal.pending.values()) : new ArrayList<>();
+    }
+
+    /**
+     * Gets the endpoints with pending saves.
+     *
+     * @return The IDs of the endpoints
+     */
+    synchronized Set<String> getEndpointIds() {
+        load();
+        Set<String> endpointIds = new TreeSet<>();
+        journals.forEach((endpointId, journal) -> {
+            if (!journal.pending.isEmpty()) {
+                endpointIds.add(endpointId);
+            }
+        });
+        return endpointIds;
+    }
+
+    /**
+     * Drops the pending saves of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    synchronized void discard(String endpointId) {
+        load();
+        EndpointJournal journal = journals.remove(endpointId);
+        Path path = journal != null ? journal.path : journalPath(endpointId);
+        if (journal != null) {
+            journal.close();
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete save journal " + path, e);
+        }
+    }
+
+    /**
+     * Closes the journal files. Pending saves stay on disk.
+     */
+    synchronized void close() {
+        journals.values().forEach(EndpointJournal::close);
+        journals.clear();
+        loaded = false;
+    }
+
+    private EndpointJournal open(String endpointId) throws IOException {
+        load();
+        EndpointJournal journal = journals.get(endpointId);
+        if (journal == null) {
+            Files.createDirectories(root);
+            journal = new EndpointJournal(journalPath(endpointId));
+            journals.put(endpointId, journal);
+        }
+        if (journal.channel == null) {
+            journal.channel = FileChannel.open(journal.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            journal.channel.position(journal.channel.size());
+        }
+        return journal;
+    }
+
+    private Path journalPath(String endpointId) {
+        return root.resolve(endpointId + FILE_SUFFIX);
+    }
+
+    /**
+     * Reads all journals from disk, once.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(root)) {
+            list.filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX)).forEach(files::add);
+        } catch (IOException e) {
+            LOG.warn("Failed to scan save journals in " + root, e);
+            return;
+        }
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            String endpointId = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+            try {
+                EndpointJournal journal = read(endpointId, file);
+                if (journal.pending.isEmpty()) {
+                    Files.deleteIfExists(file);
+                } else {
+                    journals.put(endpointId, journal);
+                    LOG.info("Save journal of endpoint " + endpointId + " has " + journal.pending.size() + " pending saves");
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to read save journal " + file, e);
+            }
+        }
+    }
+
+    private static EndpointJournal read(String endpointId, Path path) throws IOException {
+        EndpointJournal journal = new EndpointJournal(path);
+        Map<Long, Entry> saves = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long validEnd = 0;
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+            while (validEnd + Integer.BYTES <= size) {
+                lengthBuffer.clear();
+                channel.read(lengthBuffer, validEnd);
+                int length = lengthBuffer.flip().getInt();
+                if (length < 1 + Long.BYTES + Integer.BYTES || validEnd + Integer.BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.allocate(length);
+                while (record.hasRemaining()) {
+                    if (channel.read(record, validEnd + Integer.BYTES + record.position()) < 0) {
+                        throw new IOException("Unexpected end of save journal");
+                    }
+                }
+                record.flip();
+                CRC32 crc = new CRC32();
+                crc.update(record.array(), 0, length - Integer.BYTES);
+                if ((int) crc.getValue() != record.getInt(length - Integer.BYTES)) {
+                    break;
+                }
+
+                byte type = record.get();
+                long sequence = record.getLong();
+                journal.nextSequence = Math.max(journal.nextSequence, sequence + 1);
+                if (type == SAVE) {
+                    Entry entry = decodeSave(endpointId, sequence, record);
+                    Entry superseded = journal.pending.remove(entry.programId);
+                    if (superseded != null) {
+                        saves.remove(superseded.sequence);
+                    }
+                    journal.pending.put(entry.programId, entry);
+                    saves.put(sequence, entry);
+                } else if (type == ACKNOWLEDGE) {
+                    Entry acknowledged = saves.remove(record.getLong(1));
+                    if (acknowledged != null) {
+                        journal.pending.remove(acknowledged.programId, acknowledged);
+                    }
+                }
+                validEnd += Integer.BYTES + length;
+            }
+            if (validEnd < size) {
+                LOG.warn("Discarding " + (size - validEnd) + " bytes of an incomplete record at the end of save journal " + path);
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Rewrites a journal with only its pending saves. The new file is forced to disk before it replaces the old one.
+     */
+    private void compact(EndpointJournal journal) throws IOException {
+        Path temp = Files.createTempFile(root, "journal", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            for (Entry entry : journal.pending.values()) {
+                ByteBuffer record = encode(entry);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        journal.close();
+        Files.move(temp, journal.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal.channel = FileChannel.open(journal.path, StandardOpenOption.WRITE);
+        journal.channel.position(journal.channel.size());
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        byte[][] fields = {bytesOf(entry.programId), bytesOf(entry.name), bytesOf(entry.extension), bytesOf(entry.baseEtag)};
+        int length = 1 + Long.BYTES + Long.BYTES + Integer.BYTES + entry.content.length + Integer.BYTES;
+        for (byte[] field : fields) {
+            length += Integer.BYTES + (field != null ? field.length : 0);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).put(SAVE).putLong(entry.sequence);
+        putField(record, fields[0]);
+        putField(record, fields[1]);
+        putField(record, fields[2]);
+        record.putLong(entry.baseLastModified);
+        putField(record, fields[3]);
+        record.putInt(entry.content.length).put(entry.content);
+        return finish(record);
+    }
+
+    private static ByteBuffer encodeAcknowledge(long sequence) {
+        int length = 1 + Long.BYTES + Integer.BYTES;
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).put(ACKNOWLEDGE).putLong(sequence);
+        return finish(record);
+    }
+
+    private static ByteBuffer finish(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), Integer.BYTES, record.position() - Integer.BYTES);
+        record.putInt((int) crc.getValue());
+        return record.flip();
+    }
+
+    private static Entry decodeSave(String endpointId, long sequence, ByteBuffer record) throws IOException {
+        String programId = getField(record);
+        String name = getField(record);
+        String extension = getField(record);
+        long baseLastModified = record.getLong();
+        String baseEtag = getField(record);
+        int contentLength = record.getInt();
+        if (programId == null || contentLength < 0 || contentLength > record.remaining() - Integer.BYTES) {
+            throw new IOException("Corrupt save journal record " + sequence);
+        }
+        byte[] content = new byte[contentLength];
+        record.get(content);
+        return new Entry(endpointId, sequence, programId, name, extension, baseLastModified, baseEtag, content);
+    }
+
+    private static void putField(ByteBuffer record, @Nullable byte[] field) {
+        if (field == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(field.length).put(field);
+        }
+    }
+
+    @Nullable
+    private static String getField(ByteBuffer record) throws IOException {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > record.remaining()) {
+            throw new IOException("Corrupt save journal record");
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    @Nullable
+    private static byte[] bytesOf(@Nullable String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * A save recorded in the journal.
+     */
+    static final class Entry {
+        final String endpointId;
+        final long sequence;
+        final String programId;
+        final String name;
+        final String extension;
+        final long baseLastModified;
+        final String baseEtag;
+        final byte[] content;
+
+        Entry(String endpointId, long sequence, String programId, String name, String extension,
+              long baseLastModified, String baseEtag, byte[] content) {
+            this.endpointId = endpointId;
+            this.sequence = sequence;
+            this.programId = programId;
+            this.name = name;
+            this.extension = extension;
+            this.baseLastModified = baseLastModified;
+            this.baseEtag = baseEtag;
+            this.content = content;
+        }
+
+        /**
+         * Creates the program as it is to be saved, with the lastModified and ETag of its base version.
+         *
+         * @return The program
+         */
+        RemoteProgram toProgram() {
+            RemoteProgram program = new RemoteProgram(programId, name, extension);
+            program.setLastModified(baseLastModified);
+            program.setEtag(baseEtag);
+            program.setContentBytes(content);
+            return program;
+        }
+    }
+
+    private static final class EndpointJournal {
+        final Path path;
+        // Latest pending save per program, in the order they were recorded
+        final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+        long nextSequence = 1;
+        FileChannel channel;
+
+        EndpointJournal(Path path) {
+            this.path = path;
+        }
+
+        void write(ByteBuffer record) throws IOException {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+
+        void truncate() throws IOException {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+        }
+
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        void close() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close save journal " + path, e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.chiplueck.apieditor.fs;
+
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line-based three-way merge of two versions of a program's content that were both derived from a common base.
+ * Changes to different lines are combined; changes to the same or adjacent lines are a conflict,
+ * unless both sides made the identical change. Lines are split on '\n' only, like for patch uploads.
+ */
+final class ThreeWayMerge {
+    private ThreeWayMerge() {
+    }
+
+    /**
+     * Merges the local and the server changes to a base version.
+     *
+     * @param base The UTF-8 content both versions are based on
+     * @param local The UTF-8 content with the local changes
+     * @param server The UTF-8 content with the server changes
+     * @return The merged UTF-8 content, or null if the changes conflict or the contents are too large to diff
+     */
+    @Nullable
+    static byte[] merge(byte[] base, byte[] local, byte[] server) {
+        String[] baseLines = split(base);
+        String[] localLines = split(local);
+        String[] serverLines = split(server);
+        List<Hunk> localHunks;
+        List<Hunk> serverHunks;
+        try {
+            localHunks = Hunk.of(Diff.buildChanges(baseLines, localLines), localLines);
+            serverHunks = Hunk.of(Diff.buildChanges(baseLines, serverLines), serverLines);
+        } catch (FilesTooBigForDiffException e) {
+            return null;
+        }
+
+        List<String> merged = new ArrayList<>(Math.max(localLines.length, serverLines.length));
+        int baseLine = 0;
+        int l = 0;
+        int s = 0;
+        while (l < localHunks.size() || s < serverHunks.size()) {
+            Hunk localHunk = l < localHunks.size() ? localHunks.get(l) : null;
+            Hunk serverHunk = s < serverHunks.size() ? serverHunks.get(s) : null;
+            Hunk next;
+            if (localHunk != null && serverHunk != null && localHunk.touches(serverHunk)) {
+                if (!localHunk.equals(serverHunk)) {
+                    return null;
+                }
+                // The same change on both sides
+                next = localHunk;
+                l++;
+                s++;
+            } else if (serverHunk == null || localHunk != null && localHunk.start < serverHunk.start) {
+                next = localHunk;
+                l++;
+            } else {
+                next = serverHunk;
+                s++;
+            }
+            merged.addAll(Arrays.asList(baseLines).subList(baseLine, next.start));
+            merged.addAll(Arrays.asList(next.lines));
+            baseLine = next.end;
+        }
+        merged.addAll(Arrays.asList(baseLines).subList(baseLine, baseLines.length));
+        return String.join("\n", merged).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String[] split(byte[] content) {
+        return new String(content, StandardCharsets.UTF_8).split("\n", -1);
+    }
+
+    /**
+     * A change replacing the base lines from start (inclusive) to end (exclusive) with new lines.
+     */
+    private static final class Hunk {
+        final int start;
+        final int end;
+        final String[] lines;
+
+        Hunk(int start, int end, String[] lines) {
+            this.start = start;
+            this.end = end;
+            this.lines = lines;
+        }
+
+        static List<Hunk> of(@Nullable Diff.Change change, String[] newLines) {
+            List<Hunk> hunks = new ArrayList<>();
+            for (; change != null; change = change.link) {
+                hunks.add(new Hunk(change.line0, change.line0 + change.deleted,
+                        Arrays.copyOfRange(newLines, change.line1, change.line1 + change.inserted)));
+            }
+            return hunks;
+        }
+
+        /**
+         * Checks whether two changes overlap or are adjacent, so their order in the merge would be ambiguous.
+         */
+        boolean touches(Hunk other) {
+            return start <= other.end && other.start <= end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Hunk)) return false;
+            Hunk that = (Hunk) o;
+            return start == that.start && end == that.end && Arrays.equals(lines, that.lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * start + end) + Arrays.hashCode(lines);
+        }
+    }
+}
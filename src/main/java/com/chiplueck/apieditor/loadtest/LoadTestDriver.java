@@ -0,0 +1,149 @@
+package com.chiplueck.apieditor.loadtest;
+
+import com.chiplueck.apieditor.cache.ProgramContentCache;
+import com.chiplueck.apieditor.fs.ApiEditorFileSystem;
+import com.chiplueck.apieditor.fs.ApiEditorVirtualFile;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.chiplueck.apieditor.model.RemoteProgram;
+import com.chiplueck.apieditor.services.HttpTransportService;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives concurrent open/save cycles against a {@link MockProgramServer} through the
+ * {@link ApiEditorFileSystem}, so the whole client stack is exercised: listing, content cache,
+ * virtual files, save queue and HTTP transport.
+ * Each cycle loads a random program, appends a line to it and saves it.
+ */
+public class LoadTestDriver {
+    private static final Logger LOG = Logger.getInstance(LoadTestDriver.class);
+
+    private final MockProgramServer server;
+    private final ApiEditorFileSystem fileSystem;
+    private final LatencyRecorder openLatencies = new LatencyRecorder();
+    private final LatencyRecorder saveLatencies = new LatencyRecorder();
+    private final AtomicInteger remainingCycles = new AtomicInteger();
+    private final AtomicInteger completedCycles = new AtomicInteger();
+    private final AtomicInteger failedCycles = new AtomicInteger();
+
+    public LoadTestDriver(MockProgramServer server, ApiEditorFileSystem fileSystem) {
+        this.server = server;
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * Runs the load test. The endpoint's state is removed from the caches afterwards.
+     *
+     * @param concurrency The number of cycles running at the same time
+     * @param cycles The total number of open/save cycles
+     * @param indicator Progress indicator, cancelling it stops starting new cycles
+     * @return The report of the run
+     * @throws IOException If the program listing cannot be loaded
+     */
+    public LoadTestReport run(int concurrency, int cycles, ProgressIndicator indicator) throws IOException {
+        ApiEndpoint endpoint = server.createEndpoint();
+        try {
+            long listingStart = System.nanoTime();
+            List<RemoteProgram> programs = fileSystem.connectToEndpoint(endpoint);
+            long listingMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - listingStart);
+            if (programs.isEmpty()) {
+                throw new IOException("The mock server did not list any programs");
+            }
+
+            remainingCycles.set(cycles);
+            long start = System.nanoTime();
+            CompletableFuture<?>[] workers = new CompletableFuture<?>[concurrency];
+            for (int i = 0; i < concurrency; i++) {
+                CompletableFuture<Void> worker = new CompletableFuture<>();
+                runCycles(endpoint, programs, worker);
+                workers[i] = worker;
+            }
+            awaitWorkers(CompletableFuture.allOf(workers), cycles, indicator);
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            return new LoadTestReport(listingMs, durationMs, completedCycles.get(), failedCycles.get(),
+                    openLatencies, saveLatencies, server.getRequestCount(), server.getInjectedErrorCount(),
+                    HttpTransportService.getInstance().getTransport(endpoint).getMetrics().getStats());
+        } finally {
+            fileSystem.forgetEndpoint(endpoint.getId());
+            HttpTransportService.getInstance().invalidate(endpoint);
+            ProgramContentCache.getInstance().invalidateEndpoint(endpoint.getId());
+        }
+    }
+
+    /**
+     * Runs cycles one after the other until none are left, then completes the worker.
+     * No thread is held while a cycle waits for the server.
+     */
+    private void runCycles(ApiEndpoint endpoint, List<RemoteProgram> programs, CompletableFuture<Void> worker) {
+        if (remainingCycles.getAndDecrement() <= 0) {
+            worker.complete(null);
+            return;
+        }
+        RemoteProgram program = programs.get(ThreadLocalRandom.current().nextInt(programs.size()));
+        long openStart = System.nanoTime();
+        fileSystem.loadProgramAsync(endpoint, program)
+                .thenCompose(file -> {
+                    openLatencies.record(System.nanoTime() - openStart);
+                    return edit(file);
+                })
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        completedCycles.incrementAndGet();
+                    } else {
+                        failedCycles.incrementAndGet();
+                        LOG.debug("Load test cycle for " + program.getFullName() + " failed", error);
+                    }
+                    runCycles(endpoint, programs, worker);
+                });
+    }
+
+    private CompletableFuture<Void> edit(ApiEditorVirtualFile file) {
+        try {
+            byte[] content = file.contentsToByteArray();
+            byte[] line = ("// load test edit " + System.nanoTime() + "\n").getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = file.getOutputStream(this, file.getModificationStamp() + 1, System.currentTimeMillis())) {
+                out.write(content);
+                out.write(line);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long saveStart = System.nanoTime();
+        return fileSystem.saveProgramAsync(file)
+                .thenRun(() -> saveLatencies.record(System.nanoTime() - saveStart));
+    }
+
+    private void awaitWorkers(CompletableFuture<Void> workers, int cycles, ProgressIndicator indicator) throws IOException {
+        while (true) {
+            try {
+                workers.get(100, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (indicator.isCanceled()) {
+                    // Let the running cycles finish, but don't start new ones
+                    remainingCycles.set(0);
+                }
+                int done = completedCycles.get() + failedCycles.get();
+                indicator.setFraction((double) done / cycles);
+                indicator.setText2(done + " of " + cycles + " cycles");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the load test", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Load test failed", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.chiplueck.apieditor.loadtest;
+
+import com.chiplueck.apieditor.metrics.OperationStats;
+
+import java.util.List;
+
+/**
+ * Result of a load test run.
+ */
+public class LoadTestReport {
+    private final long listingMs;
+    private final long durationMs;
+    private final int completedCycles;
+    private final int failedCycles;
+    private final LatencyRecorder openLatencies;
+    private final LatencyRecorder saveLatencies;
+    private final long serverRequests;
+    private final long injectedErrors;
+    private final List<OperationStats> operationStats;
+
+    public LoadTestReport(long listingMs, long durationMs, int completedCycles, int failedCycles,
+                          LatencyRecorder openLatencies, LatencyRecorder saveLatencies,
+                          long serverRequests, long injectedErrors, List<OperationStats> operationStats) {
+        this.listingMs = listingMs;
+        this.durationMs = durationMs;
+        this.completedCycles = completedCycles;
+        this.failedCycles = failedCycles;
+        this.openLatencies = openLatencies;
+        this.saveLatencies = saveLatencies;
+        this.serverRequests = serverRequests;
+        this.injectedErrors = injectedErrors;
+        this.operationStats = operationStats;
+    }
+
+    public int getCompletedCycles() {
+        return completedCycles;
+    }
+
+    public int getFailedCycles() {
+        return failedCycles;
+    }
+
+    public LatencyRecorder getOpenLatencies() {
+        return openLatencies;
+    }
+
+    public LatencyRecorder getSaveLatencies() {
+        return saveLatencies;
+    }
+
+    /**
+     * Gets the request metrics the API client recorded during the run.
+     * @return The statistics per operation
+     */
+    public List<OperationStats> getOperationStats() {
+        return operationStats;
+    }
+
+    /**
+     * Gets the number of completed open/save cycles per second.
+     * @return The throughput
+     */
+    public double getThroughput() {
+        return durationMs == 0 ? 0 : completedCycles * 1000.0 / durationMs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Listing: %d ms%n", listingMs))
+                .append(String.format("Cycles: %d completed, %d failed in %d ms (%.1f cycles/s)%n",
+                        completedCycles, failedCycles, durationMs, getThroughput()))
+                .append(String.format("Open: p50 %.1f ms, p99 %.1f ms (%d samples)%n",
+                        openLatencies.getPercentileMs(50), openLatencies.getPercentileMs(99), openLatencies.getCount()))
+                .append(String.format("Save: p50 %.1f ms, p99 %.1f ms (%d samples)%n",
+                        saveLatencies.getPercentileMs(50), saveLatencies.getPercentileMs(99), saveLatencies.getCount()))
+                .append(String.format("Server: %d requests, %d injected errors", serverRequests, injectedErrors));
+        for (OperationStats stats : operationStats) {
+            report.append('\n').append(stats);
+        }
+        return report.toString();
+    }
+}
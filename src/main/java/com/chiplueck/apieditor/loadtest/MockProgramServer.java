@@ -0,0 +1,542 @@
+package com.chiplueck.apieditor.loadtest;
+
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded stand-in for a program API server, implementing the contract of api_specification.md:
+ * listings on "/" (with optional paging), batch fetches on "/batch", GET, PUT and PATCH on "/{programId}"
+ * with ETags, conditional requests and gzip content coding, and change notifications as Server-Sent Events on "/events". Latency and error rate can be configured,
+ * so the client can be exercised under realistic conditions without a real server.
+ */
+public class MockProgramServer implements AutoCloseable {
+    private static final Logger LOG = Logger.getInstance(MockProgramServer.class);
+    private static final int BATCH_LIMIT = 100;
+    // The number of past change events kept, so reconnecting subscribers can resume
+    private static final int EVENT_HISTORY = 1000;
+    private static final long HEARTBEAT_INTERVAL_MS = 30000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Gson gson = new Gson();
+    private final Map<String, StoredProgram> programs = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private volatile int latencyMs;
+    private volatile int latencyJitterMs;
+    private volatile double errorRate;
+    private volatile boolean batchSupported = true;
+    // Guarded by itself
+    private final Deque<ChangeEvent> eventHistory = new ArrayDeque<>();
+    private long lastEventId;
+    private final Set<BlockingQueue<ChangeEvent>> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts a server on a free loopback port with a generated catalog.
+     *
+     * @param catalogSize The number of programs
+     * @param contentSize The approximate content size of each program in characters
+     * @throws IOException If the server cannot be started
+     */
+    public MockProgramServer(int catalogSize, int contentSize) throws IOException {
+        for (int i = 0; i < catalogSize; i++) {
+            String id = "program-" + i;
+            programs.put(id, new StoredProgram(id, "Program" + i, "java", generateContent(i, contentSize), clock.incrementAndGet()));
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "API Editor mock server " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        LOG.info("Mock program server listening on port " + server.getAddress().getPort() + " with " + catalogSize + " programs");
+    }
+
+    /**
+     * Sets the simulated processing time of every request.
+     *
+     * @param latencyMs The base latency in milliseconds
+     * @param jitterMs The maximum random latency added on top, in milliseconds
+     */
+    public void setLatency(int latencyMs, int jitterMs) {
+        this.latencyMs = latencyMs;
+        this.latencyJitterMs = jitterMs;
+    }
+
+    /**
+     * Sets the fraction of requests that fail with "503 Service Unavailable".
+     *
+     * @param errorRate The error rate between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets whether the server offers batch fetches. Without them, the client falls back to single requests.
+     *
+     * @param batchSupported true to advertise and serve batch fetches
+     */
+    public void setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+    }
+
+    /**
+     * Creates an endpoint configuration pointing at this server. The server doesn't check credentials.
+     *
+     * @return The endpoint
+     */
+    public ApiEndpoint createEndpoint() {
+        ApiEndpoint endpoint = new ApiEndpoint("Mock server", "http://127.0.0.1:" + server.getAddress().getPort(), "mock");
+        endpoint.setIncrementalSync(true);
+        endpoint.setPatchUploads(true);
+        return endpoint;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            byte[] requestBody = readRequestBody(exchange);
+            simulateLatency();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                sendError(exchange, 503, "Injected error");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if ("/".equals(path) && "GET".equals(method)) {
+                handleListing(exchange);
+                return;
+            }
+            if ("/batch".equals(path) && "POST".equals(method)) {
+                handleBatch(exchange, requestBody);
+                return;
+            }
+            if ("/events".equals(path) && "GET".equals(method)) {
+                handleEvents(exchange);
+                return;
+            }
+            String programId = URLDecoder.decode(path.substring(1), StandardCharsets.UTF_8);
+            switch (method) {
+                case "GET":
+                    handleGet(exchange, programId);
+                    break;
+                case "PUT":
+                    handlePut(exchange, programId, requestBody);
+                    break;
+                case "PATCH":
+                    handlePatch(exchange, programId, requestBody);
+                    break;
+                default:
+                    sendError(exchange, 405, "Method not allowed");
+            }
+        } catch (RuntimeException e) {
+            // Malformed JSON, missing fields or invalid query parameters
+            sendError(exchange, 400, "Invalid request: " + e.getMessage());
+        }
+    }
+
+    private void handleListing(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        long since = Long.parseLong(query.getOrDefault("since", "0"));
+        int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(Integer.MAX_VALUE)));
+        int offset = Integer.parseInt(query.getOrDefault("cursor", "0"));
+
+        List<StoredProgram> matching = new ArrayList<>();
+        for (StoredProgram program : programs.values()) {
+            if (program.lastModified > since) {
+                matching.add(program);
+            }
+        }
+        matching.sort((a, b) -> a.id.compareTo(b.id));
+
+        JsonArray listed = new JsonArray();
+        int end = (int) Math.min(matching.size(), (long) offset + limit);
+        for (int i = offset; i < end; i++) {
+            listed.add(matching.get(i).toJson(false));
+        }
+        JsonObject response = new JsonObject();
+        response.add("programs", listed);
+        if (end < matching.size()) {
+            response.addProperty("nextCursor", String.valueOf(end));
+        }
+        if (since > 0) {
+            response.addProperty("delta", true);
+            response.add("deleted", new JsonArray());
+        }
+        response.addProperty("serverTime", clock.get());
+        if (batchSupported) {
+            response.addProperty("batchLimit", BATCH_LIMIT);
+        }
+        sendJson(exchange, 200, response);
+    }
+
+    private void handleBatch(HttpExchange exchange, byte[] requestBody) throws IOException {
+        if (!batchSupported) {
+            sendError(exchange, 405, "Method not allowed");
+            return;
+        }
+        JsonArray ids = gson.fromJson(new String(requestBody, StandardCharsets.UTF_8), JsonObject.class).getAsJsonArray("ids");
+        if (ids.size() > BATCH_LIMIT) {
+            sendError(exchange, 400, "Too many programs in batch");
+            return;
+        }
+        JsonArray found = new JsonArray();
+        JsonArray missing = new JsonArray();
+        for (JsonElement id : ids) {
+            StoredProgram program = programs.get(id.getAsString());
+            if (program != null) {
+                JsonObject json = program.toJson(true);
+                json.addProperty("etag", program.etag());
+                found.add(json);
+            } else {
+                missing.add(id);
+            }
+        }
+        JsonObject response = new JsonObject();
+        response.add("programs", found);
+        response.add("missing", missing);
+        sendJson(exchange, 200, response);
+    }
+
+    private void handleGet(HttpExchange exchange, String programId) throws IOException {
+        StoredProgram program = programs.get(programId);
+        if (program == null) {
+            sendError(exchange, 404, "Program not found");
+            return;
+        }
+        exchange.getResponseHeaders().add("ETag", program.etag());
+        if (program.etag().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        sendProgram(exchange, program);
+    }
+
+    private void handlePut(HttpExchange exchange, String programId, byte[] requestBody) throws IOException {
+        StoredProgram saved;
+        synchronized (this) {
+            StoredProgram existing = programs.get(programId);
+            if (existing == null) {
+                sendError(exchange, 404, "Program not found");
+                return;
+            }
+            JsonObject request = gson.fromJson(new String(requestBody, StandardCharsets.UTF_8), JsonObject.class);
+            String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+            if (ifMatch != null && !ifMatch.equals(existing.etag())) {
+                sendConflict(exchange, 412, "Precondition failed", existing);
+                return;
+            }
+            if (request.has("baseLastModified") && request.get("baseLastModified").getAsLong() != existing.lastModified) {
+                sendConflict(exchange, 409, "Base version does not match", existing);
+                return;
+            }
+            saved = existing.withContent(request.get("content").getAsString(), clock.incrementAndGet());
+            programs.put(programId, saved);
+            publishChange(saved);
+        }
+        exchange.getResponseHeaders().add("ETag", saved.etag());
+        sendProgram(exchange, saved);
+    }
+
+    private void handlePatch(HttpExchange exchange, String programId, byte[] requestBody) throws IOException {
+        StoredProgram saved;
+        synchronized (this) {
+            StoredProgram existing = programs.get(programId);
+            if (existing == null) {
+                sendError(exchange, 404, "Program not found");
+                return;
+            }
+            JsonObject request = gson.fromJson(new String(requestBody, StandardCharsets.UTF_8), JsonObject.class);
+            String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+            if (request.get("baseLastModified").getAsLong() != existing.lastModified
+                    || ifMatch != null && !ifMatch.equals(existing.etag())) {
+                sendConflict(exchange, 409, "Base version does not match", existing);
+                return;
+            }
+            String content = applyEdits(existing.content, request.getAsJsonArray("edits"));
+            if (content == null) {
+                sendError(exchange, 422, "Edits do not apply to the base version");
+                return;
+            }
+            saved = existing.withContent(content, clock.incrementAndGet());
+            programs.put(programId, saved);
+            publishChange(saved);
+        }
+        exchange.getResponseHeaders().add("ETag", saved.etag());
+        sendProgram(exchange, saved);
+    }
+
+    /**
+     * Streams change events until the subscriber disconnects, starting with those after its Last-Event-ID.
+     * Holds a server thread for as long as the subscriber stays connected.
+     */
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        BlockingQueue<ChangeEvent> queue = new LinkedBlockingQueue<>();
+        String lastSeen = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        synchronized (eventHistory) {
+            if (lastSeen != null) {
+                long after = Long.parseLong(lastSeen);
+                ChangeEvent oldest = eventHistory.peekFirst();
+                if (oldest != null && oldest.id > after + 1 || oldest == null && after < lastEventId) {
+                    // The events since then are no longer known
+                    JsonObject reset = new JsonObject();
+                    reset.addProperty("type", "reset");
+                    queue.add(new ChangeEvent(lastEventId, reset));
+                } else {
+                    for (ChangeEvent event : eventHistory) {
+                        if (event.id > after) {
+                            queue.add(event);
+                        }
+                    }
+                }
+            }
+            subscribers.add(queue);
+        }
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write(":\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                ChangeEvent event = queue.poll(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                String text = event != null ? "id: " + event.id + "\ndata: " + event.data + "\n\n" : ":\n\n";
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscribers.remove(queue);
+        }
+    }
+
+    // Called while holding this
+    private void publishChange(StoredProgram program) {
+        JsonObject data = new JsonObject();
+        data.addProperty("type", "changed");
+        data.add("program", program.toJson(false));
+        synchronized (eventHistory) {
+            ChangeEvent event = new ChangeEvent(++lastEventId, data);
+            eventHistory.addLast(event);
+            if (eventHistory.size() > EVENT_HISTORY) {
+                eventHistory.removeFirst();
+            }
+            for (BlockingQueue<ChangeEvent> queue : subscribers) {
+                queue.add(event);
+            }
+        }
+    }
+
+    private static String applyEdits(String base, JsonArray edits) {
+        List<String> lines = new ArrayList<>(Arrays.asList(base.split("\n", -1)));
+        // Apply from the end, so the base line numbers of earlier edits stay valid
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            JsonObject edit = edits.get(i).getAsJsonObject();
+            int line = edit.get("line").getAsInt();
+            int delete = edit.get("delete").getAsInt();
+            if (line < 0 || delete < 0 || line + delete > lines.size()) {
+                return null;
+            }
+            lines.subList(line, line + delete).clear();
+            List<String> inserted = new ArrayList<>();
+            for (JsonElement insertedLine : edit.getAsJsonArray("insert")) {
+                inserted.add(insertedLine.getAsString());
+            }
+            lines.addAll(line, inserted);
+        }
+        return String.join("\n", lines);
+    }
+
+    private void sendProgram(HttpExchange exchange, StoredProgram program) throws IOException {
+        JsonObject response = new JsonObject();
+        response.add("program", program.toJson(true));
+        sendJson(exchange, 200, response);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject response = new JsonObject();
+        response.addProperty("error", message);
+        sendJson(exchange, status, response);
+    }
+
+    /**
+     * Rejects a save, sending the stored version along so the client doesn't need to fetch it.
+     */
+    private void sendConflict(HttpExchange exchange, int status, String message, StoredProgram existing) throws IOException {
+        JsonObject response = new JsonObject();
+        response.addProperty("error", message);
+        response.add("program", existing.toJson(true));
+        exchange.getResponseHeaders().add("ETag", existing.etag());
+        sendJson(exchange, status, response);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonObject response) throws IOException {
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readRequestBody(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+        try (InputStream in = body) {
+            return in.readAllBytes();
+        }
+    }
+
+    private void simulateLatency() {
+        int delay = latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextInt(latencyJitterMs + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String generateContent(int index, int size) {
+        StringBuilder content = new StringBuilder(size + 64).append("public class Program").append(index).append(" {\n");
+        int line = 0;
+        while (content.length() < size) {
+            content.append("    int value").append(line).append("() { return ").append(line * 31 + index).append("; }\n");
+            line++;
+        }
+        return content.append("}\n").toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static class ChangeEvent {
+        final long id;
+        final JsonObject data;
+
+        ChangeEvent(long id, JsonObject data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    private static class StoredProgram {
+        final String id;
+        final String name;
+        final String extension;
+        final String content;
+        final long lastModified;
+
+        StoredProgram(String id, String name, String extension, String content, long lastModified) {
+            this.id = id;
+            this.name = name;
+            this.extension = extension;
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        StoredProgram withContent(String newContent, long modified) {
+            return new StoredProgram(id, name, extension, newContent, modified);
+        }
+
+        String etag() {
+            return "\"" + id + "-" + lastModified + "\"";
+        }
+
+        JsonObject toJson(boolean withContent) {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", id);
+            json.addProperty("name", name);
+            json.addProperty("extension", extension);
+            if (withContent) {
+                json.addProperty("content", content);
+            }
+            json.addProperty("lastModified", lastModified);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.chiplueck.apieditor.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the API request metrics, registered as {@code com.chiplueck.apieditor:type=ApiMetrics}.
+ */
+public interface ApiMetricsMXBean {
+    /**
+     * Gets the metrics of every operation of every endpoint.
+     *
+     * @return The statistics
+     */
+    List<OperationStats> getOperationStats();
+
+    /**
+     * Discards all metrics recorded so far.
+     */
+    void reset();
+}
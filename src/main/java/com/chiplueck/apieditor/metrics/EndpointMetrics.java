@@ -0,0 +1,49 @@
+package com.chiplueck.apieditor.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request metrics of one API endpoint, kept per operation.
+ */
+public class EndpointMetrics {
+    private final String endpointName;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    public EndpointMetrics(String endpointName) {
+        this.endpointName = endpointName;
+    }
+
+    /**
+     * Gets the metrics of an operation, creating them on first use.
+     *
+     * @param operation The operation name, e.g. "get"
+     * @return The operation's metrics
+     */
+    public OperationMetrics forOperation(String operation) {
+        return operations.computeIfAbsent(operation, name -> new OperationMetrics(endpointName, name));
+    }
+
+    /**
+     * Gets snapshots of the metrics of all operations that were used.
+     *
+     * @return The statistics, ordered by operation name
+     */
+    public List<OperationStats> getStats() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (OperationMetrics metrics : new TreeMap<>(operations).values()) {
+            stats.add(metrics.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Discards all metrics recorded so far.
+     */
+    public void reset() {
+        operations.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package com.chiplueck.apieditor.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live metrics of one kind of API request (e.g. listing, fetching or saving programs) against one endpoint.
+ */
+public class OperationMetrics {
+    // Response times are kept for the current and the previous window, so they follow changes of the server's latency
+    private static final long RESPONSE_TIME_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final String endpointName;
+    private final String operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // Time until the response headers arrived, the part of a request its timeout applies to
+    private volatile LatencyHistogram responseTime = new LatencyHistogram();
+    private volatile LatencyHistogram previousResponseTime = new LatencyHistogram();
+    private volatile long responseTimeWindowStart = System.nanoTime();
+    // When a request last timed out waiting for its response, or 0
+    private volatile long lastTimeoutNanos;
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong clientErrors = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong connectionErrors = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    public OperationMetrics(String endpointName, String operation) {
+        this.endpointName = endpointName;
+        this.operation = operation;
+    }
+
+    /**
+     * Records a request the server answered.
+     *
+     * @param statusCode The HTTP status of the response
+     * @param latencyNanos The time from sending the request until its response body was consumed
+     * @param sent The request body bytes sent
+     * @param received The response body bytes received
+     */
+    public void recordResponse(int statusCode, long latencyNanos, long sent, long received) {
+        if (statusCode >= 500) {
+            serverErrors.incrementAndGet();
+        } else if (statusCode >= 400) {
+            clientErrors.incrementAndGet();
+        } else {
+            successes.incrementAndGet();
+        }
+        latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+    }
+
+    /**
+     * Records the time until the response headers of a request arrived.
+     *
+     * @param responseTimeNanos The time from sending the request until its response headers arrived
+     */
+    public void recordResponseTime(long responseTimeNanos) {
+        rotateResponseTimes().record(TimeUnit.NANOSECONDS.toMicros(responseTimeNanos));
+    }
+
+    /**
+     * Records a request that timed out waiting for its response headers. It counts as a response that took
+     * as long as the request waited, so the response times grow with a server that got slower.
+     *
+     * @param waitedNanos The time from sending the request until it timed out
+     */
+    public void recordTimeout(long waitedNanos) {
+        lastTimeoutNanos = System.nanoTime();
+        recordResponseTime(waitedNanos);
+    }
+
+    /**
+     * Checks whether a request timed out waiting for its response within the last few minutes.
+     *
+     * @return true if the recent response times may not reflect the server's latency anymore
+     */
+    public boolean hasRecentTimeouts() {
+        long last = lastTimeoutNanos;
+        return last != 0 && System.nanoTime() - last < RESPONSE_TIME_WINDOW_NANOS;
+    }
+
+    /**
+     * Gets the number of recent responses whose response time was recorded.
+     *
+     * @return The number of responses
+     */
+    public long getResponseCount() {
+        rotateResponseTimes();
+        return responseTime.getCount() + previousResponseTime.getCount();
+    }
+
+    /**
+     * Gets the time within which the given percentage of the recent responses arrived.
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The response time in microseconds, or 0 if none was recorded
+     */
+    public long getResponseTimeAtPercentile(double percentile) {
+        rotateResponseTimes();
+        return LatencyHistogram.getValueAtPercentile(percentile, responseTime, previousResponseTime);
+    }
+
+    /**
+     * Starts a new window of response times once the current one is over, dropping the previous one.
+     *
+     * @return The histogram of the current window
+     */
+    private LatencyHistogram rotateResponseTimes() {
+        long now = System.nanoTime();
+        if (now - responseTimeWindowStart >= RESPONSE_TIME_WINDOW_NANOS) {
+            synchronized (this) {
+                if (now - responseTimeWindowStart >= RESPONSE_TIME_WINDOW_NANOS) {
+                    // After a quiet period longer than a window, the previous window is stale as well
+                    previousResponseTime = now - responseTimeWindowStart < 2 * RESPONSE_TIME_WINDOW_NANOS
+                            ? responseTime : new LatencyHistogram();
+                    responseTime = new LatencyHistogram();
+                    responseTimeWindowStart = now;
+                }
+            }
+        }
+        return responseTime;
+    }
+
+    /**
+     * Records a request that failed without a response, e.g. because the connection failed or timed out.
+     *
+     * @param latencyNanos The time until the request failed
+     * @param sent The request body bytes that were to be sent
+     */
+    public void recordConnectionError(long latencyNanos, long sent) {
+        connectionErrors.incrementAndGet();
+        latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        bytesSent.addAndGet(sent);
+    }
+
+    /**
+     * Records that a request of this kind had to be repeated, possibly in another form.
+     */
+    public void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Gets a snapshot of the metrics.
+     *
+     * @return The current statistics
+     */
+    public OperationStats getStats() {
+        return new OperationStats(endpointName, operation,
+                successes.get(), clientErrors.get(), serverErrors.get(), connectionErrors.get(), retries.get(),
+                bytesSent.get(), bytesReceived.get(),
+                toMillis(latency.getValueAtPercentile(50)), toMillis(latency.getValueAtPercentile(90)),
+                toMillis(latency.getValueAtPercentile(99)), toMillis(latency.getMax()), latency.getMean() / 1000);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.chiplueck.apieditor.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the metrics of one kind of API request against one endpoint.
+ * Latencies are in milliseconds and measured until the response body was consumed.
+ */
+public class OperationStats {
+    private final String endpointName;
+    private final String operation;
+    private final long successes;
+    private final long clientErrors;
+    private final long serverErrors;
+    private final long connectionErrors;
+    private final long retries;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final double meanMillis;
+
+    // Lets the JMX bean reconstruct snapshots from their open type representation
+    @ConstructorProperties({"endpointName", "operation", "successes", "clientErrors", "serverErrors",
+            "connectionErrors", "retries", "bytesSent", "bytesReceived",
+            "p50Millis", "p90Millis", "p99Millis", "maxMillis", "meanMillis"})
+    public OperationStats(String endpointName, String operation, long successes, long clientErrors, long serverErrors,
+                          long connectionErrors, long retries, long bytesSent, long bytesReceived,
+                          double p50Millis, double p90Millis, double p99Millis, double maxMillis, double meanMillis) {
+        this.endpointName = endpointName;
+        this.operation = operation;
+        this.successes = successes;
+        this.clientErrors = clientErrors;
+        this.serverErrors = serverErrors;
+        this.connectionErrors = connectionErrors;
+        this.retries = retries;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+        this.meanMillis = meanMillis;
+    }
+
+    public String getEndpointName() {
+        return endpointName;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the number of requests answered with a 2xx or 3xx status.
+     * @return The number of successful requests
+     */
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getClientErrors() {
+        return clientErrors;
+    }
+
+    public long getServerErrors() {
+        return serverErrors;
+    }
+
+    public long getConnectionErrors() {
+        return connectionErrors;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public long getRequests() {
+        return successes + clientErrors + serverErrors + connectionErrors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %d requests (%d 4xx, %d 5xx, %d connection errors, %d retries), " +
+                        "p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms, %d KB sent, %d KB received",
+                endpointName, operation, getRequests(), clientErrors, serverErrors, connectionErrors, retries,
+                p50Millis, p90Millis, p99Millis, maxMillis, bytesSent / 1024, bytesReceived / 1024);
+    }
+}
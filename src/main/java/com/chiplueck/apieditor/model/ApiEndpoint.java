@@ -13,6 +13,13 @@ public class ApiEndpoint {
     private String name;
     private String url;
     private String username;
+    private boolean incrementalSync;
+    private boolean patchUploads;
+    private boolean changeNotifications;
+    private int uploadCompressionThresholdKb;
+    private int listTimeoutSeconds;
+    private int fetchTimeoutSeconds;
+    private int saveTimeoutSeconds;
     @Transient
     private String password; // This will be stored securely
 
@@ -34,6 +41,17 @@ public class ApiEndpoint {
         this.username = username;
     }
 
+    public ApiEndpoint(ApiEndpoint other) {
+        this(other.id, other.name, other.url, other.username);
+        this.incrementalSync = other.incrementalSync;
+        this.patchUploads = other.patchUploads;
+        this.changeNotifications = other.changeNotifications;
+        this.uploadCompressionThresholdKb = other.uploadCompressionThresholdKb;
+        this.listTimeoutSeconds = other.listTimeoutSeconds;
+        this.fetchTimeoutSeconds = other.fetchTimeoutSeconds;
+        this.saveTimeoutSeconds = other.saveTimeoutSeconds;
+    }
+
     public String getId() {
         return id;
     }
@@ -66,6 +84,90 @@ public class ApiEndpoint {
         this.username = username;
     }
 
+    /**
+     * Whether the endpoint's server supports paged and delta ("changed since") listings.
+     * @return true if refreshes should only fetch changed programs
+     */
+    public boolean isIncrementalSync() {
+        return incrementalSync;
+    }
+
+    public void setIncrementalSync(boolean incrementalSync) {
+        this.incrementalSync = incrementalSync;
+    }
+
+    /**
+     * Whether saves may upload a line patch against the last known server version instead of the full content.
+     * @return true if the endpoint's server accepts PATCH requests for programs
+     */
+    public boolean isPatchUploads() {
+        return patchUploads;
+    }
+
+    public void setPatchUploads(boolean patchUploads) {
+        this.patchUploads = patchUploads;
+    }
+
+    /**
+     * Whether the endpoint's server pushes program changes, so open programs are updated without polling.
+     * @return true if the plugin should subscribe to the server's change notifications
+     */
+    public boolean isChangeNotifications() {
+        return changeNotifications;
+    }
+
+    public void setChangeNotifications(boolean changeNotifications) {
+        this.changeNotifications = changeNotifications;
+    }
+
+    /**
+     * The request body size from which uploads are sent gzip compressed.
+     * @return The threshold in KB, or 0 if uploads are never compressed
+     */
+    public int getUploadCompressionThresholdKb() {
+        return uploadCompressionThresholdKb;
+    }
+
+    public void setUploadCompressionThresholdKb(int uploadCompressionThresholdKb) {
+        this.uploadCompressionThresholdKb = uploadCompressionThresholdKb;
+    }
+
+    /**
+     * The longest time to wait for the server to answer a listing request.
+     * @return The deadline in seconds, or 0 to only use the timeout adapted to the server's response times
+     */
+    public int getListTimeoutSeconds() {
+        return listTimeoutSeconds;
+    }
+
+    public void setListTimeoutSeconds(int listTimeoutSeconds) {
+        this.listTimeoutSeconds = listTimeoutSeconds;
+    }
+
+    /**
+     * The longest time to wait for the server to answer a request fetching programs.
+     * @return The deadline in seconds, or 0 to only use the timeout adapted to the server's response times
+     */
+    public int getFetchTimeoutSeconds() {
+        return fetchTimeoutSeconds;
+    }
+
+    public void setFetchTimeoutSeconds(int fetchTimeoutSeconds) {
+        this.fetchTimeoutSeconds = fetchTimeoutSeconds;
+    }
+
+    /**
+     * The longest time to wait for the server to answer a save.
+     * @return The deadline in seconds, or 0 to only use the timeout adapted to the server's response times
+     */
+    public int getSaveTimeoutSeconds() {
+        return saveTimeoutSeconds;
+    }
+
+    public void setSaveTimeoutSeconds(int saveTimeoutSeconds) {
+        this.saveTimeoutSeconds = saveTimeoutSeconds;
+    }
+
     // Password is not included in toString, equals, or hashCode for security reasons
 
     @Override
@@ -81,11 +183,19 @@ public class ApiEndpoint {
         return Objects.equals(id, that.id) &&
                 Objects.equals(name, that.name) &&
                 Objects.equals(url, that.url) &&
-                Objects.equals(username, that.username);
+                Objects.equals(username, that.username) &&
+                incrementalSync == that.incrementalSync &&
+                patchUploads == that.patchUploads &&
+                changeNotifications == that.changeNotifications &&
+                uploadCompressionThresholdKb == that.uploadCompressionThresholdKb &&
+                listTimeoutSeconds == that.listTimeoutSeconds &&
+                fetchTimeoutSeconds == that.fetchTimeoutSeconds &&
+                saveTimeoutSeconds == that.saveTimeoutSeconds;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, url, username);
+        return Objects.hash(id, name, url, username, incrementalSync, patchUploads, changeNotifications,
+                uploadCompressionThresholdKb, listTimeoutSeconds, fetchTimeoutSeconds, saveTimeoutSeconds);
     }
 }
@@ -0,0 +1,68 @@
+package com.chiplueck.apieditor.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metadata of one page of a program listing.
+ * The programs themselves are streamed to the caller while the page is read.
+ */
+public class ListingPage {
+    private final String nextCursor;
+    private final List<String> deletedIds;
+    private final boolean delta;
+    private final long serverTime;
+    private final int batchLimit;
+
+    public ListingPage(String nextCursor, List<String> deletedIds, boolean delta, long serverTime) {
+        this(nextCursor, deletedIds, delta, serverTime, 0);
+    }
+
+    public ListingPage(String nextCursor, List<String> deletedIds, boolean delta, long serverTime, int batchLimit) {
+        this.nextCursor = nextCursor;
+        this.deletedIds = deletedIds != null ? deletedIds : Collections.emptyList();
+        this.delta = delta;
+        this.serverTime = serverTime;
+        this.batchLimit = batchLimit;
+    }
+
+    /**
+     * Gets the cursor of the next page.
+     * @return The cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Gets the IDs of the programs deleted since the requested time (delta listings only).
+     * @return The deleted program IDs
+     */
+    public List<String> getDeletedIds() {
+        return deletedIds;
+    }
+
+    /**
+     * Checks whether the server honored the "since" parameter and only listed changed programs.
+     * @return true for a delta listing, false for a full listing
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * Gets the server time the listing was taken at, to be used as "since" for the next delta listing.
+     * @return The server time in milliseconds since epoch, or 0 if the server did not send it
+     */
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    /**
+     * Gets the number of programs the server accepts in one batch request.
+     * @return The limit, or 0 if the server did not advertise batch requests
+     */
+    public int getBatchLimit() {
+        return batchLimit;
+    }
+}
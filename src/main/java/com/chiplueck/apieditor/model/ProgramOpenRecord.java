@@ -0,0 +1,56 @@
+package com.chiplueck.apieditor.model;
+
+/**
+ * How often and how recently a program was opened.
+ * This class is serialized by the IntelliJ platform's serialization mechanism.
+ */
+public class ProgramOpenRecord {
+    private String endpointId;
+    private String programId;
+    private int openCount;
+    private long lastOpened;
+
+    public ProgramOpenRecord() {
+    }
+
+    public ProgramOpenRecord(String endpointId, String programId) {
+        this.endpointId = endpointId;
+        this.programId = programId;
+    }
+
+    public String getEndpointId() {
+        return endpointId;
+    }
+
+    public void setEndpointId(String endpointId) {
+        this.endpointId = endpointId;
+    }
+
+    public String getProgramId() {
+        return programId;
+    }
+
+    public void setProgramId(String programId) {
+        this.programId = programId;
+    }
+
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    public void setOpenCount(int openCount) {
+        this.openCount = openCount;
+    }
+
+    /**
+     * When the program was last opened.
+     * @return The time in milliseconds since the epoch
+     */
+    public long getLastOpened() {
+        return lastOpened;
+    }
+
+    public void setLastOpened(long lastOpened) {
+        this.lastOpened = lastOpened;
+    }
+}
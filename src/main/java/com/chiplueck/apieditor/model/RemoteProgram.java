@@ -1,5 +1,8 @@
 package com.chiplueck.apieditor.model;
 
+import com.google.gson.annotations.JsonAdapter;
+
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
@@ -9,8 +12,11 @@ public class RemoteProgram {
     private String id;
     private String name;
     private String extension;
-    private String content;
+    // Held as UTF-8, the encoding of the virtual files, so content is not converted when a file is loaded or saved
+    @JsonAdapter(Utf8ContentAdapter.class)
+    private byte[] content;
     private long lastModified;
+    private String etag;
 
     public RemoteProgram() {
     }
@@ -45,11 +51,32 @@ public class RemoteProgram {
         this.extension = extension;
     }
 
+    /**
+     * Gets the content as a string. The content is held as UTF-8 bytes and decoded on every call,
+     * so {@link #getContentBytes()} should be preferred.
+     * @return The decoded content, or null if the program was loaded without content
+     */
     public String getContent() {
-        return content;
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
     }
 
     public void setContent(String content) {
+        this.content = content != null ? content.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Gets the content as UTF-8 bytes. The array is shared, e.g. with the program's virtual file, and must not be modified.
+     * @return The content, or null if the program was loaded without content
+     */
+    public byte[] getContentBytes() {
+        return content;
+    }
+
+    /**
+     * Sets the content as UTF-8 bytes. The array is taken over without copying and must not be modified afterwards.
+     * @param content The content
+     */
+    public void setContentBytes(byte[] content) {
         this.content = content;
     }
 
@@ -61,6 +88,18 @@ public class RemoteProgram {
         this.lastModified = lastModified;
     }
 
+    /**
+     * Gets the entity tag the server sent with the program's content, used for conditional requests.
+     * @return The entity tag, or null if the server did not send one
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
     /**
      * Gets the full name of the program including its extension.
      * @return The full name with extension
@@ -0,0 +1,32 @@
+package com.chiplueck.apieditor.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps a JSON string to its UTF-8 bytes, so program content is kept encoded right after parsing.
+ */
+final class Utf8ContentAdapter extends TypeAdapter<byte[]> {
+    @Override
+    public void write(JsonWriter out, byte[] value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(new String(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public byte[] read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString().getBytes(StandardCharsets.UTF_8);
+    }
+}
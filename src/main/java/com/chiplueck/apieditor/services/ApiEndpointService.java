@@ -1,5 +1,7 @@
 package com.chiplueck.apieditor.services;
 
+import com.chiplueck.apieditor.cache.ProgramContentCache;
+import com.chiplueck.apieditor.fs.ApiEditorFileSystem;
 import com.chiplueck.apieditor.model.ApiEndpoint;
 import com.intellij.credentialStore.CredentialAttributes;
 import com.intellij.credentialStore.CredentialAttributesKt;
@@ -69,8 +71,8 @@ public class ApiEndpointService implements PersistentStateComponent<ApiEndpointS
         // Create a deep copy of the endpoints list to ensure it's not modified externally
         this.endpoints = new ArrayList<>();
         for (ApiEndpoint ep : endpoints) {
-            // Use the constructor that preserves the ID
-            this.endpoints.add(new ApiEndpoint(ep.getId(), ep.getName(), ep.getUrl(), ep.getUsername()));
+            // Use the copy constructor that preserves the ID and all options
+            this.endpoints.add(new ApiEndpoint(ep));
         }
 
         try {
@@ -116,6 +118,8 @@ public class ApiEndpointService implements PersistentStateComponent<ApiEndpointS
 
         if (updated) {
             LOG.info("Endpoint updated in list: " + endpoint.getName());
+            HttpTransportService.getInstance().updateEndpoint(endpoint);
+            ApiEditorFileSystem.getInstance().updateEndpoint(endpoint);
             try {
                 ApplicationManager.getApplication().saveSettings();
                 LOG.info("Settings saved after updating endpoint: " + endpoint.getName());
@@ -155,6 +159,13 @@ public class ApiEndpointService implements PersistentStateComponent<ApiEndpointS
             // Also remove the password from secure storage
             removePassword(endpoint);
 
+            // Release the pooled connections and cached programs of the endpoint
+            HttpTransportService.getInstance().invalidate(endpoint);
+            ProgramContentCache.getInstance().invalidateEndpoint(endpoint.getId());
+            ApiEditorFileSystem.getInstance().forgetEndpoint(endpoint.getId());
+            ApiEditorFileSystem.getInstance().discardUnsavedChanges(endpoint.getId());
+            ProgramOpenHistory.getInstance().forgetEndpoint(endpoint.getId());
+
             // Ensure settings are saved to disk
             try {
                 LOG.info("Saving state explicitly via setEndpoints");
@@ -198,6 +209,7 @@ public class ApiEndpointService implements PersistentStateComponent<ApiEndpointS
         CredentialAttributes credentialAttributes = createCredentialAttributes(endpoint);
         Credentials credentials = new Credentials(endpoint.getUsername(), password);
         PasswordSafe.getInstance().set(credentialAttributes, credentials);
+        HttpTransportService.getInstance().credentialsChanged(endpoint);
     }
 
     public String getPassword(ApiEndpoint endpoint) {
@@ -209,5 +221,6 @@ public class ApiEndpointService implements PersistentStateComponent<ApiEndpointS
     public void removePassword(ApiEndpoint endpoint) {
         CredentialAttributes credentialAttributes = createCredentialAttributes(endpoint);
         PasswordSafe.getInstance().set(credentialAttributes, null);
+        HttpTransportService.getInstance().credentialsChanged(endpoint);
     }
 }
@@ -0,0 +1,104 @@
+package com.chiplueck.apieditor.services;
+
+import com.chiplueck.apieditor.metrics.ApiMetricsMXBean;
+import com.chiplueck.apieditor.metrics.EndpointMetrics;
+import com.chiplueck.apieditor.metrics.OperationStats;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the request metrics of all API endpoints.
+ * The metrics are also published over JMX, so they can be read with tools like JConsole.
+ */
+@Service
+public final class ApiMetricsService implements ApiMetricsMXBean, Disposable {
+    private static final Logger LOG = Logger.getInstance(ApiMetricsService.class);
+    private static final String OBJECT_NAME = "com.chiplueck.apieditor:type=ApiMetrics";
+
+    private final Map<String, EndpointMetrics> endpointMetrics = new ConcurrentHashMap<>();
+    private final ObjectName objectName;
+
+    public ApiMetricsService() {
+        objectName = register();
+    }
+
+    public static ApiMetricsService getInstance() {
+        return ApplicationManager.getApplication().getService(ApiMetricsService.class);
+    }
+
+    /**
+     * Gets the metrics of an endpoint, creating them on first use.
+     * They outlive the endpoint's transport, so they are kept when its connection settings change.
+     *
+     * @param endpoint The API endpoint
+     * @return The endpoint's metrics
+     */
+    public EndpointMetrics getEndpointMetrics(ApiEndpoint endpoint) {
+        return endpointMetrics.computeIfAbsent(endpoint.getId(), id -> new EndpointMetrics(endpoint.getName()));
+    }
+
+    /**
+     * Drops the metrics of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    public void remove(String endpointId) {
+        endpointMetrics.remove(endpointId);
+    }
+
+    @Override
+    public List<OperationStats> getOperationStats() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (EndpointMetrics metrics : endpointMetrics.values()) {
+            stats.addAll(metrics.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void reset() {
+        for (EndpointMetrics metrics : endpointMetrics.values()) {
+            metrics.reset();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.debug("Failed to unregister the API metrics bean", e);
+        }
+    }
+
+    private ObjectName register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                // Left behind by a previous instance of the plugin, e.g. after a dynamic reload
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            LOG.warn("Failed to publish the API metrics over JMX", e);
+            return null;
+        }
+    }
+}
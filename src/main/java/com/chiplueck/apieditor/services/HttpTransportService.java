@@ -0,0 +1,101 @@
+package com.chiplueck.apieditor.services;
+
+import com.chiplueck.apieditor.api.HttpTransport;
+import com.chiplueck.apieditor.api.TransportStats;
+import com.chiplueck.apieditor.model.ApiEndpoint;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service that keeps one shared HttpTransport per API endpoint,
+ * so that connections are pooled and reused across all API calls.
+ */
+@Service
+public final class HttpTransportService {
+    private static final Logger LOG = Logger.getInstance(HttpTransportService.class);
+
+    private final Map<String, HttpTransport> transports = new ConcurrentHashMap<>();
+
+    public static HttpTransportService getInstance() {
+        return ApplicationManager.getApplication().getService(HttpTransportService.class);
+    }
+
+    /**
+     * Gets the shared transport for an endpoint, creating it on first use.
+     * Callers may hold a copy of the endpoint from before its settings were edited,
+     * so the transport is only ever replaced by {@link #updateEndpoint(ApiEndpoint)}.
+     *
+     * @param endpoint The API endpoint
+     * @return The shared transport
+     */
+    public HttpTransport getTransport(ApiEndpoint endpoint) {
+        return transports.computeIfAbsent(endpoint.getId(), id -> createTransport(endpoint));
+    }
+
+    /**
+     * Applies edited endpoint settings. If the endpoint's URL or username changed,
+     * a fresh transport replaces the old one, which is closed.
+     *
+     * @param endpoint The updated endpoint
+     */
+    public void updateEndpoint(ApiEndpoint endpoint) {
+        transports.computeIfPresent(endpoint.getId(), (id, existing) -> {
+            if (existing.isFor(endpoint)) {
+                return existing;
+            }
+            LOG.info("Endpoint configuration changed, replacing transport. Previous stats: " + existing.getStats());
+            existing.close();
+            return createTransport(endpoint);
+        });
+    }
+
+    private static HttpTransport createTransport(ApiEndpoint endpoint) {
+        return new HttpTransport(endpoint, () -> ApiEndpointService.getInstance().getPassword(endpoint),
+                ApiMetricsService.getInstance().getEndpointMetrics(endpoint));
+    }
+
+    /**
+     * Drops the shared transport and the request metrics of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpoint The API endpoint
+     */
+    public void invalidate(ApiEndpoint endpoint) {
+        ApiMetricsService.getInstance().remove(endpoint.getId());
+        HttpTransport removed = transports.remove(endpoint.getId());
+        if (removed != null) {
+            LOG.info("Released transport. Final stats: " + removed.getStats());
+            removed.close();
+        }
+    }
+
+    /**
+     * Makes the endpoint's transport read the credentials again, e.g. after its password was changed.
+     *
+     * @param endpoint The API endpoint
+     */
+    public void credentialsChanged(ApiEndpoint endpoint) {
+        HttpTransport transport = transports.get(endpoint.getId());
+        if (transport != null) {
+            transport.invalidateCredentials();
+        }
+    }
+
+    /**
+     * Gets the connection pool statistics of all active transports.
+     *
+     * @return The statistics, one entry per endpoint
+     */
+    public List<TransportStats> getStats() {
+        List<TransportStats> stats = new ArrayList<>();
+        for (HttpTransport transport : transports.values()) {
+            stats.add(transport.getStats());
+        }
+        return stats;
+    }
+}
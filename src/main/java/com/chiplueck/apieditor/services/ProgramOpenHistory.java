@@ -0,0 +1,119 @@
+package com.chiplueck.apieditor.services;
+
+import com.chiplueck.apieditor.model.ProgramOpenRecord;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Remembers which programs were opened, how often and how recently, so the programs
+ * most likely to be opened next can be prefetched.
+ */
+@State(
+    name = "ProgramOpenHistory",
+    storages = {@Storage("apiEditorHistory.xml")}
+)
+public class ProgramOpenHistory implements PersistentStateComponent<ProgramOpenHistory> {
+    private static final int MAX_RECORDS = 200;
+    // Opens lose half their weight per week
+    private static final double HALF_LIFE_MS = 7 * 24 * 60 * 60 * 1000.0;
+
+    private List<ProgramOpenRecord> records = new ArrayList<>();
+
+    public static ProgramOpenHistory getInstance() {
+        return ApplicationManager.getApplication().getService(ProgramOpenHistory.class);
+    }
+
+    @Nullable
+    @Override
+    public synchronized ProgramOpenHistory getState() {
+        return this;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull ProgramOpenHistory state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+
+    public synchronized List<ProgramOpenRecord> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    public synchronized void setRecords(List<ProgramOpenRecord> records) {
+        this.records = new ArrayList<>(records);
+    }
+
+    /**
+     * Records that a program was opened.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param programId The ID of the program
+     */
+    public synchronized void recordOpen(String endpointId, String programId) {
+        ProgramOpenRecord record = null;
+        for (ProgramOpenRecord candidate : records) {
+            if (candidate.getEndpointId().equals(endpointId) && candidate.getProgramId().equals(programId)) {
+                record = candidate;
+                break;
+            }
+        }
+        if (record == null) {
+            record = new ProgramOpenRecord(endpointId, programId);
+            records.add(record);
+        }
+        record.setOpenCount(record.getOpenCount() + 1);
+        record.setLastOpened(System.currentTimeMillis());
+
+        if (records.size() > MAX_RECORDS) {
+            long now = System.currentTimeMillis();
+            records.sort(Comparator.comparingDouble((ProgramOpenRecord r) -> score(r, now)).reversed());
+            records.subList(MAX_RECORDS, records.size()).clear();
+        }
+    }
+
+    /**
+     * Gets the programs of an endpoint most likely to be opened next,
+     * ranked by their number of opens, with recent opens counting more.
+     *
+     * @param endpointId The ID of the API endpoint
+     * @param limit The maximum number of programs
+     * @return The IDs of the programs, most likely first
+     */
+    public synchronized List<String> getLikelyPrograms(String endpointId, int limit) {
+        long now = System.currentTimeMillis();
+        List<ProgramOpenRecord> candidates = new ArrayList<>();
+        for (ProgramOpenRecord record : records) {
+            if (record.getEndpointId().equals(endpointId)) {
+                candidates.add(record);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble((ProgramOpenRecord r) -> score(r, now)).reversed());
+
+        List<String> programIds = new ArrayList<>();
+        for (ProgramOpenRecord record : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            programIds.add(record.getProgramId());
+        }
+        return programIds;
+    }
+
+    /**
+     * Drops the history of an endpoint, e.g. after the endpoint was removed.
+     *
+     * @param endpointId The ID of the API endpoint
+     */
+    public synchronized void forgetEndpoint(String endpointId) {
+        records.removeIf(record -> record.getEndpointId().equals(endpointId));
+    }
+
+    private static double score(ProgramOpenRecord record, long now) {
+        return record.getOpenCount() * Math.pow(0.5, Math.max(0, now - record.getLastOpened()) / HALF_LIFE_MS);
+    }
+}
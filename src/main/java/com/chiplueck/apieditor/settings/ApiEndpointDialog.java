@@ -4,6 +4,8 @@ import com.chiplueck.apieditor.model.ApiEndpoint;
 import com.chiplueck.apieditor.services.ApiEndpointService;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBTextField;
 import com.intellij.util.ui.FormBuilder;
@@ -20,6 +22,13 @@ public class ApiEndpointDialog extends DialogWrapper {
     private final JBTextField urlField = new JBTextField();
     private final JBTextField usernameField = new JBTextField();
     private final JPasswordField passwordField = new JPasswordField();
+    private final JBCheckBox incrementalSyncCheckBox = new JBCheckBox("Incremental sync (server supports paged and delta listings)");
+    private final JBCheckBox patchUploadsCheckBox = new JBCheckBox("Patch uploads (server accepts line patches when saving)");
+    private final JBCheckBox changeNotificationsCheckBox = new JBCheckBox("Change notifications (server pushes program changes)");
+    private final JBIntSpinner compressionThresholdSpinner = new JBIntSpinner(0, 0, 1024 * 1024);
+    private final JBIntSpinner listTimeoutSpinner = new JBIntSpinner(0, 0, 3600);
+    private final JBIntSpinner fetchTimeoutSpinner = new JBIntSpinner(0, 0, 3600);
+    private final JBIntSpinner saveTimeoutSpinner = new JBIntSpinner(0, 0, 3600);
     private final ApiEndpoint originalEndpoint;
     private ApiEndpoint resultEndpoint;
 
@@ -36,6 +45,13 @@ public class ApiEndpointDialog extends DialogWrapper {
             nameField.setText(originalEndpoint.getName());
             urlField.setText(originalEndpoint.getUrl());
             usernameField.setText(originalEndpoint.getUsername());
+            incrementalSyncCheckBox.setSelected(originalEndpoint.isIncrementalSync());
+            patchUploadsCheckBox.setSelected(originalEndpoint.isPatchUploads());
+            changeNotificationsCheckBox.setSelected(originalEndpoint.isChangeNotifications());
+            compressionThresholdSpinner.setNumber(originalEndpoint.getUploadCompressionThresholdKb());
+            listTimeoutSpinner.setNumber(originalEndpoint.getListTimeoutSeconds());
+            fetchTimeoutSpinner.setNumber(originalEndpoint.getFetchTimeoutSeconds());
+            saveTimeoutSpinner.setNumber(originalEndpoint.getSaveTimeoutSeconds());
 
             // Load password from secure storage if editing an existing endpoint
             String password = ApiEndpointService.getInstance().getPassword(originalEndpoint);
@@ -53,10 +69,17 @@ public class ApiEndpointDialog extends DialogWrapper {
                 .addLabeledComponent(new JBLabel("URL:"), urlField, true)
                 .addLabeledComponent(new JBLabel("Username:"), usernameField, true)
                 .addLabeledComponent(new JBLabel("Password:"), passwordField, true)
+                .addComponent(incrementalSyncCheckBox)
+                .addComponent(patchUploadsCheckBox)
+                .addComponent(changeNotificationsCheckBox)
+                .addLabeledComponent(new JBLabel("Gzip uploads from (KB, 0 = off):"), compressionThresholdSpinner, true)
+                .addLabeledComponent(new JBLabel("Listing timeout (s, 0 = automatic):"), listTimeoutSpinner, true)
+                .addLabeledComponent(new JBLabel("Fetch timeout (s, 0 = automatic):"), fetchTimeoutSpinner, true)
+                .addLabeledComponent(new JBLabel("Save timeout (s, 0 = automatic):"), saveTimeoutSpinner, true)
                 .addComponentFillVertically(new JPanel(), 0)
                 .getPanel();
 
-        panel.setPreferredSize(new Dimension(400, 200));
+        panel.setPreferredSize(new Dimension(400, 440));
         return panel;
     }
 
@@ -81,6 +104,13 @@ public class ApiEndpointDialog extends DialogWrapper {
         resultEndpoint.setName(nameField.getText().trim());
         resultEndpoint.setUrl(urlField.getText().trim());
         resultEndpoint.setUsername(usernameField.getText().trim());
+        resultEndpoint.setIncrementalSync(incrementalSyncCheckBox.isSelected());
+        resultEndpoint.setPatchUploads(patchUploadsCheckBox.isSelected());
+        resultEndpoint.setChangeNotifications(changeNotificationsCheckBox.isSelected());
+        resultEndpoint.setUploadCompressionThresholdKb(compressionThresholdSpinner.getNumber());
+        resultEndpoint.setListTimeoutSeconds(listTimeoutSpinner.getNumber());
+        resultEndpoint.setFetchTimeoutSeconds(fetchTimeoutSpinner.getNumber());
+        resultEndpoint.setSaveTimeoutSeconds(saveTimeoutSpinner.getNumber());
         super.doOKAction();
     }
 
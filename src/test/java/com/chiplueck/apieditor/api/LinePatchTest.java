@@ -0,0 +1,92 @@
+package com.chiplueck.apieditor.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class LinePatchTest {
+
+    @Test
+    void roundTripsChangedLine() {
+        assertRoundTrip("a\nb\nc", "a\nB\nc");
+    }
+
+    @Test
+    void roundTripsInsertionsAtStartAndEnd() {
+        assertRoundTrip("a\nb\nc", "first\na\nb\nc\nlast");
+    }
+
+    @Test
+    void roundTripsDeletions() {
+        assertRoundTrip("a\nb\nc\nd\ne", "a\nd");
+        assertRoundTrip("a\nb\nc", "");
+    }
+
+    @Test
+    void roundTripsFromEmptyContent() {
+        assertRoundTrip("", "a\nb");
+    }
+
+    @Test
+    void roundTripsAddedAndRemovedTrailingNewline() {
+        assertRoundTrip("a\nb", "a\nb\n");
+        assertRoundTrip("a\nb\n", "a\nb");
+    }
+
+    @Test
+    void roundTripsCarriageReturnsAndMultiByteCharacters() {
+        assertRoundTrip("eins\r\nzwei\r\ndrei\r\n", "eins\r\nzwei \u2013 \u00fcnd\r\ndrei\n");
+    }
+
+    @Test
+    void hasNoEditsForEqualContent() {
+        byte[] content = "a\nb\nc".getBytes(StandardCharsets.UTF_8);
+        assertEquals(0, LinePatch.createEdits(content, content.clone()).size());
+    }
+
+    @Test
+    void refersToBaseLineNumbers() {
+        JsonArray edits = createEdits("a\nb\nc\nd", "a\nB\nc\nD");
+        assertEquals(2, edits.size());
+        assertEquals(1, edits.get(0).getAsJsonObject().get("line").getAsInt());
+        assertEquals(3, edits.get(1).getAsJsonObject().get("line").getAsInt());
+    }
+
+    private static void assertRoundTrip(String base, String content) {
+        assertEquals(content, applyEdits(base, createEdits(base, content)));
+    }
+
+    private static JsonArray createEdits(String base, String content) {
+        JsonArray edits = LinePatch.createEdits(base.getBytes(StandardCharsets.UTF_8), content.getBytes(StandardCharsets.UTF_8));
+        assertNotNull(edits);
+        return edits;
+    }
+
+    /**
+     * Applies edits the way the server does: lines split on '\n' only, edits applied from the end.
+     */
+    private static String applyEdits(String base, JsonArray edits) {
+        List<String> lines = new ArrayList<>(Arrays.asList(base.split("\n", -1)));
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            JsonObject edit = edits.get(i).getAsJsonObject();
+            int line = edit.get("line").getAsInt();
+            int delete = edit.get("delete").getAsInt();
+            lines.subList(line, line + delete).clear();
+            List<String> inserted = new ArrayList<>();
+            for (JsonElement insertedLine : edit.getAsJsonArray("insert")) {
+                inserted.add(insertedLine.getAsString());
+            }
+            lines.addAll(line, inserted);
+        }
+        return String.join("\n", lines);
+    }
+}
@@ -0,0 +1,172 @@
+package com.chiplueck.apieditor.fs;
+
+import com.chiplueck.apieditor.model.RemoteProgram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SaveJournalTest {
+    private static final String ENDPOINT_ID = "endpoint";
+
+    @TempDir
+    Path root;
+
+    @Test
+    void replaysPendingSavesAfterReopen() throws IOException {
+        SaveJournal journal = new SaveJournal(root);
+        journal.append(ENDPOINT_ID, program("1", "first", 10, "etag-1"));
+        journal.append(ENDPOINT_ID, program("2", "second", 20, null));
+        journal.close();
+
+        List<SaveJournal.Entry> pending = new SaveJournal(root).getPending(ENDPOINT_ID);
+        assertEquals(2, pending.size());
+        SaveJournal.Entry entry = pending.get(0);
+        assertEquals("1", entry.programId);
+        assertEquals("program-1", entry.name);
+        assertEquals("txt", entry.extension);
+        assertEquals(10, entry.baseLastModified);
+        assertEquals("etag-1", entry.baseEtag);
+        assertArrayEquals(bytes("first"), entry.content);
+        assertEquals("2", pending.get(1).programId);
+        assertNull(pending.get(1).baseEtag);
+    }
+
+    @Test
+    void doesNotReplayAcknowledgedSaves() throws IOException {
+        SaveJournal journal = new SaveJournal(root);
+        SaveJournal.Entry first = journal.append(ENDPOINT_ID, program("1", "first", 10, null));
+        journal.append(ENDPOINT_ID, program("2", "second", 20, null));
+        journal.acknowledge(first);
+        journal.close();
+
+        SaveJournal reopened = new SaveJournal(root);
+        assertNull(reopened.getPending(ENDPOINT_ID, "1"));
+        assertNotNull(reopened.getPending(ENDPOINT_ID, "2"));
+    }
+
+    @Test
+    void replaysOnlyTheLatestSaveOfAProgram() throws IOException {
+        SaveJournal journal = new SaveJournal(root);
+        journal.append(ENDPOINT_ID, program("1", "older", 10, null));
+        journal.append(ENDPOINT_ID, program("1", "newer", 10, null));
+        journal.close();
+
+        List<SaveJournal.Entry> pending = new SaveJournal(root).getPending(ENDPOINT_ID);
+        assertEquals(1, pending.size());
+        assertArrayEquals(bytes("newer"), pending.get(0).content);
+    }
+
+    @Test
+    void dropsTruncatedFinalRecord() throws IOException {
+        long firstRecordEnd = appendTwoSaves();
+        Path path = journalPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertOnlyFirstSaveReplayed(firstRecordEnd);
+    }
+
+    @Test
+    void dropsFinalRecordWithCorruptChecksum() throws IOException {
+        long firstRecordEnd = appendTwoSaves();
+        Path path = journalPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A byte of the content, right before the CRC
+            long position = channel.size() - Integer.BYTES - 1;
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xFF));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+
+        assertOnlyFirstSaveReplayed(firstRecordEnd);
+    }
+
+    @Test
+    void appendsAfterADroppedRecord() throws IOException {
+        long firstRecordEnd = appendTwoSaves();
+        try (FileChannel channel = FileChannel.open(journalPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        SaveJournal journal = new SaveJournal(root);
+        SaveJournal.Entry third = journal.append(ENDPOINT_ID, program("3", "third", 30, null));
+        journal.close();
+
+        assertTrue(Files.size(journalPath()) > firstRecordEnd);
+        List<SaveJournal.Entry> pending = new SaveJournal(root).getPending(ENDPOINT_ID);
+        assertEquals(2, pending.size());
+        assertEquals("1", pending.get(0).programId);
+        assertEquals("3", pending.get(1).programId);
+        // Sequence numbers keep growing past the records that were read
+        assertTrue(third.sequence > pending.get(0).sequence);
+    }
+
+    @Test
+    void removesJournalOnceAllSavesAreAcknowledged() throws IOException {
+        SaveJournal journal = new SaveJournal(root);
+        SaveJournal.Entry entry = journal.append(ENDPOINT_ID, program("1", "first", 10, null));
+        journal.acknowledge(entry);
+        journal.close();
+
+        SaveJournal reopened = new SaveJournal(root);
+        assertTrue(reopened.getEndpointIds().isEmpty());
+        assertFalse(Files.exists(journalPath()));
+    }
+
+    /**
+     * Journals a save of program 1 and of program 2.
+     *
+     * @return The size of the journal after the first save
+     */
+    private long appendTwoSaves() throws IOException {
+        SaveJournal journal = new SaveJournal(root);
+        journal.append(ENDPOINT_ID, program("1", "first", 10, null));
+        long firstRecordEnd = Files.size(journalPath());
+        journal.append(ENDPOINT_ID, program("2", "second", 20, null));
+        journal.close();
+        return firstRecordEnd;
+    }
+
+    private void assertOnlyFirstSaveReplayed(long firstRecordEnd) throws IOException {
+        List<SaveJournal.Entry> pending = new SaveJournal(root).getPending(ENDPOINT_ID);
+        assertEquals(1, pending.size());
+        assertEquals("1", pending.get(0).programId);
+        assertArrayEquals(bytes("first"), pending.get(0).content);
+        // The broken record is cut off, so later appends follow the last valid one
+        assertEquals(firstRecordEnd, Files.size(journalPath()));
+    }
+
+    private Path journalPath() {
+        return root.resolve(ENDPOINT_ID + ".journal");
+    }
+
+    private static RemoteProgram program(String id, String content, long lastModified, String etag) {
+        RemoteProgram program = new RemoteProgram(id, "program-" + id, "txt");
+        program.setContentBytes(bytes(content));
+        program.setLastModified(lastModified);
+        program.setEtag(etag);
+        return program;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
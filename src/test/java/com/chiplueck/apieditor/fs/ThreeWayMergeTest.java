@@ -0,0 +1,70 @@
+package com.chiplueck.apieditor.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ThreeWayMergeTest {
+    private static final String BASE = "a\nb\nc\nd\ne";
+
+    @Test
+    void combinesChangesToDistantLines() {
+        assertEquals("a\nB\nc\nD\ne", merge(BASE, "a\nB\nc\nd\ne", "a\nb\nc\nD\ne"));
+    }
+
+    @Test
+    void keepsChangesOfOneSide() {
+        assertEquals("a\nb\nC\nd\ne", merge(BASE, BASE, "a\nb\nC\nd\ne"));
+        assertEquals("a\nb\nC\nd\ne", merge(BASE, "a\nb\nC\nd\ne", BASE));
+    }
+
+    @Test
+    void combinesDeletionAndDistantInsertion() {
+        assertEquals("a\nc\nd\ne\nf", merge(BASE, "a\nc\nd\ne", "a\nb\nc\nd\ne\nf"));
+    }
+
+    @Test
+    void conflictsOnChangesToAdjacentLines() {
+        assertNull(merge(BASE, "a\nB\nc\nd\ne", "a\nb\nC\nd\ne"));
+    }
+
+    @Test
+    void conflictsOnDifferentChangesToTheSameLine() {
+        assertNull(merge(BASE, "a\nb\nlocal\nd\ne", "a\nb\nserver\nd\ne"));
+    }
+
+    @Test
+    void mergesIdenticalChangesToTheSameLineOnce() {
+        assertEquals("a\nb\nC\nd\ne", merge(BASE, "a\nb\nC\nd\ne", "a\nb\nC\nd\ne"));
+    }
+
+    @Test
+    void conflictsOnDifferentInsertionsAtTheSameBaseLine() {
+        assertNull(merge(BASE, "a\nlocal\nb\nc\nd\ne", "a\nserver\nb\nc\nd\ne"));
+    }
+
+    @Test
+    void mergesIdenticalInsertionsAtTheSameBaseLineOnce() {
+        assertEquals("a\nx\nb\nc\nd\ne", merge(BASE, "a\nx\nb\nc\nd\ne", "a\nx\nb\nc\nd\ne"));
+    }
+
+    @Test
+    void conflictsOnInsertionNextToAChangedLine() {
+        assertNull(merge(BASE, "a\nx\nb\nc\nd\ne", "a\nB\nc\nd\ne"));
+    }
+
+    @Test
+    void keepsLineEndingsAndTrailingNewline() {
+        String base = "a\r\nb\r\nc\r\n";
+        assertEquals("A\r\nb\r\nC\r\n", merge(base, "A\r\nb\r\nc\r\n", "a\r\nb\r\nC\r\n"));
+    }
+
+    private static String merge(String base, String local, String server) {
+        byte[] merged = ThreeWayMerge.merge(base.getBytes(StandardCharsets.UTF_8),
+                local.getBytes(StandardCharsets.UTF_8), server.getBytes(StandardCharsets.UTF_8));
+        return merged != null ? new String(merged, StandardCharsets.UTF_8) : null;
+    }
+}